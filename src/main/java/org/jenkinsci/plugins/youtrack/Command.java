@@ -11,7 +11,7 @@ import java.util.Date;
  */
 @ToString
 public class Command {
-    public enum Status {OK, FAILED, NOT_LOGGED_IN}
+    public enum Status {OK, FAILED, NOT_LOGGED_IN, TIMEOUT}
 
     @Getter @Setter private String siteName;
     @Getter @Setter private String issueId;
@@ -23,6 +23,11 @@ public class Command {
     @Getter @Setter private String group;
     private Date date;
     @Getter @Setter private boolean silent;
+    /**
+     * True if the request carrying the command may have reached the server without an answer being read, so the
+     * command may have been applied although its status is not OK.
+     */
+    @Getter @Setter private boolean unanswered;
 
     public Date getDate() {
         return new Date(date.getTime());
@@ -17,19 +17,23 @@ import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
 import org.jenkinsci.plugins.youtrack.youtrackapi.Suggestion;
+import org.jenkinsci.plugins.youtrack.youtrackapi.SuggestionCache;
 import org.jenkinsci.plugins.youtrack.youtrackapi.User;
 import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 
+import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -62,8 +66,8 @@ public class ExecuteCommandAction extends Builder {
         if (youTrackSite != null) {
             if (youTrackSite.isPluginEnabled()) {
 
-                YouTrackServer youTrackServer = getYouTrackServer(youTrackSite);
-                User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
+                YouTrackServer youTrackServer = getYouTrackServer(youTrackSite, build);
+                User user = youTrackSite.getUser(youTrackServer);
                 if (user != null && user.isLoggedIn()) {
                     EnvVars environment = build.getEnvironment(listener);
 
@@ -78,22 +82,41 @@ public class ExecuteCommandAction extends Builder {
                     String commandToExecute = environment.expand(command);
                     String expandedIssueInText = environment.expand(issueInText);
 
-                    Set<Issue> issues = new HashSet<>();
-                    if (StringUtils.isNotBlank(searchQuery)) {
-                        issues.addAll(youTrackServer.search(user, searchQuery));
-                    }
-                    if (StringUtils.isNotBlank(expandedIssueInText)) {
-                        issues.addAll(findIssuesInText(build, environment, expandedIssueInText));
-                    }
+                    // Only the ids are kept, so an issue found by both the search and the text gets the command once.
+                    Set<String> issueIds = new HashSet<String>();
                     List<Command> appliedCommands = new ArrayList<Command>();
                     String expandedComment = environment.expand(comment);
-                    for (Issue issue : issues) {
-                        Command appliedCommand = youTrackServer.applyCommand(youTrackSite.getName(), user, issue, commandToExecute, expandedComment, commentVisibility, null, true);
-                        appliedCommands.add(appliedCommand);
-                        if (appliedCommand.getStatus() != Command.Status.OK) {
+                    if (StringUtils.isNotBlank(searchQuery)) {
+                        // Apply the command to the issues found a batch at a time, before the next page of the search is read.
+                        YouTrackServer.SearchIterator foundIssues = youTrackServer.searchIterator(user, searchQuery, issueIds);
+                        if (foundIssues != null) {
+                            List<Issue> batch = new ArrayList<Issue>();
+                            while (foundIssues.hasNext()) {
+                                batch.add(foundIssues.next());
+                                if (batch.size() >= YouTrackServer.COMMAND_BATCH_SIZE) {
+                                    applyCommand(build, youTrackSite, youTrackServer, user, batch, commandToExecute, expandedComment, appliedCommands);
+                                    batch = new ArrayList<Issue>();
+                                }
+                            }
+                            applyCommand(build, youTrackSite, youTrackServer, user, batch, commandToExecute, expandedComment, appliedCommands);
+                            if (foundIssues.isFailed()) {
+                                youTrackSite.failed(build);
+                                listener.getLogger().println("FAILED: Searching for issues, the command was not applied to all issues found by: " + searchQuery);
+                            }
+                        } else {
                             youTrackSite.failed(build);
+                            listener.getLogger().println("Could not search for issues");
                         }
                     }
+                    if (StringUtils.isNotBlank(expandedIssueInText)) {
+                        List<Issue> batch = new ArrayList<Issue>();
+                        for (Issue issue : findIssuesInText(build, environment, expandedIssueInText)) {
+                            if (issueIds.add(issue.getId())) {
+                                batch.add(issue);
+                            }
+                        }
+                        applyCommand(build, youTrackSite, youTrackServer, user, batch, commandToExecute, expandedComment, appliedCommands);
+                    }
                     if (!appliedCommands.isEmpty()) {
                         YouTrackCommandAction youTrackCommandAction = build.getAction(YouTrackCommandAction.class);
                         if (youTrackCommandAction == null) {
@@ -104,7 +127,7 @@ public class ExecuteCommandAction extends Builder {
                             youTrackCommandAction.addCommand(appliedCommand);
                         }
                     }
-                    if (issues.isEmpty()) {
+                    if (issueIds.isEmpty()) {
                         listener.getLogger().println("No issues to apply command for");
                     }
                 } else {
@@ -120,6 +143,19 @@ public class ExecuteCommandAction extends Builder {
         return true;
     }
 
+    private void applyCommand(AbstractBuild<?, ?> build, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, List<Issue> batch,
+                              String commandToExecute, String expandedComment, List<Command> appliedCommands) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (Command appliedCommand : youTrackServer.applyCommandToIssues(youTrackSite.getName(), user, batch, commandToExecute, expandedComment, commentVisibility, null, true)) {
+            appliedCommands.add(appliedCommand);
+            if (appliedCommand.getStatus() != Command.Status.OK) {
+                youTrackSite.failed(build);
+            }
+        }
+    }
+
     String createChangesString(AbstractBuild<?, ?> build, BuildListener listener) throws InvocationTargetException, IllegalAccessException {
         StringBuilder stringBuilder = new StringBuilder();
         ChangeLogSet<? extends ChangeLogSet.Entry> changeSet = build.getChangeSet();
@@ -144,8 +180,8 @@ public class ExecuteCommandAction extends Builder {
         return stringBuilder.toString();
     }
 
-    YouTrackServer getYouTrackServer(YouTrackSite youTrackSite) {
-        return new YouTrackServer(youTrackSite.getUrl());
+    YouTrackServer getYouTrackServer(YouTrackSite youTrackSite, AbstractBuild<?, ?> build) {
+        return youTrackSite.createServer(build);
     }
 
     YouTrackSite getYouTrackSite(AbstractBuild<?, ?> build) {
@@ -200,13 +236,23 @@ public class ExecuteCommandAction extends Builder {
 
         @SuppressWarnings("UnusedDeclaration")
         public AutoCompletionCandidates doAutoCompleteSearch(@AncestorInPath AbstractProject project, @QueryParameter String value) {
-            YouTrackSite youTrackSite = YouTrackSite.get(project);
+            final YouTrackSite youTrackSite = YouTrackSite.get(project);
             AutoCompletionCandidates autoCompletionCandidates = new AutoCompletionCandidates();
             if (youTrackSite != null) {
-                YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
-                User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
-                if (user != null) {
-                    List<Suggestion> suggestions = youTrackServer.searchSuggestions(user, value);
+                value = emptyIfNull(value);
+                // Logs in only if the suggestions are not known yet.
+                List<Suggestion> suggestions = youTrackSite.getSuggestionCache().get(getSessionId(), value, new Function<String, List<Suggestion>>() {
+                    @Override
+                    public List<Suggestion> apply(String query) {
+                        YouTrackServer youTrackServer = youTrackSite.createServer();
+                        User user = youTrackSite.getUser(youTrackServer);
+                        if (user == null) {
+                            return null;
+                        }
+                        return youTrackServer.searchSuggestions(user, query, SuggestionCache.OPTIONS_LIMIT);
+                    }
+                });
+                if (suggestions != null) {
                     for (Suggestion suggestion : suggestions) {
                         if (suggestion.getCompletionStart() == 0) {
                             String completeSuggestion = emptyIfNull(suggestion.getPrefix()) + suggestion.getOption() + emptyIfNull(suggestion.getSuffix());
@@ -222,6 +268,16 @@ public class ExecuteCommandAction extends Builder {
             return autoCompletionCandidates;
         }
 
+        /**
+         * @return the id of the HTTP session of the current request, null if not handling a request or the request
+         * has no session. No session is created just for the suggestions.
+         */
+        private static String getSessionId() {
+            StaplerRequest request = Stapler.getCurrentRequest();
+            HttpSession session = request == null ? null : request.getSession(false);
+            return session == null ? null : session.getId();
+        }
+
 
         public String emptyIfNull(String text) {
             if (text == null) return "";
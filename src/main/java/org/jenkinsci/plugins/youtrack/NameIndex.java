@@ -0,0 +1,174 @@
+package org.jenkinsci.plugins.youtrack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index over names, like the projects or fields of a site, finding the names that contain a text ignoring case.
+ * <p>
+ * Every name is indexed by its n-grams of up to {@link #GRAM} characters. A text that short is looked up directly,
+ * a longer text only checks the names having all its n-grams. The names found are ranked: a name equal to the text
+ * first, then names starting with it, then names with a word starting with it, then the rest, shorter names first.
+ */
+class NameIndex {
+    /**
+     * Length of the longest n-grams indexed.
+     */
+    static final int GRAM = 3;
+
+    private final List<String> names;
+    private final String[] lowerNames;
+    /**
+     * For every n-gram, the indexes of the names containing it in ascending order.
+     */
+    private final Map<String, int[]> postings = new HashMap<String, int[]>();
+
+    NameIndex(List<String> names) {
+        this.names = new ArrayList<String>(names.size());
+        for (String name : names) {
+            if (name != null) {
+                this.names.add(name);
+            }
+        }
+        this.lowerNames = new String[this.names.size()];
+
+        Map<String, List<Integer>> grams = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < lowerNames.length; i++) {
+            lowerNames[i] = this.names.get(i).toLowerCase();
+            for (String gram : getGrams(lowerNames[i])) {
+                List<Integer> posting = grams.get(gram);
+                if (posting == null) {
+                    posting = new ArrayList<Integer>();
+                    grams.put(gram, posting);
+                }
+                posting.add(i);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : grams.entrySet()) {
+            int[] posting = new int[entry.getValue().size()];
+            for (int i = 0; i < posting.length; i++) {
+                posting[i] = entry.getValue().get(i);
+            }
+            postings.put(entry.getKey(), posting);
+        }
+    }
+
+    private static Set<String> getGrams(String name) {
+        Set<String> grams = new HashSet<String>();
+        for (int length = 1; length <= GRAM; length++) {
+            for (int i = 0; i + length <= name.length(); i++) {
+                grams.add(name.substring(i, i + length));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * @return the indexed names, in the order they were given.
+     */
+    List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Finds the names containing a text.
+     *
+     * @param text the text to find, null or empty for all names.
+     * @return the names containing the text ignoring case, best matches first.
+     */
+    List<String> search(String text) {
+        final String query = text == null ? "" : text.toLowerCase();
+        int[] candidates;
+        if (query.isEmpty()) {
+            candidates = new int[lowerNames.length];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = i;
+            }
+        } else if (query.length() <= GRAM) {
+            candidates = postings.get(query);
+        } else {
+            candidates = null;
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                int[] posting = postings.get(query.substring(i, i + GRAM));
+                if (posting == null) {
+                    return Collections.emptyList();
+                }
+                candidates = candidates == null ? posting : intersect(candidates, posting);
+            }
+        }
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+
+        List<Integer> found = new ArrayList<Integer>(candidates.length);
+        for (int candidate : candidates) {
+            if (lowerNames[candidate].contains(query)) {
+                found.add(candidate);
+            }
+        }
+        Collections.sort(found, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int result = rank(lowerNames[a], query) - rank(lowerNames[b], query);
+                if (result == 0) {
+                    result = lowerNames[a].length() - lowerNames[b].length();
+                }
+                if (result == 0) {
+                    result = lowerNames[a].compareTo(lowerNames[b]);
+                }
+                return result == 0 ? a - b : result;
+            }
+        });
+
+        List<String> result = new ArrayList<String>(found.size());
+        for (int index : found) {
+            result.add(names.get(index));
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Ranks how well a name containing the query matches it, lower is better.
+     */
+    private static int rank(String name, String query) {
+        if (query.isEmpty()) {
+            return 0;
+        }
+        if (name.equals(query)) {
+            return 0;
+        }
+        if (name.startsWith(query)) {
+            return 1;
+        }
+        for (int i = name.indexOf(query); i > 0; i = name.indexOf(query, i + 1)) {
+            if (!Character.isLetterOrDigit(name.charAt(i - 1))) {
+                return 2;
+            }
+        }
+        return 3;
+    }
+}
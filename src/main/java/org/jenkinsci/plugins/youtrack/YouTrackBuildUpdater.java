@@ -125,7 +125,8 @@ public class YouTrackBuildUpdater extends Recorder {
         }
 
         YouTrackServer youTrackServer = getYouTrackServer(youTrackSite);
-        User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
+        youTrackServer.setTimeBudget(youTrackSite.getTimeBudget(build));
+        User user = youTrackSite.getUser(youTrackServer);
         if (user == null || !user.isLoggedIn()) {
             listener.getLogger().println("FAILED: to log in to youtrack");
             youTrackSite.failed(build);
@@ -185,13 +186,18 @@ public class YouTrackBuildUpdater extends Recorder {
 
                 if (stable || (isMarkFixedIfUnstable() && unstable)) {
 
-                    for (String issueId : issueIds) {
-                        Issue issue = new Issue(issueId);
-
-                        environment.put("YOUTRACK_BUILD_NAME", buildName);
+                    environment.put("YOUTRACK_BUILD_NAME", buildName);
+                    String commandValue = environment.expand(buildUpdateCommand);
 
-                        String commandValue = environment.expand(buildUpdateCommand);
-                        Command command = youTrackServer.applyCommand(youTrackSite.getName(), user, issue, commandValue, null, null, null, !runSilently);
+                    List<Issue> issues = new ArrayList<Issue>();
+                    for (String issueId : issueIds) {
+                        issues.add(new Issue(issueId));
+                    }
+                    // The command is the same for all issues, so it is applied to all of them at once.
+                    List<Command> commands = youTrackServer.applyCommandToIssues(youTrackSite.getName(), user, issues, commandValue, null, null, null, !runSilently);
+                    for (int i = 0; i < commands.size(); i++) {
+                        String issueId = issueIds.get(i);
+                        Command command = commands.get(i);
                         if (command.getStatus() == Command.Status.OK) {
                             listener.getLogger().println("Updated Fixed in build to " + buildName + " for " + issueId);
                         } else {
@@ -209,7 +215,7 @@ public class YouTrackBuildUpdater extends Recorder {
     }
 
     YouTrackServer getYouTrackServer(YouTrackSite youTrackSite) {
-        return new YouTrackServer(youTrackSite.getUrl());
+        return youTrackSite.createServer();
     }
 
     YouTrackSite getYouTrackSite(AbstractBuild<?, ?> build) {
@@ -239,16 +245,20 @@ public class YouTrackBuildUpdater extends Recorder {
             YouTrackSite youTrackSite = YouTrackSite.get(project);
             AutoCompletionCandidates autoCompletionCandidates = new AutoCompletionCandidates();
             if (youTrackSite != null) {
-                YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
-                User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
-                if (user != null) {
-                    List<BuildBundle> bundles = youTrackServer.getBuildBundles(user);
-                    for (BuildBundle bundle : bundles) {
-                        if (bundle.getName().toLowerCase().contains(value.toLowerCase())) {
-                            autoCompletionCandidates.add(bundle.getName());
+                YouTrackProjectProperty.addCandidates(autoCompletionCandidates, youTrackSite.getNameIndex("buildBundles", new YouTrackSite.NameReader() {
+                    @Override
+                    public List<String> read(YouTrackServer youTrackServer, User user) {
+                        List<BuildBundle> bundles = youTrackServer.getBuildBundles(user);
+                        if (bundles == null) {
+                            return null;
+                        }
+                        List<String> names = new ArrayList<String>();
+                        for (BuildBundle bundle : bundles) {
+                            names.add(bundle.getName());
                         }
+                        return names;
                     }
-                }
+                }), value);
             }
             return autoCompletionCandidates;
         }
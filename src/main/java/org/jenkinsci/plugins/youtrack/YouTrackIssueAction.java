@@ -76,7 +76,7 @@ public class YouTrackIssueAction implements Action {
                 }
 
                 YouTrackServer youTrackServer = getYouTrackServer(youTrackSite);
-                User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
+                User user = youTrackSite.getUser(youTrackServer);
                 if (user == null || !user.isLoggedIn()) {
                     rsp.getWriter().write("Could not log in to YouTrack");
                     return;
@@ -105,7 +105,7 @@ public class YouTrackIssueAction implements Action {
     }
 
     YouTrackServer getYouTrackServer(YouTrackSite youTrackSite) {
-        return new YouTrackServer(youTrackSite.getUrl());
+        return youTrackSite.createServer();
     }
 
     YouTrackSite getYouTrackSite() {
@@ -2,6 +2,7 @@ package org.jenkinsci.plugins.youtrack;
 
 import hudson.Plugin;
 import org.apache.commons.beanutils.Converter;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackTransport;
 import org.kohsuke.stapler.Stapler;
 
 /**
@@ -34,6 +35,7 @@ public class YouTrackPlugin extends Plugin {
     @Override
     public void stop() throws Exception {
         scmListener.unregister();
+        YouTrackTransport.shutdownAll();
         super.stop();
     }
 
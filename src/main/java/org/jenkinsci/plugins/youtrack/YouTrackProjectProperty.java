@@ -4,6 +4,8 @@ import hudson.Extension;
 import hudson.model.*;
 import hudson.util.CopyOnWriteList;
 import hudson.util.FormValidation;
+import hudson.util.Secret;
+import jenkins.model.Jenkins;
 import lombok.Getter;
 import lombok.Setter;
 import net.sf.json.JSONObject;
@@ -16,6 +18,7 @@ import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 
 import javax.servlet.ServletException;
 import java.io.IOException;
@@ -135,6 +138,11 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
     }
 
     public static final class DescriptorImpl extends JobPropertyDescriptor {
+        public static final int DEFAULT_RETRIES = 2;
+        public static final int DEFAULT_CIRCUIT_BREAKER_THRESHOLD = 5;
+        public static final int DEFAULT_CIRCUIT_BREAKER_COOL_DOWN = 30;
+        public static final int DEFAULT_METADATA_CACHE_TTL = 300;
+
         private final CopyOnWriteList<YouTrackSite> sites = new CopyOnWriteList<YouTrackSite>();
 
         @Override
@@ -197,17 +205,10 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
             YouTrackSite youTrackSite = YouTrackSite.get(project);
             AutoCompletionCandidates autoCompletionCandidates = new AutoCompletionCandidates();
             if (youTrackSite != null) {
-                YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
-                User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
+                YouTrackServer youTrackServer = youTrackSite.createServer();
+                User user = youTrackSite.getUser(youTrackServer);
                 if (user != null && user.isLoggedIn()) {
-                    List<Project> projects = youTrackServer.getProjects(user);
-                    for (Project youtrackProject : projects) {
-                        if (value == null || value.equals("")) {
-                            autoCompletionCandidates.add(value);
-                        } else if (youtrackProject.getShortName().toLowerCase().contains(value.toLowerCase())) {
-                            autoCompletionCandidates.add(youtrackProject.getShortName());
-                        }
-                    }
+                    addProjects(autoCompletionCandidates, youTrackSite, youTrackServer, user, value);
                 }
             }
             return autoCompletionCandidates;
@@ -220,11 +221,11 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
                 @Override
                 protected FormValidation check() throws IOException, ServletException {
                     YouTrackServer youTrackServer = new YouTrackServer(value);
-                    String[] version = youTrackServer.getVersion();
-                    if (version == null) {
+                    ServerCapabilities capabilities = youTrackServer.probeCapabilities();
+                    if (capabilities == null) {
                         return FormValidation.warning("Could not get version, maybe because version is below 4.x");
                     } else {
-                        return FormValidation.ok();
+                        return FormValidation.ok("YouTrack " + capabilities.getVersion() + " (" + capabilities.getFeatures() + ")");
                     }
                 }
             }.check();
@@ -234,10 +235,19 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
         public FormValidation doTestConnection(
                 @QueryParameter("youtrack.url") final String url,
                 @QueryParameter("youtrack.username") final String username,
-                @QueryParameter("youtrack.password") final String password) {
+                @QueryParameter("youtrack.password") final String password,
+                @QueryParameter("youtrack.token") final String token) {
 
             YouTrackServer youTrackServer = new YouTrackServer(url);
-            if (username != null && !username.equals("")) {
+            if (token != null && !token.equals("")) {
+                User tokenUser = new SessionManager(username, null, Secret.toString(Secret.fromString(token))).getUser(youTrackServer);
+                User current = youTrackServer.getCurrentUser(tokenUser);
+                if (current != null) {
+                    return FormValidation.ok("Connection ok!");
+                } else {
+                    return FormValidation.error("Could not authenticate with given token");
+                }
+            } else if (username != null && !username.equals("")) {
                 User login = youTrackServer.login(username, password);
                 if (login != null && login.isLoggedIn()) {
                     return FormValidation.ok("Connection ok!");
@@ -249,6 +259,31 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
             }
         }
 
+        @SuppressWarnings("UnusedDeclaration")
+        @RequirePOST
+        public FormValidation doFlushCache(@QueryParameter("youtrack.name") final String name) {
+            Jenkins instance = Jenkins.getInstance();
+            if (instance != null) {
+                instance.checkPermission(Jenkins.ADMINISTER);
+            }
+            for (YouTrackSite site : sites) {
+                if (site.getName() != null && site.getName().equals(name)) {
+                    site.getUserCache().clear();
+                    BuildBundleCache buildBundleCache = site.getBuildBundleCache();
+                    if (buildBundleCache != null) {
+                        buildBundleCache.clear();
+                    }
+                    MetadataCache metadataCache = site.getMetadataCache();
+                    if (metadataCache == null) {
+                        return FormValidation.ok("Metadata is not cached");
+                    }
+                    metadataCache.clear();
+                    return FormValidation.ok("Cache flushed");
+                }
+            }
+            return FormValidation.warning("Save the site before flushing its cache");
+        }
+
 
         @SuppressWarnings("UnusedDeclaration")
         public AutoCompletionCandidates doAutoCompleteLinkVisibility(@AncestorInPath AbstractProject project, @QueryParameter String value) {
@@ -265,18 +300,21 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
             YouTrackSite youTrackSite = YouTrackSite.get(project);
             AutoCompletionCandidates autoCompletionCandidates = new AutoCompletionCandidates();
             if (youTrackSite != null) {
-                YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
-                User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
-                if (user != null) {
-                    StateBundle bundle = youTrackServer.getStateBundleForField(user, youTrackSite.getStateFieldName());
-                    if (bundle != null) {
+                final String stateFieldName = youTrackSite.getStateFieldName();
+                addCandidates(autoCompletionCandidates, youTrackSite.getNameIndex("states " + stateFieldName, new YouTrackSite.NameReader() {
+                    @Override
+                    public List<String> read(YouTrackServer youTrackServer, User user) {
+                        StateBundle bundle = youTrackServer.getStateBundleForField(user, stateFieldName);
+                        if (bundle == null) {
+                            return null;
+                        }
+                        List<String> names = new ArrayList<String>();
                         for (State state : bundle.getStates()) {
-                            if (state.getValue().toLowerCase().contains(value.toLowerCase())) {
-                                autoCompletionCandidates.add(state.getValue());
-                            }
+                            names.add(state.getValue());
                         }
+                        return names;
                     }
-                }
+                }), value);
             }
             return autoCompletionCandidates;
         }
@@ -291,34 +329,52 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
         YouTrackSite youTrackSite = YouTrackSite.get(project);
         AutoCompletionCandidates autoCompletionCandidates = new AutoCompletionCandidates();
         if (youTrackSite != null) {
-            YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
-            User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
-            if (user != null) {
-                List<Project> projects = youTrackServer.getProjects(user);
-                for (Project youtrackProject : projects) {
-                    if(youtrackProject.getShortName().toLowerCase().contains(value.toLowerCase())) {
-                        autoCompletionCandidates.add(youtrackProject.getShortName());
+            addCandidates(autoCompletionCandidates, youTrackSite.getNameIndex("projects", new YouTrackSite.NameReader() {
+                @Override
+                public List<String> read(YouTrackServer youTrackServer, User user) {
+                    List<Project> projects = youTrackServer.getProjects(user);
+                    if (projects == null) {
+                        return null;
+                    }
+                    List<String> names = new ArrayList<String>();
+                    for (Project youtrackProject : projects) {
+                        names.add(youtrackProject.getShortName());
                     }
+                    return names;
                 }
-            }
+            }), value);
         }
         return autoCompletionCandidates;
     }
 
+    /**
+     * Adds the names containing the value, best matches first.
+     *
+     * @param nameIndex the index over the names, null if it is not built yet.
+     */
+    static void addCandidates(AutoCompletionCandidates autoCompletionCandidates, NameIndex nameIndex, String value) {
+        if (nameIndex == null) {
+            return;
+        }
+        for (String name : nameIndex.search(value)) {
+            autoCompletionCandidates.add(name);
+        }
+    }
+
     public static AutoCompletionCandidates getFields(@AncestorInPath AbstractProject project, @QueryParameter String value) {
         YouTrackSite youTrackSite = YouTrackSite.get(project);
         AutoCompletionCandidates autoCompletionCandidates = new AutoCompletionCandidates();
         if (youTrackSite != null) {
-            YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
-            User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
-            if (user != null) {
-                List<Field> fields = youTrackServer.getFields(user);
-                for (Field field : fields) {
-                    if (field.getName().toLowerCase().contains(value.toLowerCase())) {
-                        autoCompletionCandidates.add(field.getName());
+            addCandidates(autoCompletionCandidates, youTrackSite.getNameIndex("fields", new YouTrackSite.NameReader() {
+                @Override
+                public List<String> read(YouTrackServer youTrackServer, User user) {
+                    List<String> names = new ArrayList<String>();
+                    for (Field field : youTrackServer.getFields(user)) {
+                        names.add(field.getName());
                     }
+                    return names;
                 }
-            }
+            }), value);
         }
         return autoCompletionCandidates;
     }
@@ -327,16 +383,16 @@ public class YouTrackProjectProperty extends JobProperty<AbstractProject<?, ?>>
         YouTrackSite youTrackSite = YouTrackSite.get(project);
         AutoCompletionCandidates autoCompletionCandidates = new AutoCompletionCandidates();
         if (youTrackSite != null) {
-            YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
-            User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
-            if (user != null) {
-                List<Group> groups = youTrackServer.getGroups(user);
-                for (Group group : groups) {
-                    if (group.getName().toLowerCase().contains(value.toLowerCase())) {
-                        autoCompletionCandidates.add(group.getName());
+            addCandidates(autoCompletionCandidates, youTrackSite.getNameIndex("groups", new YouTrackSite.NameReader() {
+                @Override
+                public List<String> read(YouTrackServer youTrackServer, User user) {
+                    List<String> names = new ArrayList<String>();
+                    for (Group group : youTrackServer.getGroups(user)) {
+                        names.add(group.getName());
                     }
+                    return names;
                 }
-            }
+            }), value);
         }
         return autoCompletionCandidates;
     }
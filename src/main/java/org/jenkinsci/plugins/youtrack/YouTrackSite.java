@@ -7,19 +7,86 @@ import lombok.Getter;
 import lombok.Setter;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.youtrack.YouTrackProjectProperty.DescriptorImpl;
+import org.jenkinsci.plugins.youtrack.youtrackapi.BuildBundleCache;
+import org.jenkinsci.plugins.youtrack.youtrackapi.CircuitBreaker;
+import org.jenkinsci.plugins.youtrack.youtrackapi.MetadataCache;
+import org.jenkinsci.plugins.youtrack.youtrackapi.RequestExecutor;
+import org.jenkinsci.plugins.youtrack.youtrackapi.RequestLimiter;
+import org.jenkinsci.plugins.youtrack.youtrackapi.ResponseCache;
+import org.jenkinsci.plugins.youtrack.youtrackapi.ServerCapabilities;
+import org.jenkinsci.plugins.youtrack.youtrackapi.SessionManager;
+import org.jenkinsci.plugins.youtrack.youtrackapi.SingleFlight;
+import org.jenkinsci.plugins.youtrack.youtrackapi.SuggestionCache;
+import org.jenkinsci.plugins.youtrack.youtrackapi.TimeBudget;
 import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.UserCache;
 import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackTransport;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
 
 public class YouTrackSite {
     @Getter @Setter private String name;
     @Getter @Setter private String url;
     @Getter @Setter private String username;
     @Getter @Setter private Secret password;
+    /**
+     * Permanent token used instead of username and password, null or empty to log in with username and password.
+     */
+    @Getter @Setter private Secret token;
+    /**
+     * Time in seconds to wait for a connection to the server, 0 for the default.
+     */
+    @Getter @Setter private int connectTimeout;
+    /**
+     * Time in seconds to wait for data from the server, 0 for the default.
+     */
+    @Getter @Setter private int readTimeout;
+    /**
+     * Total time in seconds a build may spend on YouTrack requests, 0 for no limit.
+     */
+    @Getter @Setter private int buildTimeBudget;
+    /**
+     * Number of times a failed request is retried if it is safe to repeat.
+     */
+    @Getter @Setter private Integer retries;
+    /**
+     * Number of consecutive failed requests after which requests are suspended, 0 to never suspend.
+     */
+    @Getter @Setter private Integer circuitBreakerThreshold;
+    /**
+     * Time in seconds requests are suspended.
+     */
+    @Getter @Setter private Integer circuitBreakerCoolDown;
+    /**
+     * Maximum number of requests to the site at the same time, 0 for no limit.
+     */
+    @Getter @Setter private int maxInFlight;
+    /**
+     * Maximum number of requests to the site per second, 0 for no limit.
+     */
+    @Getter @Setter private int rateLimit;
+    /**
+     * True to request uncompressed responses from the server.
+     */
+    @Getter @Setter private boolean disableCompression;
+    /**
+     * The API issues are read through: {@link #JSON_API_AUTO} to use the /api JSON API once the server is known to
+     * support it, {@link #JSON_API_ON} to always use it, {@link #JSON_API_OFF} to always use the legacy /rest XML API.
+     */
+    @Getter @Setter private String jsonApi;
+    /**
+     * Time in seconds projects, custom fields, groups and bundles read from the server are reused, 0 to always read
+     * them from the server.
+     */
+    @Getter @Setter private Integer metadataCacheTtl;
     @Getter @Setter private transient boolean pluginEnabled;
     @Getter @Setter private transient boolean runAsEnabled;
     @Getter @Setter private transient boolean commandsEnabled;
@@ -36,13 +103,118 @@ public class YouTrackSite {
     @Getter @Setter private transient List<PrefixCommandPair> prefixCommandPairs;
     @Getter @Setter private boolean trackCommits;
     @Getter @Setter private YoutrackBuildFailureMode failureMode;
+    /**
+     * The login session shared by all builds using this site.
+     */
+    private transient SessionManager sessionManager;
+    /**
+     * The executor running asynchronous requests to this site.
+     */
+    private transient RequestExecutor executor;
+    /**
+     * The circuit breaker shared by all builds using this site.
+     */
+    private transient CircuitBreaker circuitBreaker;
+    /**
+     * The request limiter shared by all builds using this site.
+     */
+    private transient RequestLimiter requestLimiter;
+    /**
+     * The metadata cache shared by all builds using this site.
+     */
+    private transient MetadataCache metadataCache;
+    /**
+     * The suggestions for search queries shared by all users of this site.
+     */
+    private transient SuggestionCache suggestionCache;
+    /**
+     * The logins of users by e-mail address shared by all builds using this site.
+     */
+    private transient UserCache userCache;
+    /**
+     * The build bundles of fields and the builds in them shared by all builds using this site.
+     */
+    private transient BuildBundleCache buildBundleCache;
+    /**
+     * The features the server of this site supports, null until probed.
+     */
+    private transient ServerCapabilities capabilities;
+    /**
+     * The url the capabilities were probed for.
+     */
+    private transient String capabilitiesUrl;
+    /**
+     * Time in milliseconds since the epoch the server was last probed, 0 if never.
+     */
+    private transient long probeStartedAt;
+    public static final String JSON_API_AUTO = "auto";
+    public static final String JSON_API_ON = "on";
+    public static final String JSON_API_OFF = "off";
+    /**
+     * Time in milliseconds after which the capabilities of the server are probed again.
+     */
+    static final long PROBE_INTERVAL = Long.getLong(YouTrackSite.class.getName() + ".probeInterval", 60 * 60 * 1000L);
+    /**
+     * Time in milliseconds after which a failed probe is repeated.
+     */
+    static final long PROBE_RETRY = Long.getLong(YouTrackSite.class.getName() + ".probeRetry", 60 * 1000L);
+    /**
+     * The time budgets of running builds, shared by all build steps of a build.
+     */
+    private static final Map<Run<?, ?>, TimeBudget> TIME_BUDGETS = new WeakHashMap<Run<?, ?>, TimeBudget>();
 
-    @DataBoundConstructor
     public YouTrackSite(String name, String username, Secret password, String url) {
+        this(name, username, password, url, null);
+    }
+
+    public YouTrackSite(String name, String username, Secret password, String url, Secret token) {
+        this(name, username, password, url, token, 0, 0, 0, DescriptorImpl.DEFAULT_RETRIES, DescriptorImpl.DEFAULT_CIRCUIT_BREAKER_THRESHOLD,
+                DescriptorImpl.DEFAULT_CIRCUIT_BREAKER_COOL_DOWN, 0, 0, false, JSON_API_AUTO, DescriptorImpl.DEFAULT_METADATA_CACHE_TTL);
+    }
+
+    @DataBoundConstructor
+    public YouTrackSite(String name, String username, Secret password, String url, Secret token, int connectTimeout, int readTimeout, int buildTimeBudget,
+                        int retries, int circuitBreakerThreshold, int circuitBreakerCoolDown, int maxInFlight, int rateLimit,
+                        boolean disableCompression, String jsonApi, int metadataCacheTtl) {
         this.username = username;
         this.password = password;
         this.url = url;
         this.name = name;
+        this.token = token;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.buildTimeBudget = buildTimeBudget;
+        this.retries = retries;
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+        this.circuitBreakerCoolDown = circuitBreakerCoolDown;
+        this.maxInFlight = maxInFlight;
+        this.rateLimit = rateLimit;
+        this.disableCompression = disableCompression;
+        this.jsonApi = jsonApi == null || jsonApi.isEmpty() ? JSON_API_AUTO : jsonApi;
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    protected Object readResolve() {
+        // Sites saved with the JSON API as a checkbox used it when checked, and otherwise left it to the server.
+        if (jsonApi == null || "false".equals(jsonApi)) {
+            jsonApi = JSON_API_AUTO;
+        } else if ("true".equals(jsonApi)) {
+            jsonApi = JSON_API_ON;
+        }
+        // Sites saved before these settings existed get the defaults of the configuration page.
+        if (retries == null) {
+            retries = DescriptorImpl.DEFAULT_RETRIES;
+        }
+        if (circuitBreakerThreshold == null) {
+            circuitBreakerThreshold = DescriptorImpl.DEFAULT_CIRCUIT_BREAKER_THRESHOLD;
+        }
+        if (circuitBreakerCoolDown == null) {
+            circuitBreakerCoolDown = DescriptorImpl.DEFAULT_CIRCUIT_BREAKER_COOL_DOWN;
+        }
+        if (metadataCacheTtl == null) {
+            metadataCacheTtl = DescriptorImpl.DEFAULT_METADATA_CACHE_TTL;
+        }
+        return this;
     }
 
     public static YouTrackSite get(Job<?, ?> project) {
@@ -89,15 +261,285 @@ public class YouTrackSite {
     }
 
     public YouTrackServer createServer() {
-        return new YouTrackServer(getUrl());
+        YouTrackServer server = new YouTrackServer(getUrl());
+        server.setSessionManager(getSessionManager());
+        server.setTimeouts(connectTimeout * 1000, readTimeout * 1000);
+        server.setExecutor(getExecutor());
+        server.setFailureHandling(retries, getCircuitBreaker());
+        server.setRequestLimiter(getRequestLimiter());
+        server.setCompression(!disableCompression);
+        server.setMetadataCache(getMetadataCache());
+        server.setUserCache(getUserCache());
+        server.setBuildBundleCache(getBuildBundleCache());
+        if (JSON_API_ON.equals(jsonApi)) {
+            server.setJsonApi(true);
+        } else if (!JSON_API_OFF.equals(jsonApi)) {
+            ServerCapabilities serverCapabilities = getCapabilities();
+            server.setJsonApi(serverCapabilities != null && serverCapabilities.isJsonApi());
+        }
+        return server;
+    }
+
+    /**
+     * Gets the features the server of this site is known to support, without probing the server.
+     *
+     * @return the capabilities of the server, null if not probed yet.
+     */
+    public synchronized ServerCapabilities getProbedCapabilities() {
+        return url != null && url.equals(capabilitiesUrl) ? capabilities : null;
+    }
+
+    /**
+     * Gets the features the server of this site supports. The server is probed in the background the first time, when
+     * the url changes, and again every {@link #PROBE_INTERVAL}, so this never waits for the server.
+     *
+     * @return the capabilities of the server, null if not known yet.
+     */
+    public ServerCapabilities getCapabilities() {
+        final String probeUrl;
+        ServerCapabilities current;
+        synchronized (this) {
+            if (url == null) {
+                return null;
+            }
+            if (!url.equals(capabilitiesUrl)) {
+                capabilities = null;
+                capabilitiesUrl = url;
+                probeStartedAt = 0;
+            }
+            current = capabilities;
+            long now = System.currentTimeMillis();
+            if (now - probeStartedAt < (current == null ? PROBE_RETRY : PROBE_INTERVAL)) {
+                return current;
+            }
+            probeStartedAt = now;
+            probeUrl = url;
+        }
+        getExecutor().submit(new Supplier<ServerCapabilities>() {
+            @Override
+            public ServerCapabilities get() {
+                YouTrackServer server = new YouTrackServer(probeUrl);
+                server.setTimeouts(connectTimeout * 1000, readTimeout * 1000);
+                ServerCapabilities probed = server.probeCapabilities();
+                synchronized (YouTrackSite.this) {
+                    if (probed != null && probeUrl.equals(capabilitiesUrl)) {
+                        capabilities = probed;
+                    }
+                }
+                return probed;
+            }
+        });
+        return current;
+    }
+
+    /**
+     * Gets the merging of identical requests to the server of this site, shared by all sites with the same url.
+     *
+     * @return the single flight of the server, null if no url is set.
+     */
+    public SingleFlight getSingleFlight() {
+        return url == null ? null : YouTrackTransport.forUrl(url).getSingleFlight();
+    }
+
+    /**
+     * Gets the responses to reads kept for conditional requests to the server of this site, shared by all sites with
+     * the same url.
+     *
+     * @return the response cache of the server, null if no url is set.
+     */
+    public ResponseCache getResponseCache() {
+        return url == null ? null : YouTrackTransport.forUrl(url).getResponseCache();
+    }
+
+    /**
+     * Gets the limiter of concurrent requests and request rate of this site.
+     *
+     * @return the limiter, null if requests are not limited.
+     */
+    public synchronized RequestLimiter getRequestLimiter() {
+        if (requestLimiter == null && (maxInFlight > 0 || rateLimit > 0)) {
+            requestLimiter = new RequestLimiter(maxInFlight, rateLimit);
+        }
+        return requestLimiter;
+    }
+
+    /**
+     * Gets the cache of the projects, custom fields, groups and bundles of this site.
+     *
+     * @return the metadata cache, null if metadata is always read from the server.
+     */
+    public synchronized MetadataCache getMetadataCache() {
+        if (metadataCache == null && metadataCacheTtl > 0) {
+            metadataCache = new MetadataCache(metadataCacheTtl * 1000L, getExecutor());
+        }
+        return metadataCache;
+    }
+
+    /**
+     * Reads the names of a kind of metadata from the server.
+     */
+    interface NameReader {
+        /**
+         * @return the names, null if they could not be read.
+         */
+        List<String> read(YouTrackServer server, User user);
+    }
+
+    /**
+     * Gets the index over names of metadata of this site used for auto-completion. The index is kept in the metadata
+     * cache and built or refreshed in the background, so completing a name never waits for the server: while the
+     * index is built, the expired index or none is returned.
+     *
+     * @param kind   the kind of metadata, like projects or fields.
+     * @param reader reads the names.
+     * @return the index over the names, null if it is not built yet.
+     */
+    NameIndex getNameIndex(String kind, final NameReader reader) {
+        Supplier<NameIndex> loader = new Supplier<NameIndex>() {
+            @Override
+            public NameIndex get() {
+                YouTrackServer server = createServer();
+                User user = getUser(server);
+                if (user == null) {
+                    return null;
+                }
+                List<String> names = reader.read(server, user);
+                return names == null ? null : new NameIndex(names);
+            }
+        };
+        MetadataCache metadataCache = getMetadataCache();
+        if (metadataCache == null) {
+            return loader.get();
+        }
+        return metadataCache.getNow("names\n" + kind, loader);
+    }
+
+    /**
+     * Gets the suggestions for search queries of this site.
+     *
+     * @return the suggestion cache.
+     */
+    public synchronized SuggestionCache getSuggestionCache() {
+        if (suggestionCache == null) {
+            suggestionCache = new SuggestionCache(getExecutor());
+        }
+        return suggestionCache;
+    }
+
+    /**
+     * Gets the logins of users by e-mail address of this site, used to apply commands as the author of a commit.
+     *
+     * @return the user cache.
+     */
+    public synchronized UserCache getUserCache() {
+        if (userCache == null) {
+            userCache = new UserCache();
+        }
+        return userCache;
+    }
+
+    /**
+     * Gets the build bundles of fields and the builds in them of this site, used to add builds to bundles. They are
+     * kept as long as the other metadata of the site.
+     *
+     * @return the build bundle cache, null if metadata is always read from the server.
+     */
+    public synchronized BuildBundleCache getBuildBundleCache() {
+        if (buildBundleCache == null && metadataCacheTtl > 0) {
+            buildBundleCache = new BuildBundleCache(metadataCacheTtl * 1000L);
+        }
+        return buildBundleCache;
+    }
+
+    /**
+     * Gets the circuit breaker suspending requests to this site after repeated failures.
+     *
+     * @return the circuit breaker, null if requests are never suspended.
+     */
+    public synchronized CircuitBreaker getCircuitBreaker() {
+        if (circuitBreaker == null && circuitBreakerThreshold > 0) {
+            circuitBreaker = new CircuitBreaker(circuitBreakerThreshold, circuitBreakerCoolDown * 1000L);
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * Gets the executor running the asynchronous requests of all servers created for this site.
+     *
+     * @return the executor.
+     */
+    public synchronized RequestExecutor getExecutor() {
+        if (executor == null) {
+            executor = new RequestExecutor(name);
+        }
+        return executor;
+    }
+
+    /**
+     * Creates a server for requests made by the build, consuming the time budget of the build.
+     *
+     * @param run the build.
+     * @return the server.
+     */
+    public YouTrackServer createServer(Run<?, ?> run) {
+        YouTrackServer server = createServer();
+        server.setTimeBudget(getTimeBudget(run));
+        return server;
+    }
+
+    /**
+     * Gets the time budget of the build, started by the first build step asking for it.
+     *
+     * @param run the build.
+     * @return the time budget, null if builds are not limited.
+     */
+    public TimeBudget getTimeBudget(Run<?, ?> run) {
+        if (buildTimeBudget <= 0 || run == null) {
+            return null;
+        }
+        synchronized (TIME_BUDGETS) {
+            TimeBudget timeBudget = TIME_BUDGETS.get(run);
+            if (timeBudget == null) {
+                timeBudget = new TimeBudget(buildTimeBudget * 1000L);
+                TIME_BUDGETS.put(run, timeBudget);
+            }
+            return timeBudget;
+        }
+    }
+
+    /**
+     * Gets the manager of the login session for this site, replacing it if the credentials have changed.
+     *
+     * @return the session manager.
+     */
+    public synchronized SessionManager getSessionManager() {
+        String plainPassword = password == null ? null : password.getPlainText();
+        String plainToken = token == null ? null : token.getPlainText();
+        if (sessionManager == null || !sessionManager.matches(username, plainPassword, plainToken)) {
+            sessionManager = new SessionManager(username, plainPassword, plainToken);
+        }
+        return sessionManager;
+    }
+
+    /**
+     * @return true if this site authenticates with a permanent token instead of logging in.
+     */
+    public boolean isTokenAuthentication() {
+        return token != null && !token.getPlainText().isEmpty();
     }
 
     public User getUser() { return getUser(null); }
 
+    /**
+     * Gets the logged in user for this site, reusing the shared session if there is one.
+     *
+     * @param server the server to log in to if needed, null to create one.
+     * @return the user, null if login failed.
+     */
     public User getUser(YouTrackServer server) {
         if(server==null)
             server = createServer();
 
-        return server.login(getUsername(), getPassword());
+        return getSessionManager().getUser(server);
     }
 }
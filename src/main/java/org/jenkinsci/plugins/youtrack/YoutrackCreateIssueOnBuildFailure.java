@@ -78,7 +78,8 @@ public class YoutrackCreateIssueOnBuildFailure extends Notifier {
 
         if (shouldCreateIssue(build)) {
             YouTrackServer server = getYouTrackServer(youTrackSite);
-            User user = server.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
+            server.setTimeBudget(youTrackSite.getTimeBudget(build));
+            User user = youTrackSite.getUser(server);
             if (user == null) {
                 listener.getLogger().println("Could not login user to YouTrack");
                 return true;
@@ -128,7 +129,7 @@ public class YoutrackCreateIssueOnBuildFailure extends Notifier {
     }
 
     YouTrackServer getYouTrackServer(YouTrackSite youTrackSite) {
-        return new YouTrackServer(youTrackSite.getUrl());
+        return youTrackSite.createServer();
     }
 
     YouTrackSite getYouTrackSite(AbstractBuild<?, ?> build) {
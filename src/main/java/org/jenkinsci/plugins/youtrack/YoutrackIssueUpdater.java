@@ -17,6 +17,7 @@ import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
 import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.IssueField;
 import org.jenkinsci.plugins.youtrack.youtrackapi.Project;
 import org.jenkinsci.plugins.youtrack.youtrackapi.User;
 import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
@@ -42,6 +43,22 @@ public class YoutrackIssueUpdater {
         private final U second;
     }
 
+    /**
+     * A command found in a commit message.
+     */
+    @Data
+    private static class IssueCommand {
+        private final String issueId;
+        private final String command;
+        private final String comment;
+        private final boolean silent;
+        private final ChangeLogSet.Entry changeLogEntry;
+        /**
+         * The link comment to send with the command instead of on its own, null if none.
+         */
+        private String linkComment;
+    }
+
     /**
      * Converts list of commands to map.
      *
@@ -90,7 +107,8 @@ public class YoutrackIssueUpdater {
         Iterator<? extends ChangeLogSet.Entry> changeLogIterator = changeLogSet.iterator();
 
         YouTrackServer youTrackServer = getYouTrackServer(youTrackSite);
-        User user = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
+        youTrackServer.setTimeBudget(youTrackSite.getTimeBudget(build));
+        User user = youTrackSite.getUser(youTrackServer);
         if (user == null || !user.isLoggedIn()) {
             listener.getLogger().append("FAILED: log in with set YouTrack user");
             youTrackSite.failed(build);
@@ -99,7 +117,7 @@ public class YoutrackIssueUpdater {
     }
 
     YouTrackServer getYouTrackServer(YouTrackSite youTrackSite) {
-        return new YouTrackServer(youTrackSite.getUrl());
+        return youTrackSite.createServer();
     }
 
     YouTrackSite getYouTrackSite(AbstractBuild<?, ?> build) {
@@ -148,8 +166,8 @@ public class YoutrackIssueUpdater {
         } catch (InterruptedException e) {
 //            LOGGER.error(e, e);
         }
+        ArrayListMultimap<Issue, ChangeLogSet.Entry> relatedChanges = ArrayListMultimap.create();
         if (youTrackSite.isCommentEnabled()) {
-            ArrayListMultimap<Issue, ChangeLogSet.Entry> relatedChanges = ArrayListMultimap.create();
             for (ChangeLogSet.Entry entry : changeLogEntries) {
                 String msg = getMessage(scm, entry, listener, environment, build);
 
@@ -158,17 +176,21 @@ public class YoutrackIssueUpdater {
                     relatedChanges.put(issue, entry);
                 }
             }
-
-            for (Issue relatedIssue : relatedChanges.keySet()) {
-                List<ChangeLogSet.Entry> entries = relatedChanges.get(relatedIssue);
-                List<Command> commands = addComment(build, youTrackSite, youTrackServer, user, relatedIssue, entries, listener);
-                for (Command command : commands) {
-                    commandAction.addCommand(command);
-                }
-            }
         }
 
 
+        Jenkins instance = Jenkins.getInstance();
+        YouTrackPlugin plugin = null;
+        if (instance != null) {
+            plugin = instance.getPlugin(YouTrackPlugin.class);
+        }
+        YoutrackProcessedRevisionsSaver revisionsSaver = null;
+        if (plugin != null) {
+            revisionsSaver = plugin.getRevisionsSaver();
+        }
+
+        List<Pair<ChangeLogSet.Entry, List<IssueCommand>>> entryCommands = new ArrayList<Pair<ChangeLogSet.Entry, List<IssueCommand>>>();
+        Set<String> issueIds = new LinkedHashSet<String>();
         for ( ChangeLogSet.Entry entry : changeLogEntries) {
             String msg = getMessage(scm, entry, listener, environment, build);
 
@@ -182,30 +204,70 @@ public class YoutrackIssueUpdater {
                     }
                 }
 
-                Jenkins instance = Jenkins.getInstance();
-                YouTrackPlugin plugin = null;
-                if (instance != null) {
-                    plugin = instance.getPlugin(YouTrackPlugin.class);
-                }
-                YoutrackProcessedRevisionsSaver revisionsSaver = null;
-                if (plugin != null) {
-                    revisionsSaver = plugin.getRevisionsSaver();
-                }
                 if ((youTrackSite.isTrackCommits() && (revisionsSaver != null && !revisionsSaver.isProcessed(entry.getCommitId()))) || !youTrackSite.isTrackCommits()) {
-                    List<Command> commandList = executeCommandsIfEnabled(build, listener, youTrackSite, youTrackServer, user, youtrackProjects, fixedIssues, entry, msg);
-                    for (Command command : commandList) {
-                        commandAction.addCommand(command);
-                    }
-                    if (youTrackSite.isTrackCommits() && !commandList.isEmpty()) {
-                        if (revisionsSaver != null) {
-                            revisionsSaver.addProcessed(entry.getCommitId());
-                        }
+                    List<IssueCommand> issueCommands = findCommandsIfEnabled(build, listener, youTrackSite, youtrackProjects, entry, msg);
+                    entryCommands.add(new Pair<ChangeLogSet.Entry, List<IssueCommand>>(entry, issueCommands));
+                    for (IssueCommand issueCommand : issueCommands) {
+                        issueIds.add(issueCommand.getIssueId());
                     }
                 }
             }
 
         }
 
+        Map<String, IssueCommand> firstCommands = new HashMap<String, IssueCommand>();
+        for (Pair<ChangeLogSet.Entry, List<IssueCommand>> entryCommand : entryCommands) {
+            for (IssueCommand issueCommand : entryCommand.getSecond()) {
+                if (!firstCommands.containsKey(issueCommand.getIssueId())) {
+                    firstCommands.put(issueCommand.getIssueId(), issueCommand);
+                }
+            }
+        }
+        for (Issue relatedIssue : relatedChanges.keySet()) {
+            List<ChangeLogSet.Entry> entries = relatedChanges.get(relatedIssue);
+            String commentText = getCommentText(build, youTrackSite, entries, listener);
+            IssueCommand firstCommand = firstCommands.get(relatedIssue.getId());
+            if (firstCommand != null && canAddLinkComment(youTrackSite, firstCommand, commentText)) {
+                // Sent with the first command for the issue, in the same request.
+                firstCommand.setLinkComment(commentText);
+                continue;
+            }
+            List<Command> commands = addComment(build, youTrackSite, youTrackServer, user, relatedIssue, commentText, listener);
+            for (Command command : commands) {
+                commandAction.addCommand(command);
+            }
+        }
+
+        // The states of all issues the commands are applied to are read in bulk before and after applying them, to
+        // know which issues the commands fixed instead of trying to interpret the commands. This means however that
+        // the user can change the state in between, so the state after can be affected by something else than the
+        // commands.
+        Map<String, Issue> before = getStates(youTrackSite, youTrackServer, user, issueIds);
+        if (youTrackSite.isRunAsEnabled()) {
+            lookUpAuthors(youTrackServer, user, entryCommands);
+        }
+        for (Pair<ChangeLogSet.Entry, List<IssueCommand>> entryCommand : entryCommands) {
+            List<Command> commandList = applyCommands(build, listener, youTrackSite, youTrackServer, user, entryCommand.getSecond());
+            for (Command command : commandList) {
+                commandAction.addCommand(command);
+            }
+            if (youTrackSite.isTrackCommits() && !commandList.isEmpty()) {
+                if (revisionsSaver != null) {
+                    revisionsSaver.addProcessed(entryCommand.getFirst().getCommitId());
+                }
+            }
+        }
+        Map<String, Issue> after = getStates(youTrackSite, youTrackServer, user, issueIds);
+
+        Set<String> fixedValues = getFixedValues(youTrackSite);
+        for (String issueId : issueIds) {
+            Issue issueBefore = before.get(issueId);
+            Issue issueAfter = after.get(issueId);
+            if (issueBefore != null && issueAfter != null && !fixedValues.contains(issueBefore.getState()) && fixedValues.contains(issueAfter.getState())) {
+                fixedIssues.add(issueAfter);
+            }
+        }
+
         int numCommands = commandAction.getNumCommands();
 
         if (numCommands > 0) {
@@ -268,22 +330,19 @@ public class YoutrackIssueUpdater {
     }
 
     /**
-     * Executes the commands if execute commands is enabled;
+     * Finds the commands in a commit message if execute commands is enabled;
      *
      *
      * @param build
      * @param listener       the listener.
      * @param youTrackSite   YouTrack site.
-     * @param youTrackServer YouTrack server.
-     * @param user           user.
      * @param projects       projects.
-     * @param fixedIssues    list to fill with fixed issues.
      * @param changeLogEntry the ChangeLogEntry.
      * @param msg            the message to parse.
-     * @return the list of commands tried to be executed.
+     * @return the commands to execute, in order.
      */
-    List<Command> executeCommandsIfEnabled(AbstractBuild<?, ?> build, BuildListener listener, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, List<Project> projects, List<Issue> fixedIssues, ChangeLogSet.Entry changeLogEntry, String msg) {
-        List<Command> commands = new ArrayList<Command>();
+    private List<IssueCommand> findCommandsIfEnabled(AbstractBuild<?, ?> build, BuildListener listener, YouTrackSite youTrackSite, List<Project> projects, ChangeLogSet.Entry changeLogEntry, String msg) {
+        List<IssueCommand> commands = new ArrayList<IssueCommand>();
         if (youTrackSite.isCommandsEnabled()) {
             Map<String, String> prefixCommands = getPrefixCommands(youTrackSite);
 
@@ -367,11 +426,11 @@ public class YoutrackIssueUpdater {
 //            LOGGER.error(e, e);
                 }
         
-                        applyCommandToIssue(build, youTrackSite, youTrackServer, user, fixedIssues, changeLogEntry, issueAndCommand.getFirst(), extraPrefixCommand, null, listener, commands, isSilent);
+                        commands.add(new IssueCommand(issueAndCommand.getFirst(), extraPrefixCommand, null, isSilent, changeLogEntry));
                     }
 
                     if (issueAndCommand.getSecond() != null && !issueAndCommand.getSecond().equals("")) {
-                        applyCommandToIssue(build, youTrackSite, youTrackServer, user, fixedIssues, changeLogEntry, issueAndCommand.getFirst(), issueAndCommand.getSecond(), comment, listener, commands, isSilent);
+                        commands.add(new IssueCommand(issueAndCommand.getFirst(), issueAndCommand.getSecond(), comment, isSilent, changeLogEntry));
                     }
                 }
             }
@@ -396,7 +455,62 @@ public class YoutrackIssueUpdater {
         return new Pair<String, String>(issueId, command);
     }
 
-    private void applyCommandToIssue(AbstractBuild<?, ?> build, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, List<Issue> fixedIssues, ChangeLogSet.Entry next, String issueId, String command, String comment, BuildListener listener, List<Command> commands, boolean silent) {
+    private List<Command> applyCommands(AbstractBuild<?, ?> build, BuildListener listener, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, List<IssueCommand> issueCommands) {
+        List<Command> commands = new ArrayList<Command>();
+        for (IssueCommand issueCommand : issueCommands) {
+            if (issueCommand.getLinkComment() == null) {
+                commands.add(applyCommandToIssue(build, youTrackSite, youTrackServer, user, issueCommand.getChangeLogEntry(), issueCommand.getIssueId(), issueCommand.getCommand(), issueCommand.getComment(), null, listener, issueCommand.isSilent()));
+                continue;
+            }
+
+            Issue issue = new Issue(issueCommand.getIssueId());
+            String group = StringUtils.isEmpty(youTrackSite.getLinkVisibility()) ? null : youTrackSite.getLinkVisibility();
+            Command command = applyCommandToIssue(build, youTrackSite, youTrackServer, user, issueCommand.getChangeLogEntry(), issueCommand.getIssueId(), issueCommand.getCommand(), issueCommand.getLinkComment(), group, listener, issueCommand.isSilent());
+            commands.add(command);
+            if (command.getStatus() == Command.Status.OK) {
+                listener.getLogger().println("Commented on " + issue.getId());
+            } else if (command.isUnanswered()) {
+                // The command may have been applied with the comment, adding the comment again could post it twice.
+                listener.getLogger().println("FAILED: Comment on " + issue.getId() + " may not have been added, the command carrying it was not answered");
+            } else {
+                // The command was not applied, so the comment was not added with it either.
+                commands.addAll(addComment(build, youTrackSite, youTrackServer, user, issue, issueCommand.getLinkComment(), listener));
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Checks if the link comment for an issue can be sent with a command for it: the command must have no comment
+     * of its own, be applied as the logged in user and notify watchers like the link comment would. The command has
+     * no visibility group without a comment, so the link visibility group is used for it.
+     */
+    private static boolean canAddLinkComment(YouTrackSite youTrackSite, IssueCommand issueCommand, String commentText) {
+        boolean silent = youTrackSite.isSilentCommands() || issueCommand.isSilent();
+        return commentText != null && issueCommand.getComment() == null && !youTrackSite.isRunAsEnabled() && silent == youTrackSite.isSilentLinks();
+    }
+
+    /**
+     * Looks up the YouTrack users of the authors of the changes with commands in parallel, once per address, so the
+     * lookup for every command is answered by the user cache of the site.
+     */
+    private static void lookUpAuthors(YouTrackServer youTrackServer, User user, List<Pair<ChangeLogSet.Entry, List<IssueCommand>>> entryCommands) {
+        Set<String> addresses = new LinkedHashSet<String>();
+        for (Pair<ChangeLogSet.Entry, List<IssueCommand>> entryCommand : entryCommands) {
+            if (entryCommand.getSecond().isEmpty()) {
+                continue;
+            }
+            Mailer.UserProperty property = entryCommand.getFirst().getAuthor().getProperty(Mailer.UserProperty.class);
+            if (property != null && property.getAddress() != null) {
+                addresses.add(property.getAddress());
+            }
+        }
+        if (!addresses.isEmpty()) {
+            youTrackServer.getUsersByEmail(user, addresses);
+        }
+    }
+
+    private Command applyCommandToIssue(AbstractBuild<?, ?> build, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, ChangeLogSet.Entry next, String issueId, String command, String comment, String group, BuildListener listener, boolean silent) {
         User userByEmail = null;
         if (youTrackSite.isRunAsEnabled()) {
             String address = next.getAuthor().getProperty(Mailer.UserProperty.class).getAddress();
@@ -407,33 +521,31 @@ public class YoutrackIssueUpdater {
             }
         }
 
-        String stateFieldName = "State";
-        if (youTrackSite.getStateFieldName() != null && !youTrackSite.getStateFieldName().equals("")) {
-            stateFieldName = youTrackSite.getStateFieldName();
-        }
-
-        //Get the issue state, then apply command, and get the issue state again.
-        //to know whether the command has been marked as fixed, instead of trying to
-        //interpret the command. This means however that there is a possibility for
-        //the user to change state between the before and the after call, so the after
-        //state can be affected by something else than the command.
-        Issue before = youTrackServer.getIssue(user, issueId, stateFieldName);
         boolean isSilent = youTrackSite.isSilentCommands() || silent;
-        Command cmd = youTrackServer.applyCommand(youTrackSite.getName(), user, new Issue(issueId), command, comment, null, userByEmail, !isSilent);
+        Command cmd = youTrackServer.applyCommand(youTrackSite.getName(), user, new Issue(issueId), command, comment, group, userByEmail, !isSilent);
         if (cmd.getStatus() == Command.Status.OK) {
             listener.getLogger().println("Applied command: " + command + " to issue: " + issueId);
         } else {
             listener.getLogger().println("FAILED: Applying command: " + command + " to issue: " + issueId);
             youTrackSite.failed(build);
         }
-        commands.add(cmd);
-        Issue after = youTrackServer.getIssue(user, issueId, stateFieldName);
-
-        Set<String> fixedValues = getFixedValues(youTrackSite);
+        return cmd;
+    }
 
-        if (before != null && after != null && !fixedValues.contains(before.getState()) && fixedValues.contains(after.getState())) {
-            fixedIssues.add(after);
+    /**
+     * Reads the states of the issues in bulk.
+     *
+     * @return the issues with their states by id, empty if there are no issues.
+     */
+    private static Map<String, Issue> getStates(YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, Set<String> issueIds) {
+        if (issueIds.isEmpty()) {
+            return Collections.emptyMap();
         }
+        String stateFieldName = "State";
+        if (youTrackSite.getStateFieldName() != null && !youTrackSite.getStateFieldName().equals("")) {
+            stateFieldName = youTrackSite.getStateFieldName();
+        }
+        return youTrackServer.getIssues(user, issueIds, stateFieldName, EnumSet.of(IssueField.STATE));
     }
 
     private List<Issue> findIssuesFromCommit(String msg, List<Project> projects) {
@@ -458,9 +570,7 @@ public class YoutrackIssueUpdater {
         return issues;
     }
 
-    private List<Command> addComment(AbstractBuild<?, ?> build, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, Issue relatedIssue, List<ChangeLogSet.Entry> entries, BuildListener listener) {
-        List<Command> commands = new ArrayList<Command>();
-
+    private String getCommentText(AbstractBuild<?, ?> build, YouTrackSite youTrackSite, List<ChangeLogSet.Entry> entries, BuildListener listener) {
         SecureGroovyScript commentTextScript = youTrackSite.getCommentTextSecure();
         String commentText = "";
         if (commentTextScript == null || StringUtils.isBlank(commentTextScript.getScript())) {
@@ -487,6 +597,12 @@ public class YoutrackIssueUpdater {
 
             }
         }
+        return commentText;
+    }
+
+    private List<Command> addComment(AbstractBuild<?, ?> build, YouTrackSite youTrackSite, YouTrackServer youTrackServer, User user, Issue relatedIssue, String commentText, BuildListener listener) {
+        List<Command> commands = new ArrayList<Command>();
+
         Command comment;
         comment = youTrackServer.comment(youTrackSite.getName(), user, relatedIssue, commentText, youTrackSite.getLinkVisibility(), youTrackSite.isSilentLinks());
         if (comment != null) {
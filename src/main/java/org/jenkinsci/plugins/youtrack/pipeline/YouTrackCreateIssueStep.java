@@ -73,7 +73,7 @@ public class YouTrackCreateIssueStep extends Step {
             env = context.get(EnvVars.class);
             site = YouTrackSite.get(run.getParent());
             if (site != null) {
-                server = site.createServer();
+                server = site.createServer(run);
             } else {
                 server = null;
             }
@@ -66,7 +66,7 @@ public class YouTrackUpdateIssuesStep extends Step {
             env = context.get(EnvVars.class);
             site = YouTrackSite.get(run.getParent());
             if (site != null) {
-                server = site.createServer();
+                server = site.createServer(run);
             } else {
                 server = null;
             }
@@ -136,14 +136,15 @@ public class YouTrackUpdateIssuesStep extends Step {
                                 null, null, site.isSilentCommands()));
                     }
                 }
+            }
 
-                if(step.getFixedInBuildsField()!=null) {
-                    String buildBundleName = server.getBuildBundleNameForField(
-                            getUser(), getProject(),
-                            env.expand(step.getFixedInBuildsField()));
-                    server.addBuildToBundle(site.getName(), getUser(),
-                            buildBundleName, env.expand(step.getBuildName()));
-                }
+            // The build is the same for all issues, so it is added to the bundle once.
+            if(step.getFixedInBuildsField()!=null && !relatedChanges.isEmpty()) {
+                String buildBundleName = server.getBuildBundleNameForField(
+                        getUser(), getProject(),
+                        env.expand(step.getFixedInBuildsField()));
+                server.addBuildToBundle(site.getName(), getUser(),
+                        buildBundleName, env.expand(step.getBuildName()));
             }
 
 
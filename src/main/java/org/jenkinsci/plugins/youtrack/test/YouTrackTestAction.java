@@ -4,6 +4,7 @@ import hudson.tasks.junit.CaseResult;
 import hudson.tasks.junit.TestAction;
 import org.jenkinsci.plugins.youtrack.Command;
 import org.jenkinsci.plugins.youtrack.YouTrackSite;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
 import org.jenkinsci.plugins.youtrack.youtrackapi.User;
 import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
 import org.kohsuke.stapler.StaplerRequest;
@@ -49,6 +50,13 @@ public class YouTrackTestAction extends TestAction {
         return youTrackSite.getUrl();
     }
 
+    /**
+     * @return the linked issue with its state and summary, null if not linked or the issue could not be read.
+     */
+    public Issue getYoutrackIssue() {
+        return youtrackIssueId == null ? null : data.getIssue(youtrackIssueId);
+    }
+
     public void setYoutrackIssueId(String youtrackIssueId) {
         this.youtrackIssueId = youtrackIssueId;
     }
@@ -65,8 +73,8 @@ public class YouTrackTestAction extends TestAction {
     public void doCreateIssue(StaplerRequest req, StaplerResponse resp)
             throws ServletException, IOException {
         YouTrackSite youTrackSite = YouTrackSite.get(data.getBuild().getProject());
-        YouTrackServer youTrackServer = new YouTrackServer(youTrackSite.getUrl());
-        User mainUser = youTrackServer.login(youTrackSite.getUsername(), youTrackSite.getPassword().getPlainText());
+        YouTrackServer youTrackServer = youTrackSite.createServer();
+        User mainUser = youTrackSite.getUser(youTrackServer);
 
         Command issue = youTrackServer.createIssue(youTrackSite.getName(), mainUser, youTrackSite.getProject(), "Test case: " + id, careResult.getErrorStackTrace(), null, null);
         youtrackIssueId = issue.getIssueId();
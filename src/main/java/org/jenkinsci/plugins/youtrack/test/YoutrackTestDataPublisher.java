@@ -7,13 +7,22 @@ import hudson.model.BuildListener;
 import hudson.model.Descriptor;
 import hudson.model.Saveable;
 import hudson.tasks.junit.*;
+import org.jenkinsci.plugins.youtrack.YouTrackSite;
+import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.IssueField;
+import org.jenkinsci.plugins.youtrack.youtrackapi.User;
+import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class annotates the test result page with an action to create/view issue.
@@ -43,9 +52,18 @@ public class YoutrackTestDataPublisher extends TestDataPublisher {
     }
 
     public static class Data extends TestResultAction.Data implements Saveable {
+        /**
+         * Time in milliseconds the linked issues are shown before they are read again.
+         */
+        private static final long ISSUES_TTL = TimeUnit.MINUTES.toMillis(1);
 
         private final AbstractBuild<?, ?> build;
         private Map<String, YouTrackTestAction> links = new HashMap<String, YouTrackTestAction>();
+        /**
+         * The linked issues, read together when the first one is shown. Null until read.
+         */
+        private transient Map<String, Issue> issues;
+        private transient long issuesReadAt;
 
         public AbstractBuild<?, ?> getBuild() {
             return build;
@@ -75,8 +93,43 @@ public class YoutrackTestDataPublisher extends TestDataPublisher {
             return Collections.emptyList();
         }
 
-        public void addLink(String id, YouTrackTestAction action) {
+        public synchronized void addLink(String id, YouTrackTestAction action) {
             links.put(id, action);
+            issues = null;
+        }
+
+        /**
+         * Gets a linked issue with its state and summary. All linked issues are read at once, so showing the issues of
+         * many failed tests takes a single request.
+         *
+         * @param youtrackIssueId the id of the issue.
+         * @return the issue, null if it could not be read.
+         */
+        public synchronized Issue getIssue(String youtrackIssueId) {
+            if (issues == null || System.currentTimeMillis() - issuesReadAt > ISSUES_TTL) {
+                issues = readIssues();
+                issuesReadAt = System.currentTimeMillis();
+            }
+            return issues.get(youtrackIssueId);
+        }
+
+        private Map<String, Issue> readIssues() {
+            Set<String> issueIds = new LinkedHashSet<String>();
+            for (YouTrackTestAction action : links.values()) {
+                if (action != null && action.getYoutrackIssueId() != null) {
+                    issueIds.add(action.getYoutrackIssueId());
+                }
+            }
+            YouTrackSite youTrackSite = YouTrackSite.get(build.getProject());
+            if (issueIds.isEmpty() || youTrackSite == null || !youTrackSite.isPluginEnabled()) {
+                return Collections.emptyMap();
+            }
+            YouTrackServer youTrackServer = youTrackSite.createServer();
+            User user = youTrackSite.getUser(youTrackServer);
+            if (user == null || !user.isLoggedIn()) {
+                return Collections.emptyMap();
+            }
+            return youTrackServer.getIssues(user, issueIds, youTrackSite.getStateFieldName(), EnumSet.of(IssueField.STATE, IssueField.SUMMARY, IssueField.RESOLVED));
         }
 
         public void save() throws IOException {
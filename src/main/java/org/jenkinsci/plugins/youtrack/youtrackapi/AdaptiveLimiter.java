@@ -0,0 +1,142 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency limit for the requests to a YouTrack server that adapts to how the server responds.
+ * <p>
+ * The limit follows additive increase, multiplicative decrease: while requests are answered about as fast as the
+ * server answers without load, and the limit is in use, it grows by one request per limit's worth of requests. When a
+ * request fails, is refused as overloaded, or takes more than {@link #LATENCY_TOLERANCE} times the latency without
+ * load, the limit is multiplied by {@link #BACKOFF_RATIO}. The latency without load is kept per kind of request, like
+ * the method and path, because a small revalidated read is much faster than a command or a search without the server
+ * being loaded at all. It is the lowest latency seen for the kind, drifting slowly towards recent latencies so it
+ * follows lasting changes of the server.
+ */
+public class AdaptiveLimiter {
+    /**
+     * Factor the limit is multiplied with when the server is overloaded.
+     */
+    static final double BACKOFF_RATIO = 0.75;
+    /**
+     * Latency, relative to the latency without load, above which the server is considered overloaded.
+     */
+    static final double LATENCY_TOLERANCE = 2.0;
+    /**
+     * Fraction of the difference to a higher latency added to the latency without load for every request.
+     */
+    static final double BASELINE_DRIFT = 0.01;
+    /**
+     * Maximum number of kinds of requests the latency without load is kept for.
+     */
+    static final int MAX_KINDS = 256;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private int inFlight;
+    /**
+     * Latency in milliseconds without load by kind of request.
+     */
+    private final Map<String, Double> noLoadLatencies = new LinkedHashMap<String, Double>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+            return size() > MAX_KINDS;
+        }
+    };
+
+    /**
+     * Constructs a limiter starting at the maximum limit.
+     *
+     * @param minLimit the lowest the limit can get.
+     * @param maxLimit the highest the limit can get.
+     */
+    public AdaptiveLimiter(int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = this.maxLimit;
+    }
+
+    /**
+     * Waits until the number of requests in flight is below the limit.
+     *
+     * @param timeout maximum time in milliseconds to wait.
+     * @return true if the request may be made, false if the timeout passed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized boolean acquire(long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (inFlight >= (int) limit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Ends a request and adapts the limit to its result, comparing its latency to all requests seen.
+     *
+     * @param latency    time in nanoseconds the request took.
+     * @param overloaded true if the request failed or the server refused it as overloaded.
+     */
+    public void release(long latency, boolean overloaded) {
+        release("", latency, overloaded);
+    }
+
+    /**
+     * Ends a request and adapts the limit to its result.
+     *
+     * @param kind       the kind of request, its latency is only compared to requests of the same kind.
+     * @param latency    time in nanoseconds the request took.
+     * @param overloaded true if the request failed or the server refused it as overloaded.
+     */
+    public synchronized void release(String kind, long latency, boolean overloaded) {
+        int concurrency = inFlight;
+        inFlight--;
+        double millis = latency / 1e6;
+        if (!overloaded) {
+            Double noLoadLatency = noLoadLatencies.get(kind);
+            if (noLoadLatency == null || millis < noLoadLatency) {
+                noLoadLatency = millis;
+            } else {
+                noLoadLatency += (millis - noLoadLatency) * BASELINE_DRIFT;
+            }
+            noLoadLatencies.put(kind, noLoadLatency);
+            overloaded = millis > noLoadLatency * LATENCY_TOLERANCE && millis > 1;
+        }
+        if (overloaded) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        } else if (concurrency * 2 >= (int) limit) {
+            // Only grow while the limit is used, so a quiet period does not open it up unchecked.
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return the current number of requests allowed in flight.
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @param kind the kind of request.
+     * @return the latency in milliseconds without load of the kind of request, negative if unknown.
+     */
+    public synchronized double getNoLoadLatency(String kind) {
+        Double noLoadLatency = noLoadLatencies.get(kind);
+        return noLoadLatency == null ? -1 : noLoadLatency;
+    }
+}
@@ -0,0 +1,145 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads issues through the /api REST API of YouTrack 2017.2 and later, which answers with JSON and only sends the
+ * fields asked for.
+ */
+class ApiIssueClient implements IssueClient {
+    /**
+     * Fields of an issue that are read when all are wanted.
+     */
+    static final String ISSUE_FIELDS = getFields(IssueField.ALL);
+    /**
+     * Fields of an issue found by a search that are read.
+     */
+    static final String SEARCH_FIELDS = "idReadable";
+
+    private final YouTrackServer server;
+
+    ApiIssueClient(YouTrackServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public Issue getIssue(User user, String issueId, final String stateField, Set<IssueField> fields) throws IOException {
+        String url = server.getServerUrl() + "/api/issues/" + URLEncoder.encode(issueId, "UTF-8") + "?fields=" + URLEncoder.encode(getFields(fields), "UTF-8");
+        return read(url, user, "issue\n" + stateField + '\n' + fields, new JsonResponseParser<Issue>() {
+            @Override
+            Issue parse(String json) {
+                return toIssue(JSONObject.fromObject(json), stateField);
+            }
+        });
+    }
+
+    @Override
+    public List<Issue> getIssues(User user, Collection<String> issueIds, final String stateField, Set<IssueField> fields) throws IOException {
+        String url = server.getServerUrl() + "/api/issues?query=" + URLEncoder.encode(IssueClient.getIdQuery(issueIds), "UTF-8") + "&$top=" + issueIds.size()
+                + "&fields=" + URLEncoder.encode(getFields(fields), "UTF-8");
+        return read(url, user, "issues\n" + stateField + '\n' + fields, new JsonResponseParser<List<Issue>>() {
+            @Override
+            List<Issue> parse(String json) {
+                List<Issue> issues = new ArrayList<Issue>();
+                for (Object found : JSONArray.fromObject(json)) {
+                    issues.add(toIssue((JSONObject) found, stateField));
+                }
+                return issues;
+            }
+        });
+    }
+
+    @Override
+    public List<Issue> search(User user, String searchQuery, int after, int max) throws IOException {
+        String url = server.getServerUrl() + "/api/issues?query=" + URLEncoder.encode(searchQuery, "UTF-8") + "&$skip=" + after + "&$top=" + max
+                + "&fields=" + URLEncoder.encode(SEARCH_FIELDS, "UTF-8");
+        return read(url, user, "search", new JsonResponseParser<List<Issue>>() {
+            @Override
+            List<Issue> parse(String json) {
+                List<Issue> issues = new ArrayList<Issue>();
+                for (Object found : JSONArray.fromObject(json)) {
+                    issues.add(new Issue(getString((JSONObject) found, "idReadable")));
+                }
+                return issues;
+            }
+        });
+    }
+
+    private <T> T read(String url, User user, String kind, JsonResponseParser<T> parser) throws IOException {
+        try {
+            return server.read(url, user, getClass().getName() + '\n' + kind, false, parser);
+        } catch (SAXException | ParserConfigurationException e) {
+            throw new IOException("Could not parse " + url, e);
+        }
+    }
+
+    /**
+     * Builds the fields projection asking the server for only the wanted fields.
+     *
+     * @param fields the wanted fields.
+     * @return the value of the fields parameter.
+     */
+    static String getFields(Set<IssueField> fields) {
+        StringBuilder projection = new StringBuilder("idReadable");
+        if (fields.contains(IssueField.SUMMARY)) {
+            projection.append(",summary");
+        }
+        if (fields.contains(IssueField.DESCRIPTION)) {
+            projection.append(",wikifiedDescription");
+        }
+        if (fields.contains(IssueField.RESOLVED)) {
+            projection.append(",resolved");
+        }
+        if (fields.contains(IssueField.STATE)) {
+            projection.append(",customFields(name,value(name))");
+        }
+        return projection.toString();
+    }
+
+    static Issue toIssue(JSONObject json, String stateField) {
+        String stateFieldName = stateField == null || stateField.equals("") ? "State" : stateField;
+        Issue issue = new Issue(getString(json, "idReadable"));
+        issue.setSummary(getString(json, "summary"));
+        issue.setDescription(getString(json, "wikifiedDescription"));
+        issue.setResolved(getString(json, "resolved"));
+        JSONArray customFields = json.optJSONArray("customFields");
+        if (customFields != null) {
+            for (Object customField : customFields) {
+                JSONObject field = (JSONObject) customField;
+                if (stateFieldName.equals(getString(field, "name"))) {
+                    issue.setState(getValueName(field.opt("value")));
+                }
+            }
+        }
+        return issue;
+    }
+
+    private static String getValueName(Object value) {
+        if (value instanceof JSONArray) {
+            JSONArray values = (JSONArray) value;
+            return values.isEmpty() ? null : getValueName(values.get(0));
+        }
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            return object.isNullObject() ? null : getString(object, "name");
+        }
+        return value == null || JSONNull.getInstance().equals(value) ? null : value.toString();
+    }
+
+    static String getString(JSONObject json, String key) {
+        Object value = json.opt(key);
+        return value == null || JSONNull.getInstance().equals(value) ? null : value.toString();
+    }
+}
@@ -38,4 +38,40 @@ public class BuildBundle {
             }
         }
     }
+
+    /**
+     * Reads the names of the builds in a bundle.
+     */
+    public static class BuildsHandler extends DefaultHandler {
+        @Getter
+        private final List<String> buildNames = new ArrayList<String>();
+        private final StringBuilder stringBuilder = new StringBuilder();
+        private boolean inBuild;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            super.startElement(uri, localName, qName, attributes);
+            if ("build".equals(qName)) {
+                inBuild = true;
+                stringBuilder.setLength(0);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            super.characters(ch, start, length);
+            if (inBuild) {
+                stringBuilder.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            super.endElement(uri, localName, qName);
+            if ("build".equals(qName)) {
+                inBuild = false;
+                buildNames.add(stringBuilder.toString().trim());
+            }
+        }
+    }
 }
@@ -0,0 +1,150 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The build bundles of the build fields of projects, and the builds known to be in the bundles, so builds are added
+ * to a bundle without asking the server for the bundle of the field every time, and a build already in a bundle is not
+ * added again.
+ * <p>
+ * The builds in a bundle are read from the server once and then kept up to date with the builds added through this
+ * cache. Everything is read again after the time to live, and a bundle is read again after the server rejected a build
+ * for it, to see changes made in YouTrack.
+ */
+public class BuildBundleCache {
+    /**
+     * Time in milliseconds bundles and their builds are kept.
+     */
+    static final long TTL = Long.getLong(BuildBundleCache.class.getName() + ".ttl", 60 * 60 * 1000L);
+
+    private static class Entry<T> {
+        final T value;
+        final long readAt;
+
+        Entry(T value, long readAt) {
+            this.value = value;
+            this.readAt = readAt;
+        }
+    }
+
+    private final long ttl;
+    /**
+     * The bundle names by project and field.
+     */
+    private final Map<String, Entry<String>> bundleNames = new HashMap<String, Entry<String>>();
+    /**
+     * The builds in a bundle by bundle name.
+     */
+    private final Map<String, Entry<Set<String>>> builds = new HashMap<String, Entry<Set<String>>>();
+
+    private long hits;
+    private long misses;
+
+    public BuildBundleCache() {
+        this(TTL);
+    }
+
+    public BuildBundleCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Gets the bundle name kept for a build field of a project.
+     *
+     * @return the bundle name, null if not known.
+     */
+    synchronized String getBundleName(String projectId, String fieldName) {
+        Entry<String> entry = getFresh(bundleNames, projectId + "\n" + fieldName);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    synchronized void putBundleName(String projectId, String fieldName, String bundleName) {
+        bundleNames.put(projectId + "\n" + fieldName, new Entry<String>(bundleName, System.currentTimeMillis()));
+    }
+
+    /**
+     * Checks if a build is known to be in a bundle.
+     *
+     * @return true if the build is in the bundle, false if it is not, null if the builds in the bundle are not known.
+     */
+    synchronized Boolean containsBuild(String bundleName, String buildName) {
+        Entry<Set<String>> entry = getFresh(builds, bundleName);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value.contains(buildName);
+    }
+
+    /**
+     * Keeps the builds read from a bundle.
+     */
+    synchronized void putBuilds(String bundleName, Collection<String> buildNames) {
+        builds.put(bundleName, new Entry<Set<String>>(new HashSet<String>(buildNames), System.currentTimeMillis()));
+    }
+
+    /**
+     * Keeps a build added to a bundle, if the builds in the bundle are known.
+     */
+    synchronized void addBuild(String bundleName, String buildName) {
+        Entry<Set<String>> entry = builds.get(bundleName);
+        if (entry != null) {
+            entry.value.add(buildName);
+        }
+    }
+
+    /**
+     * Forgets the builds kept for a bundle, and the fields kept to use it.
+     */
+    synchronized void forgetBundle(String bundleName) {
+        builds.remove(bundleName);
+        Iterator<Entry<String>> entries = bundleNames.values().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().value.equals(bundleName)) {
+                entries.remove();
+            }
+        }
+    }
+
+    private <T> Entry<T> getFresh(Map<String, Entry<T>> entries, String key) {
+        Entry<T> entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.readAt >= ttl) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Forgets all kept bundles and builds.
+     */
+    public synchronized void clear() {
+        bundleNames.clear();
+        builds.clear();
+    }
+
+    /**
+     * @return number of bundles and builds found in the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of bundles and builds read from the server.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
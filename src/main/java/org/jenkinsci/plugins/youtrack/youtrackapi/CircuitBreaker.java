@@ -0,0 +1,125 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Circuit breaker for the requests to a YouTrack site.
+ * <p>
+ * After {@link #getFailureThreshold()} consecutive failed requests the breaker opens, and requests fail immediately
+ * without contacting the server. When the cool-down has passed a single trial request is let through: if it succeeds
+ * the breaker closes again, if it fails the breaker opens for another cool-down.
+ */
+public class CircuitBreaker {
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    /**
+     * Number of consecutive failures opening the breaker, 0 to never open.
+     */
+    private final int failureThreshold;
+    /**
+     * Time in milliseconds the breaker stays open.
+     */
+    private final long coolDown;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    /**
+     * Time the breaker was last opened.
+     */
+    private long openedAt;
+    /**
+     * Number of times the breaker has opened.
+     */
+    private long trips;
+
+    /**
+     * Constructs a circuit breaker.
+     *
+     * @param failureThreshold number of consecutive failures opening the breaker, 0 to never open.
+     * @param coolDown         time in milliseconds the breaker stays open.
+     */
+    public CircuitBreaker(int failureThreshold, long coolDown) {
+        this.failureThreshold = failureThreshold;
+        this.coolDown = coolDown;
+    }
+
+    /**
+     * Checks whether a request may be made, letting a trial request through when the cool-down has passed.
+     *
+     * @return true if the request may be made.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt >= coolDown) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // Only the trial request is let through until its result is known.
+                return false;
+        }
+    }
+
+    /**
+     * Records a request the server answered.
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Records a request that failed or the server could not serve.
+     */
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (failureThreshold > 0 && (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold)) {
+            if (state != State.OPEN) {
+                trips++;
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized long getTrips() {
+        return trips;
+    }
+
+    /**
+     * @return the time a trial request will be let through, null if the breaker is not open.
+     */
+    public synchronized Date getRetryAt() {
+        return state == State.OPEN ? new Date(openedAt + coolDown) : null;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public long getCoolDown() {
+        return coolDown;
+    }
+
+    /**
+     * Thrown instead of making a request while the breaker is open.
+     */
+    public static class OpenException extends IOException {
+        public OpenException(String serverUrl) {
+            super("Requests to " + serverUrl + " are suspended after repeated failures");
+        }
+    }
+}
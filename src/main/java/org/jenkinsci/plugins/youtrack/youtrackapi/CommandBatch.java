@@ -0,0 +1,124 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Commands to apply to issues, grouped so that identical commands, with the same text, comment, visibility group,
+ * user to run as and notification flag, can be applied to all their issues at once.
+ * <p>
+ * The commands for an issue are applied in the order they were added: a command only joins a group that is applied
+ * after the group of the previous command for the same issue.
+ */
+public class CommandBatch {
+    /**
+     * A command and the issues to apply it to.
+     */
+    static class Group {
+        @Getter private final String command;
+        @Getter private final String comment;
+        @Getter private final String group;
+        @Getter private final User runAs;
+        @Getter private final boolean notify;
+        private final List<Issue> issues = new ArrayList<Issue>();
+
+        Group(String command, String comment, String group, User runAs, boolean notify) {
+            this.command = command;
+            this.comment = comment;
+            this.group = group;
+            this.runAs = runAs;
+            this.notify = notify;
+        }
+
+        boolean isSameCommand(String command, String comment, String group, User runAs, boolean notify) {
+            return this.notify == notify && Objects.equals(this.command, command) && Objects.equals(this.comment, comment)
+                    && Objects.equals(this.group, group) && Objects.equals(getUsername(this.runAs), getUsername(runAs));
+        }
+
+        /**
+         * @return the issues in the order they were added.
+         */
+        List<Issue> getIssues() {
+            return Collections.unmodifiableList(issues);
+        }
+
+        private static String getUsername(User user) {
+            return user == null ? null : user.getUsername();
+        }
+    }
+
+    private final List<Group> groups = new ArrayList<Group>();
+    /**
+     * For every added command, the index of its group and its position in the group.
+     */
+    private final List<int[]> positions = new ArrayList<int[]>();
+    /**
+     * For every issue, the index of the group of the last command added for it.
+     */
+    private final Map<Issue, Integer> lastGroups = new HashMap<Issue, Integer>();
+
+    /**
+     * Adds a command to apply to an issue.
+     *
+     * @param issue   the issue to apply the command to.
+     * @param command the command to apply.
+     * @param comment comment with the command, null is allowed.
+     * @param group   the visibility group for the comment, null is allowed.
+     * @param runAs   user to apply the command as, null is allowed.
+     * @param notify  notifies watchers.
+     */
+    public void add(Issue issue, String command, String comment, String group, User runAs, boolean notify) {
+        Integer lastGroup = lastGroups.get(issue);
+        int first = lastGroup == null ? 0 : lastGroup + 1;
+        int index = -1;
+        for (int i = groups.size() - 1; i >= first; i--) {
+            if (groups.get(i).isSameCommand(command, comment, group, runAs, notify)) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            index = groups.size();
+            groups.add(new Group(command, comment, group, runAs, notify));
+        }
+        Group commandGroup = groups.get(index);
+        positions.add(new int[]{index, commandGroup.issues.size()});
+        commandGroup.issues.add(issue);
+        lastGroups.put(issue, index);
+    }
+
+    /**
+     * @return number of commands added.
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * @return the groups, in the order they must be applied.
+     */
+    List<Group> getGroups() {
+        return Collections.unmodifiableList(groups);
+    }
+
+    /**
+     * Orders the results of applying the groups like the commands were added.
+     *
+     * @param applied for every group, the results for its issues in order.
+     * @param <T>     the type of the results.
+     * @return the results for the commands in the order they were added.
+     */
+    <T> List<T> collect(List<List<T>> applied) {
+        List<T> results = new ArrayList<T>(positions.size());
+        for (int[] position : positions) {
+            results.add(applied.get(position[0]).get(position[1]));
+        }
+        return results;
+    }
+}
@@ -7,8 +7,12 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This object represents an issue.
@@ -149,6 +153,143 @@ public class Issue {
         }
     }
 
+    /**
+     * Decodes an issue response, reading only the wanted fields. Comments, attachments and other fields are skipped
+     * without being collected, and decoding stops at the end of the issue.
+     */
+    static class IssueDecoder extends XmlDecoder<Issue> {
+        private final String stateFieldName;
+        private final Set<IssueField> fields;
+
+        IssueDecoder(String stateFieldName, Set<IssueField> fields) {
+            this.stateFieldName = stateFieldName == null || stateFieldName.equals("") ? "State" : stateFieldName;
+            this.fields = fields;
+        }
+
+        @Override
+        Issue decode(XMLStreamReader reader) throws XMLStreamException {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("issue")) {
+                    return decodeIssue(reader);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Decodes the issue the reader is positioned at, leaving the reader at its end.
+         */
+        Issue decodeIssue(XMLStreamReader reader) throws XMLStreamException {
+            Issue issue = new Issue(reader.getAttributeValue(null, "id"));
+            while (true) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    return issue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                IssueField field = reader.getLocalName().equals("field") ? getField(reader.getAttributeValue(null, "name")) : null;
+                if (field == null || !fields.contains(field)) {
+                    XmlDecoder.skipElement(reader);
+                } else {
+                    setField(issue, field, readValue(reader));
+                }
+            }
+        }
+
+        private IssueField getField(String name) {
+            if (stateFieldName.equals(name)) {
+                return IssueField.STATE;
+            } else if ("summary".equals(name)) {
+                return IssueField.SUMMARY;
+            } else if ("description".equals(name)) {
+                return IssueField.DESCRIPTION;
+            } else if ("resolved".equals(name)) {
+                return IssueField.RESOLVED;
+            }
+            return null;
+        }
+
+        /**
+         * Reads the first value of the field the reader is positioned at, leaving the reader at the end of the field.
+         */
+        private static String readValue(XMLStreamReader reader) throws XMLStreamException {
+            String value = null;
+            while (true) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    return value;
+                }
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (value == null && reader.getLocalName().equals("value")) {
+                        value = XmlDecoder.readText(reader);
+                    } else {
+                        XmlDecoder.skipElement(reader);
+                    }
+                }
+            }
+        }
+
+        private static void setField(Issue issue, IssueField field, String value) {
+            switch (field) {
+                case STATE:
+                    issue.state = value;
+                    break;
+                case SUMMARY:
+                    issue.summary = value;
+                    break;
+                case DESCRIPTION:
+                    issue.description = value;
+                    break;
+                case RESOLVED:
+                    issue.resolved = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Decodes a list of issues, reading only the wanted fields of every issue.
+     */
+    static class IssueListDecoder extends XmlDecoder<List<Issue>> {
+        private final IssueDecoder issueDecoder;
+
+        IssueListDecoder(String stateFieldName, Set<IssueField> fields) {
+            this.issueDecoder = new IssueDecoder(stateFieldName, fields);
+        }
+
+        @Override
+        List<Issue> decode(XMLStreamReader reader) throws XMLStreamException {
+            List<Issue> issues = new ArrayList<Issue>();
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("issue")) {
+                    issues.add(issueDecoder.decodeIssue(reader));
+                }
+            }
+            return issues;
+        }
+    }
+
+    /**
+     * Decodes the ids of the issues found by a search, skipping the fields of every issue.
+     */
+    static class IssueSearchDecoder extends XmlDecoder<List<Issue>> {
+        @Override
+        List<Issue> decode(XMLStreamReader reader) throws XMLStreamException {
+            List<Issue> issues = new ArrayList<Issue>();
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("issue")) {
+                    issues.add(new Issue(reader.getAttributeValue(null, "id")));
+                    XmlDecoder.skipElement(reader);
+                }
+            }
+            return issues;
+        }
+    }
+
     public static class IssueSearchHandler extends DefaultHandler {
         @Getter
         private List<Issue> issueList = new ArrayList<Issue>();
@@ -0,0 +1,79 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads issues from a YouTrack server through one of its REST APIs.
+ */
+public interface IssueClient {
+    /**
+     * Gets an issue with its state, summary, description and resolved date.
+     *
+     * @param user       the user session.
+     * @param issueId    the id of the issue.
+     * @param stateField the name of the state field, null or empty for "State".
+     * @return the issue, null if the server did not return it.
+     * @throws IOException if the request failed or the response could not be parsed.
+     */
+    default Issue getIssue(User user, String issueId, String stateField) throws IOException {
+        return getIssue(user, issueId, stateField, IssueField.ALL);
+    }
+
+    /**
+     * Gets an issue with only the given fields, the other fields of the returned issue are null.
+     *
+     * @param user       the user session.
+     * @param issueId    the id of the issue.
+     * @param stateField the name of the state field, null or empty for "State".
+     * @param fields     the fields to get.
+     * @return the issue, null if the server did not return it.
+     * @throws IOException if the request failed or the response could not be parsed.
+     */
+    Issue getIssue(User user, String issueId, String stateField, Set<IssueField> fields) throws IOException;
+
+    /**
+     * Gets issues by their ids in one request, with only the given fields.
+     *
+     * @param user       the user session.
+     * @param issueIds   the ids of the issues.
+     * @param stateField the name of the state field, null or empty for "State".
+     * @param fields     the fields to get.
+     * @return the issues found, null if the server did not answer the search.
+     * @throws IOException if the request failed or the response could not be parsed.
+     */
+    List<Issue> getIssues(User user, Collection<String> issueIds, String stateField, Set<IssueField> fields) throws IOException;
+
+    /**
+     * Gets a page of the ids of the issues matching a search.
+     *
+     * @param user        the user session.
+     * @param searchQuery the search query.
+     * @param after       number of matching issues to skip.
+     * @param max         maximum number of issues to get.
+     * @return the issues, only with their ids, null if the server did not answer the search.
+     * @throws IOException if the request failed or the response could not be parsed.
+     */
+    List<Issue> search(User user, String searchQuery, int after, int max) throws IOException;
+
+    /**
+     * Builds a search query matching the issues with the ids.
+     *
+     * @param issueIds the ids of the issues.
+     * @return the query.
+     */
+    static String getIdQuery(Collection<String> issueIds) {
+        StringBuilder query = new StringBuilder("issue id: ");
+        boolean first = true;
+        for (String issueId : issueIds) {
+            if (!first) {
+                query.append(", ");
+            }
+            query.append(issueId);
+            first = false;
+        }
+        return query.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The fields of an issue that can be read. Reading fewer fields means smaller responses.
+ */
+public enum IssueField {
+    STATE,
+    SUMMARY,
+    DESCRIPTION,
+    RESOLVED;
+
+    /**
+     * All fields.
+     */
+    public static final Set<IssueField> ALL = Collections.unmodifiableSet(EnumSet.allOf(IssueField.class));
+}
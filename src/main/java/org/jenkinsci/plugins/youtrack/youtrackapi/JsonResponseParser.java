@@ -0,0 +1,41 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import net.sf.json.JSONException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses a JSON response of the /api REST API.
+ *
+ * @param <T> the type of the parsed response.
+ */
+abstract class JsonResponseParser<T> implements YouTrackServer.ResponseParser<T> {
+    @Override
+    public T parse(InputStream body) throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = bufferedReader.read(buffer)) != -1) {
+                stringBuilder.append(buffer, 0, read);
+            }
+        }
+        try {
+            return parse(stringBuilder.toString());
+        } catch (JSONException | ClassCastException e) {
+            throw new IOException("Could not parse response", e);
+        }
+    }
+
+    /**
+     * Parses the JSON text of the response.
+     *
+     * @param json the JSON text.
+     * @return the parsed response.
+     */
+    abstract T parse(String json);
+}
@@ -0,0 +1,257 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Metadata of a site, like projects, custom fields, groups and bundles, kept for a time to live instead of being read
+ * from the server on every use.
+ * <p>
+ * An entry is refreshed in the background once it is older than {@link #REFRESH_AHEAD} of the time to live, so it is
+ * usually refreshed before it expires. An expired entry is still returned while it is refreshed, and is kept if the
+ * refresh fails. Only the first read of a key waits for the server, unless it is read with
+ * {@link #getNow(String, Supplier)}. Failed reads, null or empty, are not kept. The least recently used entries are
+ * dropped when more than the maximum number are kept.
+ */
+public class MetadataCache {
+    /**
+     * Default maximum number of entries kept per site.
+     */
+    static final int MAX_ENTRIES = Integer.getInteger(MetadataCache.class.getName() + ".maxEntries", 64);
+    /**
+     * Fraction of the time to live after which an entry is refreshed in the background.
+     */
+    static final double REFRESH_AHEAD = Double.parseDouble(System.getProperty(MetadataCache.class.getName() + ".refreshAhead", "0.8"));
+    /**
+     * Time in milliseconds after which a failed refresh is tried again.
+     */
+    static final long REFRESH_RETRY = Long.getLong(MetadataCache.class.getName() + ".refreshRetry", 10000L);
+
+    /**
+     * A value and when it was read.
+     */
+    private static class Entry {
+        final Object value;
+        final long loadedAt;
+        /**
+         * Time in milliseconds since the epoch the last refresh was started, 0 if never.
+         */
+        long refreshStartedAt;
+        boolean refreshing;
+
+        Entry(Object value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final long ttl;
+    private final RequestExecutor executor;
+    private final Map<String, Entry> entries;
+    /**
+     * Keys not kept yet that are read in the background.
+     */
+    private final Set<String> loading = new HashSet<String>();
+
+    private long hits;
+    private long staleHits;
+    private long misses;
+    private long refreshes;
+
+    /**
+     * Constructs a cache.
+     *
+     * @param ttl        time in milliseconds an entry is fresh.
+     * @param maxEntries maximum number of entries kept.
+     * @param executor   the executor refreshing the entries.
+     */
+    public MetadataCache(long ttl, final int maxEntries, RequestExecutor executor) {
+        this.ttl = ttl;
+        this.executor = executor;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public MetadataCache(long ttl, RequestExecutor executor) {
+        this(ttl, MAX_ENTRIES, executor);
+    }
+
+    /**
+     * Gets a value, reading it if it is not kept and refreshing it in the background if it is old.
+     *
+     * @param key    identifies the value.
+     * @param loader reads the value from the server.
+     * @param <T>    the type of the value.
+     * @return the value, possibly expired, null if it could not be read.
+     */
+    public <T> T get(String key, Supplier<T> loader) {
+        return get(key, loader, true);
+    }
+
+    /**
+     * Gets a value like {@link #get(String, Supplier)}, without ever waiting for the server. A value not kept is read
+     * in the background, and null is returned until it has been read.
+     *
+     * @param key    identifies the value.
+     * @param loader reads the value from the server.
+     * @param <T>    the type of the value.
+     * @return the value, possibly expired, null if it is not kept yet.
+     */
+    public <T> T getNow(String key, Supplier<T> loader) {
+        return get(key, loader, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(final String key, final Supplier<T> loader, boolean wait) {
+        final Entry entry;
+        boolean refresh = false;
+        boolean load = false;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                load = !wait && loading.add(key);
+            } else {
+                long age = now - entry.loadedAt;
+                if (age < ttl) {
+                    hits++;
+                } else {
+                    staleHits++;
+                }
+                if (age >= ttl * REFRESH_AHEAD && !entry.refreshing && now - entry.refreshStartedAt >= Math.min(ttl, REFRESH_RETRY)) {
+                    entry.refreshing = true;
+                    entry.refreshStartedAt = now;
+                    refreshes++;
+                    refresh = true;
+                }
+            }
+        }
+
+        if (entry == null && !wait) {
+            if (load) {
+                executor.submit(new Supplier<T>() {
+                    @Override
+                    public T get() {
+                        return load(key, loader);
+                    }
+                });
+            }
+            return null;
+        }
+        if (entry == null) {
+            long loadedAt = System.currentTimeMillis();
+            T value = loader.get();
+            if (isKept(value)) {
+                synchronized (this) {
+                    entries.put(key, new Entry(value, loadedAt));
+                }
+            }
+            return value;
+        }
+        if (refresh) {
+            executor.submit(new Supplier<T>() {
+                @Override
+                public T get() {
+                    return refresh(key, entry, loader);
+                }
+            });
+        }
+        return (T) entry.value;
+    }
+
+    private <T> T refresh(String key, Entry entry, Supplier<T> loader) {
+        long loadedAt = System.currentTimeMillis();
+        T value = null;
+        try {
+            value = loader.get();
+        } finally {
+            synchronized (this) {
+                entry.refreshing = false;
+                // The entry is not replaced if it was flushed while it was refreshed.
+                if (isKept(value) && entries.get(key) == entry) {
+                    entries.put(key, new Entry(value, loadedAt));
+                }
+            }
+        }
+        return value;
+    }
+
+    private <T> T load(String key, Supplier<T> loader) {
+        long loadedAt = System.currentTimeMillis();
+        T value = null;
+        try {
+            value = loader.get();
+        } finally {
+            synchronized (this) {
+                // The value is not kept if the cache was flushed while it was read.
+                if (loading.remove(key) && isKept(value)) {
+                    entries.put(key, new Entry(value, loadedAt));
+                }
+            }
+        }
+        return value;
+    }
+
+    private static boolean isKept(Object value) {
+        return value != null && !(value instanceof Collection && ((Collection<?>) value).isEmpty());
+    }
+
+    /**
+     * Forgets all kept values.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        loading.clear();
+    }
+
+    /**
+     * @return time in milliseconds an entry is fresh.
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * @return number of values kept.
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of reads answered with a fresh value.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of reads answered with an expired value while it was refreshed.
+     */
+    public synchronized long getStaleHits() {
+        return staleHits;
+    }
+
+    /**
+     * @return number of reads that waited for the server.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of refreshes started in the background.
+     */
+    public synchronized long getRefreshes() {
+        return refreshes;
+    }
+}
@@ -0,0 +1,115 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of threads running the asynchronous requests of a YouTrack site.
+ * <p>
+ * At most {@link #THREADS} requests run at the same time and at most {@link #QUEUE_SIZE} wait for a thread. When the
+ * queue is full the request runs on the calling thread, which slows down callers instead of failing them. Requests
+ * started from a thread of the pool also run directly, so a request waiting for another can never starve the pool.
+ * Idle threads end after {@link #KEEP_ALIVE} milliseconds, so the pool of a removed site needs no shutdown.
+ */
+public class RequestExecutor {
+    /**
+     * Maximum number of requests running at the same time.
+     */
+    static final int THREADS = Integer.getInteger(RequestExecutor.class.getName() + ".threads", 8);
+    /**
+     * Maximum number of requests waiting for a thread.
+     */
+    static final int QUEUE_SIZE = Integer.getInteger(RequestExecutor.class.getName() + ".queueSize", 1000);
+    /**
+     * Time in milliseconds an idle thread is kept.
+     */
+    static final long KEEP_ALIVE = Long.getLong(RequestExecutor.class.getName() + ".keepAlive", 60000L);
+
+    /**
+     * Executor used by servers not created for a site.
+     */
+    private static RequestExecutor defaultExecutor;
+
+    private final ThreadPoolExecutor executor;
+    /**
+     * Set on the threads of this pool.
+     */
+    private final ThreadLocal<Boolean> poolThread = new ThreadLocal<Boolean>();
+
+    /**
+     * Constructs an executor.
+     *
+     * @param name the name of the site, used to name the threads.
+     */
+    public RequestExecutor(final String name) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        poolThread.set(Boolean.TRUE);
+                        runnable.run();
+                    }
+                }, "YouTrack request " + name + " #" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, KEEP_ALIVE, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets the executor shared by servers not created for a site.
+     *
+     * @return the executor.
+     */
+    public static synchronized RequestExecutor getDefault() {
+        if (defaultExecutor == null) {
+            defaultExecutor = new RequestExecutor("default");
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Runs the request on the pool.
+     *
+     * @param request the request.
+     * @param <T>     the type of the result.
+     * @return the future result of the request.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> request) {
+        if (poolThread.get() != null) {
+            CompletableFuture<T> future = new CompletableFuture<T>();
+            try {
+                future.complete(request.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+        return CompletableFuture.supplyAsync(request, executor);
+    }
+
+    /**
+     * @return number of requests waiting for a thread.
+     */
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return number of requests running.
+     */
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+}
@@ -0,0 +1,199 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the requests to a YouTrack site, so a burst of builds can not overload the server.
+ * <p>
+ * At most {@link #getMaxInFlight()} requests are executed at the same time, and requests are started at a rate of at
+ * most {@link #getRateLimit()} per second, with bursts of up to that many requests. Requests over the limits wait, and
+ * the time they waited is recorded.
+ */
+public class RequestLimiter {
+    /**
+     * Maximum number of requests executed at the same time, 0 for no limit.
+     */
+    private final int maxInFlight;
+    /**
+     * Maximum number of requests started per second, 0 for no limit.
+     */
+    private final int rateLimit;
+    private final Semaphore inFlight;
+    /**
+     * Set while the thread holds a permit, so requests made while executing a request (like renewing the session)
+     * do not wait for a second one.
+     */
+    private final ThreadLocal<Boolean> holdsPermit = new ThreadLocal<Boolean>();
+
+    /**
+     * Tokens available in the bucket, negative if requests have reserved future tokens.
+     */
+    private double tokens;
+    /**
+     * Time in nanoseconds the bucket was last refilled.
+     */
+    private long refilledAt;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong totalWait = new AtomicLong();
+    private final AtomicLong maxWait = new AtomicLong();
+
+    /**
+     * Constructs a limiter.
+     *
+     * @param maxInFlight maximum number of requests executed at the same time, 0 for no limit.
+     * @param rateLimit   maximum number of requests started per second, 0 for no limit.
+     */
+    public RequestLimiter(int maxInFlight, int rateLimit) {
+        this.maxInFlight = maxInFlight;
+        this.rateLimit = rateLimit;
+        this.inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight, true) : null;
+        this.tokens = rateLimit;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Waits until a request may be started. Every successful call must be followed by a call to {@link #release()}.
+     *
+     * @param timeout maximum time in milliseconds to wait.
+     * @return true if the request holds a new permit, false if the thread already held one.
+     * @throws InterruptedIOException if the request could not be started within the timeout, or the thread was
+     *                                interrupted.
+     */
+    public boolean acquire(long timeout) throws InterruptedIOException {
+        if (holdsPermit.get() != null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            if (inFlight != null && !inFlight.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new InterruptedIOException("Timed out after " + timeout + " ms waiting for a free request slot");
+            }
+            try {
+                long delay = reserveToken(deadline - System.nanoTime());
+                if (delay > 0) {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                }
+            } catch (InterruptedIOException | InterruptedException e) {
+                if (inFlight != null) {
+                    inFlight.release();
+                }
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free request slot");
+        }
+        holdsPermit.set(Boolean.TRUE);
+        recordWait(System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * Releases the permit of a request.
+     */
+    public void release() {
+        holdsPermit.remove();
+        if (inFlight != null) {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Takes a token from the bucket, reserving a future token if it is empty.
+     *
+     * @param maxDelay maximum time in nanoseconds to wait for a token.
+     * @return the time in nanoseconds until the token is available.
+     * @throws InterruptedIOException if no token is available within the maximum delay.
+     */
+    private synchronized long reserveToken(long maxDelay) throws InterruptedIOException {
+        if (rateLimit <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(rateLimit, tokens + (now - refilledAt) * rateLimit / 1e9);
+        refilledAt = now;
+        long delay = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * 1e9 / rateLimit);
+        if (delay > maxDelay) {
+            throw new InterruptedIOException("Timed out waiting for the request rate limit");
+        }
+        tokens -= 1;
+        return delay;
+    }
+
+    private void recordWait(long nanos) {
+        requests.incrementAndGet();
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (millis > 0) {
+            waited.incrementAndGet();
+            totalWait.addAndGet(millis);
+            long max;
+            while (millis > (max = maxWait.get()) && !maxWait.compareAndSet(max, millis)) {
+                // retry until the maximum is updated
+            }
+        }
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * @return number of requests executing now.
+     */
+    public int getInFlight() {
+        return inFlight == null ? 0 : maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * @return number of requests waiting for a free slot now.
+     */
+    public int getQueueLength() {
+        return inFlight == null ? 0 : inFlight.getQueueLength();
+    }
+
+    /**
+     * @return number of requests started.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return number of requests that had to wait.
+     */
+    public long getWaited() {
+        return waited.get();
+    }
+
+    /**
+     * @return total time in milliseconds requests waited.
+     */
+    public long getTotalWait() {
+        return totalWait.get();
+    }
+
+    /**
+     * @return longest time in milliseconds a request waited.
+     */
+    public long getMaxWait() {
+        return maxWait.get();
+    }
+
+    /**
+     * @return average time in milliseconds a request waited.
+     */
+    public long getAverageWait() {
+        long count = requests.get();
+        return count == 0 ? 0 : totalWait.get() / count;
+    }
+}
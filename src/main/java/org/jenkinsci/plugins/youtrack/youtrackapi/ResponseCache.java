@@ -0,0 +1,114 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Responses kept with the validators the server sent for them, so a read can be repeated as a conditional request
+ * and the kept response parsed again when the server answers that it has not changed. The least recently used
+ * responses are dropped when more than the maximum number are kept.
+ */
+public class ResponseCache {
+    /**
+     * Default maximum number of responses kept per server.
+     */
+    static final int MAX_ENTRIES = Integer.getInteger(ResponseCache.class.getName() + ".maxEntries", 256);
+
+    /**
+     * A response and its validators.
+     */
+    static class Entry {
+        /**
+         * The value of the ETag header, null if none was sent.
+         */
+        final String etag;
+        /**
+         * The value of the Last-Modified header, null if none was sent.
+         */
+        final String lastModified;
+        /**
+         * The response, the body as read from the server.
+         */
+        final Object value;
+
+        Entry(String etag, String lastModified, Object value) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+
+    public ResponseCache() {
+        this(MAX_ENTRIES);
+    }
+
+    public ResponseCache(final int maxEntries) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Keeps the response if the server sent a validator for it, otherwise forgets the previous response.
+     *
+     * @param key          identifies the request.
+     * @param etag         the ETag of the response, null if none.
+     * @param lastModified the Last-Modified date of the response, null if none.
+     * @param value        the response.
+     */
+    synchronized void put(String key, String etag, String lastModified, Object value) {
+        misses++;
+        if (etag == null && lastModified == null) {
+            entries.remove(key);
+        } else {
+            entries.put(key, new Entry(etag, lastModified, value));
+        }
+    }
+
+    /**
+     * Records that the server confirmed a kept response is still current.
+     */
+    synchronized void hit() {
+        hits++;
+    }
+
+    /**
+     * Forgets all kept responses.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of responses kept.
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of conditional reads the server answered as not modified.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of cacheable reads the server answered with a full response.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
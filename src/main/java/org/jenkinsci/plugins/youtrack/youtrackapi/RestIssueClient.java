@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads issues through the legacy /rest API, which answers with XML documents of the whole issue. The documents are
+ * decoded with a pull parser that skips what is not needed and stops at the end of the issue.
+ */
+class RestIssueClient implements IssueClient {
+    private final YouTrackServer server;
+
+    RestIssueClient(YouTrackServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public Issue getIssue(User user, String issueId, String stateField, Set<IssueField> fields) throws IOException {
+        String url = server.getServerUrl() + "/rest/issue/" + issueId;
+        if (fields.contains(IssueField.DESCRIPTION)) {
+            // Only wiki rendering of the description makes the server do extra work.
+            url += "?wikifyDescription=true";
+        }
+        try {
+            return server.read(url, user, Issue.IssueDecoder.class.getName() + '\n' + stateField + '\n' + fields, false, new Issue.IssueDecoder(stateField, fields));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Could not parse issue " + issueId, e);
+        }
+    }
+
+    @Override
+    public List<Issue> getIssues(User user, Collection<String> issueIds, String stateField, Set<IssueField> fields) throws IOException {
+        StringBuilder url = new StringBuilder(server.getServerUrl()).append("/rest/issue?filter=")
+                .append(URLEncoder.encode(IssueClient.getIdQuery(issueIds), "UTF-8")).append("&max=").append(issueIds.size());
+        // Only the wanted fields are sent.
+        if (fields.contains(IssueField.STATE)) {
+            url.append("&with=").append(URLEncoder.encode(stateField == null || stateField.equals("") ? "State" : stateField, "UTF-8"));
+        }
+        if (fields.contains(IssueField.SUMMARY)) {
+            url.append("&with=summary");
+        }
+        if (fields.contains(IssueField.DESCRIPTION)) {
+            url.append("&with=description&wikifyDescription=true");
+        }
+        if (fields.contains(IssueField.RESOLVED)) {
+            url.append("&with=resolved");
+        }
+        try {
+            return server.read(url.toString(), user, Issue.IssueListDecoder.class.getName() + '\n' + stateField + '\n' + fields, false, new Issue.IssueListDecoder(stateField, fields));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Could not parse issues " + issueIds, e);
+        }
+    }
+
+    @Override
+    public List<Issue> search(User user, String searchQuery, int after, int max) throws IOException {
+        try {
+            String url = server.getServerUrl() + "/rest/issue?filter=" + URLEncoder.encode(searchQuery, "UTF-8") + "&after=" + after + "&max=" + max;
+            return server.read(url, user, Issue.IssueSearchDecoder.class.getName(), false, new Issue.IssueSearchDecoder());
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Could not parse issues found by " + searchQuery, e);
+        }
+    }
+}
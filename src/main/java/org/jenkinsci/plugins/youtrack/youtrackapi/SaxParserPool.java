@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SAX parsers shared by all responses. Looking up the parser implementation and creating a parser costs more than
+ * parsing most responses, so parsers are reset after use and kept for the next response.
+ */
+final class SaxParserPool {
+    /**
+     * Maximum number of unused parsers kept.
+     */
+    static final int MAX_IDLE = Integer.getInteger(SaxParserPool.class.getName() + ".maxIdle", 16);
+
+    private static final SAXParserFactory FACTORY = SAXParserFactory.newInstance();
+    private static final Queue<SAXParser> IDLE = new ConcurrentLinkedQueue<SAXParser>();
+    private static final AtomicInteger IDLE_COUNT = new AtomicInteger();
+
+    private SaxParserPool() {
+    }
+
+    /**
+     * Parses the stream with the handler, using a parser from the pool.
+     *
+     * @param in      the stream to parse, read in full but not closed.
+     * @param handler the handler.
+     * @throws IOException                  if the stream could not be read.
+     * @throws SAXException                 if the stream is not well formed xml or the handler failed.
+     * @throws ParserConfigurationException if no parser could be created.
+     */
+    static void parse(InputStream in, DefaultHandler handler) throws IOException, SAXException, ParserConfigurationException {
+        SAXParser parser = IDLE.poll();
+        if (parser == null) {
+            parser = newParser();
+        } else {
+            IDLE_COUNT.decrementAndGet();
+        }
+        try {
+            parser.parse(in, handler);
+        } finally {
+            release(parser);
+        }
+    }
+
+    private static SAXParser newParser() throws ParserConfigurationException, SAXException {
+        // Factories are not guaranteed to be thread safe.
+        synchronized (FACTORY) {
+            return FACTORY.newSAXParser();
+        }
+    }
+
+    private static void release(SAXParser parser) {
+        try {
+            parser.reset();
+        } catch (UnsupportedOperationException e) {
+            // Parsers that cannot be reset are not reused.
+            return;
+        }
+        if (IDLE_COUNT.incrementAndGet() <= MAX_IDLE) {
+            IDLE.offer(parser);
+        } else {
+            IDLE_COUNT.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of unused parsers kept.
+     */
+    static int getIdle() {
+        return IDLE_COUNT.get();
+    }
+}
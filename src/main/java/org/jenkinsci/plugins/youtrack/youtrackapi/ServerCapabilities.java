@@ -0,0 +1,83 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import lombok.Getter;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The features a YouTrack server supports, found by {@link YouTrackServer#probeCapabilities()}.
+ */
+public class ServerCapabilities {
+    /**
+     * The version of the server, e.g. 2019.2.53938.
+     */
+    @Getter private final String version;
+    /**
+     * True if the server has the /api JSON REST API.
+     */
+    @Getter private final boolean jsonApi;
+    /**
+     * True if the server has sent compressed responses.
+     */
+    @Getter private final boolean compression;
+    /**
+     * Time in milliseconds since the epoch the server was probed.
+     */
+    @Getter private final long probedAt;
+
+    public ServerCapabilities(String version, boolean jsonApi, boolean compression, long probedAt) {
+        this.version = version;
+        this.jsonApi = jsonApi;
+        this.compression = compression;
+        this.probedAt = probedAt;
+    }
+
+    /**
+     * @return true if the server accepts permanent tokens, available since YouTrack 2017.1.
+     */
+    public boolean isTokenAuthentication() {
+        return getMajorVersion() >= 2017;
+    }
+
+    /**
+     * @return true if the server can apply a command to many issues in one request, through the /api REST API.
+     */
+    public boolean isBatchCommands() {
+        return jsonApi;
+    }
+
+    /**
+     * @return the first number of the version, 0 if it is not a number.
+     */
+    public int getMajorVersion() {
+        if (version == null) {
+            return 0;
+        }
+        int end = version.indexOf('.');
+        try {
+            return Integer.parseInt(end < 0 ? version : version.substring(0, end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the supported features, separated by commas.
+     */
+    public String getFeatures() {
+        List<String> features = new ArrayList<String>();
+        features.add(jsonApi ? "JSON API" : "legacy REST API");
+        if (isBatchCommands()) {
+            features.add("batch commands");
+        }
+        if (compression) {
+            features.add("compression");
+        }
+        if (isTokenAuthentication()) {
+            features.add("token authentication");
+        }
+        return StringUtils.join(features, ", ");
+    }
+}
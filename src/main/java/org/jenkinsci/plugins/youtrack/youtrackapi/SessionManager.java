@@ -0,0 +1,202 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a logged in {@link User} for a set of credentials, so the session cookies can be shared between threads and
+ * builds instead of logging in for every build step.
+ * <p>
+ * Only one thread logs in at a time, threads asking for the session meanwhile wait for that login and reuse its result.
+ * Sessions older than {@link #SESSION_TIMEOUT} are renewed, and {@link YouTrackServer} renews a session when the server
+ * answers 401 Unauthorized. Renewal replaces the cookies of the cached user, so users held by running builds stay valid.
+ * <p>
+ * If a permanent token is given, no login is made at all: the user sends the token as bearer authorization with every
+ * request, and never expires.
+ */
+public class SessionManager {
+    /**
+     * Time in milliseconds after which a session is renewed before it is used.
+     */
+    static final long SESSION_TIMEOUT = Long.getLong(SessionManager.class.getName() + ".sessionTimeout", TimeUnit.MINUTES.toMillis(30));
+
+    private final String username;
+    private final String password;
+    private final String token;
+    private final Object loginLock = new Object();
+
+    /**
+     * The logged in user, null if there is no session.
+     */
+    private volatile User user;
+    /**
+     * Time the cookies of {@link #user} were obtained.
+     */
+    private volatile long loginTime;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    public SessionManager(String username, String password) {
+        this(username, password, null);
+    }
+
+    /**
+     * Constructs a session manager.
+     *
+     * @param username the username.
+     * @param password the password, not used if a token is given.
+     * @param token    the permanent token, null or empty to log in with username and password.
+     */
+    public SessionManager(String username, String password, String token) {
+        this.username = username;
+        this.password = password;
+        this.token = token == null || token.isEmpty() ? null : token;
+        if (this.token != null) {
+            User tokenUser = new User();
+            tokenUser.setUsername(username);
+            tokenUser.setToken(this.token);
+            tokenUser.setLoggedIn(true);
+            this.user = tokenUser;
+        }
+    }
+
+    /**
+     * Checks whether this manager logs in with the given credentials.
+     *
+     * @param username the username.
+     * @param password the password.
+     * @return true if the credentials are the ones of this manager.
+     */
+    public boolean matches(String username, String password) {
+        return matches(username, password, null);
+    }
+
+    /**
+     * Checks whether this manager authenticates with the given credentials.
+     *
+     * @param username the username.
+     * @param password the password.
+     * @param token    the permanent token, null or empty if none.
+     * @return true if the credentials are the ones of this manager.
+     */
+    public boolean matches(String username, String password, String token) {
+        return equal(this.username, username) && equal(this.password, password)
+                && equal(this.token, token == null || token.isEmpty() ? null : token);
+    }
+
+    /**
+     * @return true if requests are authorized with a permanent token instead of a login session.
+     */
+    public boolean isTokenAuthentication() {
+        return token != null;
+    }
+
+    /**
+     * Gets the logged in user, logging in if there is no valid session.
+     *
+     * @param server the server to log in to.
+     * @return the logged in user, or the result of the failed login.
+     */
+    public User getUser(YouTrackServer server) {
+        User current = user;
+        if (current != null && (token != null || !isExpired())) {
+            hits.incrementAndGet();
+            return current;
+        }
+        synchronized (loginLock) {
+            current = user;
+            if (current != null && !isExpired()) {
+                hits.incrementAndGet();
+                return current;
+            }
+            if (current == null) {
+                misses.incrementAndGet();
+            } else {
+                refreshes.incrementAndGet();
+            }
+            return login(server, current);
+        }
+    }
+
+    /**
+     * Renews the session of the user after the server rejected the given cookies. If another thread already renewed
+     * the session, no login is made.
+     *
+     * @param server      the server to log in to.
+     * @param user        the user whose session was rejected.
+     * @param sentCookies the cookies that were rejected.
+     * @return true if the user has a new session and the request should be retried.
+     */
+    public boolean refresh(YouTrackServer server, User user, List<String> sentCookies) {
+        synchronized (loginLock) {
+            if (token != null || user != this.user) {
+                return false;
+            }
+            if (user.getCookies() != sentCookies) {
+                return true;
+            }
+            refreshes.incrementAndGet();
+            User loggedIn = login(server, user);
+            return loggedIn != null && loggedIn.isLoggedIn();
+        }
+    }
+
+    /**
+     * Drops the current session, so the next use logs in again.
+     */
+    public void invalidate() {
+        if (token != null) {
+            return;
+        }
+        synchronized (loginLock) {
+            user = null;
+        }
+    }
+
+    private User login(YouTrackServer server, User current) {
+        User loggedIn = server.login(username, password);
+        if (loggedIn == null || !loggedIn.isLoggedIn()) {
+            user = null;
+            return loggedIn;
+        }
+        if (current != null) {
+            current.setCookies(loggedIn.getCookies());
+            loggedIn = current;
+        }
+        loginTime = System.currentTimeMillis();
+        user = loggedIn;
+        return loggedIn;
+    }
+
+    private boolean isExpired() {
+        return System.currentTimeMillis() - loginTime > SESSION_TIMEOUT;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * @return number of times a valid session was reused.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of times there was no session and a login was made.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of times an expired or rejected session was renewed.
+     */
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+}
@@ -0,0 +1,117 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges identical calls made at the same time into one. The first caller for a key makes the call, callers arriving
+ * with the same key while it is in flight wait for it and get the same result or failure. Nothing is kept once the
+ * call has finished, so later callers make a new call.
+ * <p>
+ * All callers get the same result object, so results must not be changed by the callers.
+ */
+public class SingleFlight {
+    /**
+     * A call that can be shared.
+     *
+     * @param <T> the type of the result.
+     */
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> flights = new ConcurrentHashMap<String, CompletableFuture<Object>>();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    /**
+     * Makes the call, or waits for the identical call in flight.
+     *
+     * @param key  identifies identical calls.
+     * @param call the call.
+     * @param <T>  the type of the result.
+     * @return the result of the call.
+     * @throws Exception the failure of the call.
+     */
+    public <T> T execute(String key, Call<T> call) throws Exception {
+        return execute(key, call, 0);
+    }
+
+    /**
+     * Makes the call, or waits at most the timeout for the identical call in flight. If that call does not finish in
+     * time, the call is made again without waiting for it.
+     *
+     * @param key     identifies identical calls.
+     * @param call    the call.
+     * @param timeout maximum time in milliseconds to wait for the call in flight, 0 to wait until it finishes.
+     * @param <T>     the type of the result.
+     * @return the result of the call.
+     * @throws Exception the failure of the call.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Call<T> call, long timeout) throws Exception {
+        calls.incrementAndGet();
+        CompletableFuture<Object> flight = new CompletableFuture<Object>();
+        CompletableFuture<Object> current = flights.putIfAbsent(key, flight);
+        if (current != null) {
+            try {
+                T result = (T) (timeout > 0 ? current.get(timeout, TimeUnit.MILLISECONDS) : current.get());
+                saved.incrementAndGet();
+                return result;
+            } catch (TimeoutException e) {
+                timedOut.incrementAndGet();
+                return call.call();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for an identical request");
+            }
+        }
+        try {
+            T result = call.call();
+            flight.complete(result);
+            return result;
+        } catch (Throwable t) {
+            flight.completeExceptionally(t);
+            throw t;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return number of calls made or shared.
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * @return number of calls that shared the result of an identical call in flight.
+     */
+    public long getSaved() {
+        return saved.get();
+    }
+
+    /**
+     * @return number of calls made again because the identical call in flight took too long.
+     */
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+}
@@ -31,7 +31,7 @@ public class StateBundle {
     @Getter private final List<State> states = new ArrayList<State>();
 
     public static class StateBundleHandler extends DefaultHandler {
-        private StateBundle stateBundle;
+        @Getter private StateBundle stateBundle;
         private StringBuilder stringBuilder = new StringBuilder();
         boolean inStateValue;
         private State currentState;
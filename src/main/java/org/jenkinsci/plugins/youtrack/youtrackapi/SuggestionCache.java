@@ -0,0 +1,285 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Suggestions for search queries of a site, kept for a short time so typing a query does not ask the server for every
+ * keystroke.
+ * <p>
+ * A query is answered from the suggestions kept for it, or computed from the suggestions kept for the longest prefix
+ * of it if the query only continues the word being completed. Otherwise the server is asked after a short delay. A
+ * newer query from the same session supersedes the older one: an older query not sent yet is dropped, and its caller
+ * stops waiting for it. The least recently used queries are dropped when more than the maximum number are kept.
+ */
+public class SuggestionCache {
+    /**
+     * Time in milliseconds suggestions are kept.
+     */
+    static final long TTL = Long.getLong(SuggestionCache.class.getName() + ".ttl", 30000L);
+    /**
+     * Maximum number of queries kept per site.
+     */
+    static final int MAX_ENTRIES = Integer.getInteger(SuggestionCache.class.getName() + ".maxEntries", 256);
+    /**
+     * Time in milliseconds to wait for a newer query from the same session before asking the server.
+     */
+    static final long DEBOUNCE = Long.getLong(SuggestionCache.class.getName() + ".debounce", 100L);
+    /**
+     * Maximum number of suggestions asked from the server. Fewer suggestions are known to be all there are, so the
+     * suggestions for longer queries can be computed from them.
+     */
+    public static final int OPTIONS_LIMIT = Integer.getInteger(SuggestionCache.class.getName() + ".optionsLimit", 50);
+
+    private static class Entry {
+        final List<Suggestion> suggestions;
+        final long readAt;
+
+        Entry(List<Suggestion> suggestions, long readAt) {
+            this.suggestions = suggestions;
+            this.readAt = readAt;
+        }
+    }
+
+    /**
+     * A query waiting for its suggestions.
+     */
+    private static class Pending {
+        final CompletableFuture<List<Suggestion>> result = new CompletableFuture<List<Suggestion>>();
+        volatile boolean superseded;
+
+        void supersede() {
+            superseded = true;
+            result.complete(null);
+        }
+    }
+
+    private final RequestExecutor executor;
+    private final long ttl;
+    private final Map<String, Entry> entries;
+    /**
+     * The latest query waiting for suggestions, by session.
+     */
+    private final Map<String, Pending> pending = new HashMap<String, Pending>();
+
+    private long hits;
+    private long derived;
+    private long misses;
+    private long superseded;
+
+    public SuggestionCache(RequestExecutor executor) {
+        this(executor, TTL, MAX_ENTRIES);
+    }
+
+    public SuggestionCache(RequestExecutor executor, long ttl, final int maxEntries) {
+        this.executor = executor;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the suggestions for a query.
+     *
+     * @param session identifies the session typing the query, null if queries are never superseded.
+     * @param query   the query.
+     * @param loader  asks the server for the suggestions for a query, at most {@link #OPTIONS_LIMIT} of them.
+     * @return the suggestions, null if they could not be read or a newer query superseded this one.
+     */
+    public List<Suggestion> get(String session, final String query, final Function<String, List<Suggestion>> loader) {
+        List<Suggestion> known = getKnown(query);
+        if (known != null) {
+            return known;
+        }
+
+        final Pending current = new Pending();
+        if (session != null) {
+            Pending previous;
+            synchronized (this) {
+                previous = pending.put(session, current);
+            }
+            if (previous != null) {
+                previous.supersede();
+            }
+        }
+        try {
+            if (session != null && DEBOUNCE > 0) {
+                try {
+                    current.result.get(DEBOUNCE, TimeUnit.MILLISECONDS);
+                    // Superseded while waiting.
+                    return null;
+                } catch (TimeoutException e) {
+                    // Still the latest query of the session.
+                }
+            }
+            executor.submit(new Supplier<List<Suggestion>>() {
+                @Override
+                public List<Suggestion> get() {
+                    if (current.superseded) {
+                        return null;
+                    }
+                    List<Suggestion> suggestions = loader.apply(query);
+                    if (suggestions != null) {
+                        put(query, suggestions);
+                    }
+                    return suggestions;
+                }
+            }).whenComplete(new BiConsumer<List<Suggestion>, Throwable>() {
+                @Override
+                public void accept(List<Suggestion> suggestions, Throwable throwable) {
+                    current.result.complete(suggestions);
+                }
+            });
+            List<Suggestion> suggestions = current.result.get();
+            return suggestions == null ? null : Collections.unmodifiableList(suggestions);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } finally {
+            synchronized (this) {
+                if (current.superseded) {
+                    superseded++;
+                }
+                if (session != null && pending.get(session) == current) {
+                    pending.remove(session);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the suggestions kept for the query, or computes them from the suggestions kept for a prefix of it.
+     *
+     * @return the suggestions, null if they are not known.
+     */
+    private synchronized List<Suggestion> getKnown(String query) {
+        Entry entry = getFresh(query);
+        if (entry != null) {
+            hits++;
+            return Collections.unmodifiableList(entry.suggestions);
+        }
+        for (int length = query.length() - 1; length > 0; length--) {
+            Entry prefixEntry = getFresh(query.substring(0, length));
+            if (prefixEntry != null) {
+                List<Suggestion> suggestions = derive(prefixEntry.suggestions, length, query);
+                if (suggestions == null) {
+                    break;
+                }
+                derived++;
+                // Kept with the time of the suggestions computed from, so they expire together.
+                entries.put(query, new Entry(suggestions, prefixEntry.readAt));
+                return Collections.unmodifiableList(suggestions);
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    private Entry getFresh(String query) {
+        Entry entry = entries.get(query);
+        if (entry != null && System.currentTimeMillis() - entry.readAt >= ttl) {
+            entries.remove(query);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Computes the suggestions for a query from the suggestions for a prefix of it. This is only possible if the
+     * query continues the word being completed, and the suggestions for the prefix are all there are.
+     *
+     * @param suggestions  the suggestions for the prefix.
+     * @param prefixLength the length of the prefix.
+     * @param query        the query.
+     * @return the suggestions for the query, null if they cannot be computed.
+     */
+    static List<Suggestion> derive(List<Suggestion> suggestions, int prefixLength, String query) {
+        if (suggestions.isEmpty() || suggestions.size() >= OPTIONS_LIMIT) {
+            return null;
+        }
+        for (int i = prefixLength; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_') {
+                return null;
+            }
+        }
+        List<Suggestion> result = new ArrayList<Suggestion>();
+        for (Suggestion suggestion : suggestions) {
+            if (suggestion.getCompletionEnd() != prefixLength || suggestion.getCompletionStart() > prefixLength
+                    || suggestion.getCompletionStart() < 0 || suggestion.getOption() == null) {
+                return null;
+            }
+            String word = query.substring(suggestion.getCompletionStart()).toLowerCase();
+            int matchStart = suggestion.getOption().toLowerCase().indexOf(word);
+            if (matchStart >= 0) {
+                Suggestion narrowed = new Suggestion();
+                narrowed.setOption(suggestion.getOption());
+                narrowed.setDescription(suggestion.getDescription());
+                narrowed.setPrefix(suggestion.getPrefix());
+                narrowed.setSuffix(suggestion.getSuffix());
+                narrowed.setCompletionStart(suggestion.getCompletionStart());
+                narrowed.setCompletionEnd(query.length());
+                narrowed.setMatchStart(matchStart);
+                narrowed.setMatchEnd(matchStart + word.length());
+                result.add(narrowed);
+            }
+        }
+        return result;
+    }
+
+    private synchronized void put(String query, List<Suggestion> suggestions) {
+        entries.put(query, new Entry(new ArrayList<Suggestion>(suggestions), System.currentTimeMillis()));
+    }
+
+    /**
+     * Forgets all kept suggestions.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of queries answered with the suggestions kept for them.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of queries answered with suggestions computed from those for a prefix.
+     */
+    public synchronized long getDerived() {
+        return derived;
+    }
+
+    /**
+     * @return number of queries the server was asked for, unless superseded first.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of queries superseded by a newer query from the same session.
+     */
+    public synchronized long getSuperseded() {
+        return superseded;
+    }
+}
@@ -0,0 +1,64 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Total time a build may spend waiting for YouTrack. The budget starts with the first request made by a
+ * {@link YouTrackServer} with this budget and ends a fixed time later, however many requests run at the same time.
+ * Once it has ended the remaining requests fail without contacting the server.
+ */
+public class TimeBudget {
+    /**
+     * The budget in milliseconds.
+     */
+    private final long budget;
+    /**
+     * Time in nanoseconds, as {@link System#nanoTime()}, the budget ends, set on first use.
+     */
+    private long deadline;
+    private boolean started;
+
+    /**
+     * Constructs a time budget.
+     *
+     * @param budget the budget in milliseconds.
+     */
+    public TimeBudget(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Gets the time left, starting the budget if this is its first use.
+     *
+     * @return the remaining time in milliseconds, 0 if the budget is used up.
+     */
+    public synchronized long getRemaining() {
+        long now = System.nanoTime();
+        if (!started) {
+            started = true;
+            deadline = now + TimeUnit.MILLISECONDS.toNanos(budget);
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - now));
+    }
+
+    /**
+     * @return true if no time is left.
+     */
+    public boolean isExhausted() {
+        return getRemaining() == 0;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Thrown instead of making a request when the budget is used up.
+     */
+    public static class ExhaustedException extends InterruptedIOException {
+        public ExhaustedException(long budget) {
+            super("YouTrack time budget of " + budget + " ms is used up");
+        }
+    }
+}
@@ -8,6 +8,9 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,7 +32,21 @@ public class User {
     /**
      * The set of cookies if this user has a session.
      */
-    @Getter private transient List<String> cookies = new ArrayList<String>();
+    @Getter private transient volatile List<String> cookies = new ArrayList<String>();
+
+    /**
+     * Replaces the cookies when the session is renewed, requests already sending the old cookies are unaffected.
+     *
+     * @param cookies the cookies of the new session.
+     */
+    void setCookies(List<String> cookies) {
+        this.cookies = cookies;
+    }
+
+    /**
+     * The permanent token sent as bearer authorization, null if this user authenticates with session cookies.
+     */
+    @Getter @Setter private transient String token;
 
     /**
      * Handler for parsing user query if will find the first user
@@ -50,4 +67,40 @@ public class User {
             }
         }
     }
+
+    /**
+     * Decodes the first user found, without reading the rest of the response.
+     */
+    static class UserRefDecoder extends XmlDecoder<User> {
+        @Override
+        User decode(XMLStreamReader reader) throws XMLStreamException {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("user")) {
+                    User user = new User();
+                    user.username = reader.getAttributeValue(null, "login");
+                    return user;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the first user found as a list, empty if none is found, without reading the rest of the response.
+     */
+    static class UserLookupDecoder extends XmlDecoder<List<User>> {
+        @Override
+        List<User> decode(XMLStreamReader reader) throws XMLStreamException {
+            List<User> users = new ArrayList<User>(1);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("user")) {
+                    User user = new User();
+                    user.username = reader.getAttributeValue(null, "login");
+                    users.add(user);
+                    break;
+                }
+            }
+            return users;
+        }
+    }
 }
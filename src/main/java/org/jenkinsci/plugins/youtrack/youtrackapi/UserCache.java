@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Logins of YouTrack users by e-mail address, used to apply commands as the author of a commit. Addresses without a
+ * user are kept too, for a shorter time, so they are not looked up for every command either. The least recently used
+ * addresses are dropped when more than the maximum number are kept.
+ */
+public class UserCache {
+    /**
+     * Time in milliseconds the login of an address is kept.
+     */
+    static final long TTL = Long.getLong(UserCache.class.getName() + ".ttl", 60 * 60 * 1000L);
+    /**
+     * Time in milliseconds an address without a user is kept.
+     */
+    static final long NEGATIVE_TTL = Long.getLong(UserCache.class.getName() + ".negativeTtl", 10 * 60 * 1000L);
+    /**
+     * Maximum number of addresses kept per site.
+     */
+    static final int MAX_ENTRIES = Integer.getInteger(UserCache.class.getName() + ".maxEntries", 10000);
+
+    /**
+     * The login for an address.
+     */
+    static class Entry {
+        /**
+         * The login of the user, null if the address has no user.
+         */
+        final String login;
+        final long expiresAt;
+
+        Entry(String login, long expiresAt) {
+            this.login = login;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long ttl;
+    private final long negativeTtl;
+    private final Map<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+
+    public UserCache() {
+        this(TTL, NEGATIVE_TTL, MAX_ENTRIES);
+    }
+
+    public UserCache(long ttl, long negativeTtl, final int maxEntries) {
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the login kept for an address.
+     *
+     * @param email the e-mail address.
+     * @return the entry, null if the address is not known.
+     */
+    synchronized Entry get(String email) {
+        String key = getKey(email);
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() >= entry.expiresAt) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Keeps the login of an address.
+     *
+     * @param email the e-mail address.
+     * @param login the login of the user, null if the address has no user.
+     */
+    synchronized void put(String email, String login) {
+        entries.put(getKey(email), new Entry(login, System.currentTimeMillis() + (login == null ? negativeTtl : ttl)));
+    }
+
+    private static String getKey(String email) {
+        return email.trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Forgets all kept addresses.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of addresses kept.
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of lookups answered from the kept addresses.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups of addresses not kept.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
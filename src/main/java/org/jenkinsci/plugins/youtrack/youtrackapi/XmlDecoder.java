@@ -0,0 +1,140 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes an xml response with a pull parser. Unlike a SAX handler, a decoder can skip the parts of the document it
+ * does not need and stop reading as soon as it has what it needs.
+ *
+ * @param <T> the type of the decoded response.
+ */
+abstract class XmlDecoder<T> implements YouTrackServer.ResponseParser<T> {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    /**
+     * True if the decoder stopped before the end of the root element.
+     */
+    private boolean stoppedEarly;
+
+    @Override
+    public T parse(InputStream body) throws IOException {
+        XMLStreamReader reader;
+        try {
+            // Factories are not guaranteed to be thread safe.
+            synchronized (FACTORY) {
+                reader = FACTORY.createXMLStreamReader(body);
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not read response", e);
+        }
+        DepthReader depthReader = new DepthReader(reader);
+        try {
+            T decoded = decode(depthReader);
+            // Decoders return at the end of the element they decode, which is the end of the document for the root.
+            stoppedEarly = depthReader.depth > 0;
+            return decoded;
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not parse response", e);
+        } finally {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // The stream itself is closed by the caller.
+            }
+        }
+    }
+
+    /**
+     * Decodes the document, returning as soon as the result is known.
+     *
+     * @param reader the reader, positioned at the start of the document.
+     * @return the decoded response.
+     * @throws XMLStreamException if the document is not well formed.
+     */
+    abstract T decode(XMLStreamReader reader) throws XMLStreamException;
+
+    /**
+     * @return true if the decoder returned before the root element of the document was closed.
+     */
+    boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+
+    /**
+     * Skips the element the reader is positioned at, with everything in it.
+     *
+     * @param reader the reader, positioned at the start of an element.
+     * @throws XMLStreamException if the document is not well formed.
+     */
+    static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Reads all text in the element the reader is positioned at, leaving the reader at its end.
+     *
+     * @param reader the reader, positioned at the start of an element.
+     * @return the text.
+     * @throws XMLStreamException if the document is not well formed.
+     */
+    static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder stringBuilder = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                stringBuilder.append(reader.getText());
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Keeps track of the number of elements open at the position of the reader. Decoders move the reader with
+     * {@link XMLStreamReader#next()} only.
+     */
+    private static class DepthReader extends StreamReaderDelegate {
+        int depth;
+
+        DepthReader(XMLStreamReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            int event = super.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+            return event;
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -1,7 +1,15 @@
 package org.jenkinsci.plugins.youtrack.youtrackapi;
 
-import org.apache.commons.httpclient.HttpClient;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
+import org.apache.commons.httpclient.ConnectTimeoutException;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
 import org.apache.commons.httpclient.methods.multipart.FilePart;
 import org.apache.commons.httpclient.methods.multipart.MultipartRequestEntity;
 import org.apache.commons.httpclient.methods.multipart.Part;
@@ -10,25 +18,42 @@ import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.youtrack.Command;
 import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.ConnectException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * This class contains methods for communication with a YouTrack server using the REST API for version 4 of YouTrack.
@@ -38,72 +63,838 @@ public class YouTrackServer {
      * Logger for this class.
      */
     private static final Logger LOGGER = Logger.getLogger(YouTrackServer.class.getName());
+    /**
+     * Time in milliseconds to wait before the first retry of a failed request, doubled for every further retry.
+     */
+    static final long BACKOFF = Long.getLong(YouTrackServer.class.getName() + ".backoff", 200L);
+    /**
+     * Maximum time in milliseconds to wait before retrying a failed request.
+     */
+    static final long MAX_BACKOFF = Long.getLong(YouTrackServer.class.getName() + ".maxBackoff", 5000L);
+    /**
+     * Number of issues read per request when searching.
+     */
+    static final int SEARCH_PAGE_SIZE = Math.max(1, Integer.getInteger(YouTrackServer.class.getName() + ".searchPageSize", 100));
+    /**
+     * Maximum number of issues read by id in one request.
+     */
+    static final int ISSUE_BATCH_SIZE = Math.max(1, Integer.getInteger(YouTrackServer.class.getName() + ".issueBatchSize", 50));
+    /**
+     * Maximum number of issues a command is applied to in one request. Equal to the search page size by default, so a
+     * command applied to the issues found by a search is sent before the next page is read.
+     */
+    public static final int COMMAND_BATCH_SIZE = Math.max(1, Integer.getInteger(YouTrackServer.class.getName() + ".commandBatchSize", SEARCH_PAGE_SIZE));
+    /**
+     * Size in bytes above which the rest of a response is discarded with its connection when a decoder stopped early,
+     * instead of reading it to the end to keep the connection for the next request.
+     */
+    static final long EARLY_CLOSE_THRESHOLD = Long.getLong(YouTrackServer.class.getName() + ".earlyCloseThreshold", 64 * 1024L);
+    /**
+     * Maximum number of users looked up by e-mail address at the same time, so the lookups for the authors of many
+     * changes do not take up the executor shared with other requests.
+     */
+    static final int MAX_PARALLEL_USER_LOOKUPS = Math.max(1, Integer.getInteger(YouTrackServer.class.getName() + ".maxParallelUserLookups", 4));
     /**
      * The url of the YouTrack server.
      */
     private final String serverUrl;
+    /**
+     * The pooled transport used for all requests to the server.
+     */
+    private final YouTrackTransport transport;
+    /**
+     * Manager of the shared session, used to renew the session when the server rejects it. Null if sessions are not shared.
+     */
+    private SessionManager sessionManager;
+    /**
+     * Time in milliseconds to wait for data from the server, 0 for the default of the transport.
+     */
+    private int readTimeout;
+    /**
+     * Time budget all requests of this server consume, null if unlimited.
+     */
+    private TimeBudget timeBudget;
+    /**
+     * Executor running the asynchronous requests.
+     */
+    private RequestExecutor executor = RequestExecutor.getDefault();
+    /**
+     * Number of times a failed request is retried.
+     */
+    private int retries;
+    /**
+     * Circuit breaker of the site, null if requests are never suspended.
+     */
+    private CircuitBreaker circuitBreaker;
+    /**
+     * Limiter of concurrent requests and request rate of the site, null if unlimited.
+     */
+    private RequestLimiter requestLimiter;
+    /**
+     * Executed methods holding a permit of the request limiter until their connection is released.
+     */
+    private final Set<HttpMethod> permitHolders = Collections.newSetFromMap(new ConcurrentHashMap<HttpMethod, Boolean>());
+    /**
+     * True to request compressed responses to reads.
+     */
+    private boolean compression = true;
+    /**
+     * Client reading issues through one of the REST APIs of the server.
+     */
+    private IssueClient issueClient = new RestIssueClient(this);
+    /**
+     * True if the server has the /api JSON API, which applies a command to many issues in one request.
+     */
+    private boolean jsonApi;
+    /**
+     * Cache of the metadata of the site, null to always read metadata from the server.
+     */
+    private MetadataCache metadataCache;
+    /**
+     * Cache of the logins of users by e-mail address, null to always ask the server.
+     */
+    private UserCache userCache;
+    /**
+     * Cache of the build bundles of fields and the builds in them, null to always ask the server.
+     */
+    private BuildBundleCache buildBundleCache;
 
     /**
-     * Constructs a server.
+     * Constructs a server using the shared transport for the url.
      *
      * @param serverUrl the url of the server.
      */
     public YouTrackServer(String serverUrl) {
+        this(serverUrl, YouTrackTransport.forUrl(serverUrl));
+    }
+
+    /**
+     * Constructs a server.
+     *
+     * @param serverUrl the url of the server.
+     * @param transport the transport to send requests through.
+     */
+    public YouTrackServer(String serverUrl, YouTrackTransport transport) {
         this.serverUrl = serverUrl;
+        this.transport = transport;
+    }
+
+    /**
+     * Executes the method through the pooled transport within the read timeout, the time budget and the limits of the
+     * site. Failed requests are retried with backoff if they can be retried safely, and are counted by the circuit
+     * breaker. The request keeps its permit of the request limiter while the response is read, until the caller
+     * releases it with {@link #releaseConnection(HttpMethod)}.
+     *
+     * @param method the method to execute, the caller must release it with {@link #releaseConnection(HttpMethod)}.
+     * @param user   the user to execute the method as, null for anonymous requests.
+     * @return the status code of the response.
+     * @throws IOException if the request could not be executed, an {@link InterruptedIOException} if it timed out or
+     *                     the time budget is used up.
+     */
+    private int execute(HttpMethod method, User user) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            long timeout = getRequestTimeout();
+            boolean acquired = requestLimiter != null && requestLimiter.acquire(timeout);
+            int responseCode = 0;
+            boolean failed = false;
+            boolean holdPermit = false;
+            try {
+                if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+                    throw new CircuitBreaker.OpenException(serverUrl);
+                }
+                method.getParams().setSoTimeout((int) timeout);
+                try {
+                    responseCode = executeAuthorized(method, user, getConnectTimeout(timeout));
+                    holdPermit = acquired;
+                } catch (IOException | RuntimeException e) {
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onFailure();
+                    }
+                    if (!(e instanceof IOException && attempt < retries && isRetriable(method, (IOException) e))) {
+                        throw e;
+                    }
+                    LOGGER.log(Level.FINE, "Retrying request to " + serverUrl, e);
+                    method.releaseConnection();
+                    failed = true;
+                }
+            } finally {
+                if (holdPermit) {
+                    permitHolders.add(method);
+                } else if (acquired) {
+                    requestLimiter.release();
+                }
+            }
+            if (failed) {
+                backOff(attempt);
+                continue;
+            }
+            if (isUnavailable(responseCode)) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onFailure();
+                }
+                // 503 is sent before the request is processed, so it is safe to repeat any request.
+                if (attempt < retries && (responseCode == HttpStatus.SC_SERVICE_UNAVAILABLE || isIdempotent(method))) {
+                    LOGGER.log(Level.FINE, "Retrying request to " + serverUrl + " after status " + responseCode);
+                    releaseConnection(method);
+                    backOff(attempt);
+                    continue;
+                }
+            } else if (circuitBreaker != null) {
+                circuitBreaker.onSuccess();
+            }
+            return responseCode;
+        }
+    }
+
+    /**
+     * Releases the connection of a method executed by {@link #execute(HttpMethod, User)}, and the permit of the
+     * request limiter the method held while its response was read.
+     *
+     * @param method the executed method.
+     */
+    private void releaseConnection(HttpMethod method) {
+        try {
+            method.releaseConnection();
+        } finally {
+            if (permitHolders.remove(method)) {
+                requestLimiter.release();
+            }
+        }
+    }
+
+    /**
+     * Gets the read timeout of the next request, limited by the remaining time budget.
+     *
+     * @return the timeout in milliseconds.
+     * @throws TimeBudget.ExhaustedException if the time budget is used up.
+     */
+    private long getRequestTimeout() throws TimeBudget.ExhaustedException {
+        long timeout = readTimeout > 0 ? readTimeout : YouTrackTransport.READ_TIMEOUT;
+        if (timeBudget == null) {
+            return timeout;
+        }
+        long remaining = timeBudget.getRemaining();
+        if (remaining == 0) {
+            throw new TimeBudget.ExhaustedException(timeBudget.getBudget());
+        }
+        if (timeout <= 0 || timeout > remaining) {
+            timeout = remaining;
+        }
+        return timeout;
+    }
+
+    /**
+     * Gets the time to wait for a connection of the next request: the remaining time budget if it is shorter than the
+     * connect timeout of the transport.
+     *
+     * @param timeout the read timeout of the request, limited by the time budget.
+     * @return the timeout in milliseconds, 0 for the connect timeout of the transport.
+     */
+    private int getConnectTimeout(long timeout) {
+        return timeBudget != null && timeout < Integer.MAX_VALUE ? (int) timeout : 0;
+    }
+
+    /**
+     * Waits before the next attempt of a request, exponentially longer for every attempt, with random jitter so
+     * builds retrying at the same time spread out. The wait does not last beyond the time budget.
+     *
+     * @param attempt the number of the failed attempt, starting at 0.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    private void backOff(int attempt) throws InterruptedIOException {
+        long delay = Math.min(MAX_BACKOFF, BACKOFF << Math.min(attempt, 20));
+        long sleep = ThreadLocalRandom.current().nextLong(delay / 2, delay + 1);
+        if (timeBudget != null) {
+            sleep = Math.min(sleep, timeBudget.getRemaining());
+        }
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry request to " + serverUrl);
+        }
+    }
+
+    private static boolean isIdempotent(HttpMethod method) {
+        String name = method.getName();
+        return "GET".equals(name) || "PUT".equals(name) || "HEAD".equals(name) || "DELETE".equals(name);
+    }
+
+    /**
+     * Checks whether a failed request can be repeated without risk of applying it twice.
+     *
+     * @param method the method that failed.
+     * @param e      the failure.
+     * @return true if the request can be retried.
+     */
+    private static boolean isRetriable(HttpMethod method, IOException e) {
+        if (e instanceof TimeBudget.ExhaustedException || e instanceof CircuitBreaker.OpenException) {
+            return false;
+        }
+        // Requests that never reached the server can always be repeated.
+        return isIdempotent(method) || e instanceof ConnectException || e instanceof ConnectTimeoutException;
+    }
+
+    private static boolean isUnavailable(int responseCode) {
+        return responseCode == HttpStatus.SC_BAD_GATEWAY || responseCode == HttpStatus.SC_SERVICE_UNAVAILABLE
+                || responseCode == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
+
+    /**
+     * Executes the method through the pooled transport, with the token or the session cookies of the user.
+     *
+     * @param method the method to execute, the caller must release its connection.
+     * @param user   the user to execute the method as, null for anonymous requests.
+     * @return the status code of the response.
+     * @throws IOException if the request could not be executed.
+     */
+    private int executeAuthorized(HttpMethod method, User user, int connectTimeout) throws IOException {
+        if (user == null) {
+            return transport.execute(method, connectTimeout);
+        }
+        if (user.getToken() != null) {
+            method.setRequestHeader("Authorization", "Bearer " + user.getToken());
+            return transport.execute(method, connectTimeout);
+        }
+        List<String> cookies = user.getCookies();
+        method.removeRequestHeader("Cookie");
+        addCookies(method, cookies);
+        int responseCode = transport.execute(method, connectTimeout);
+        if (responseCode == HttpStatus.SC_UNAUTHORIZED && sessionManager != null) {
+            method.releaseConnection();
+            if (sessionManager.refresh(this, user, cookies)) {
+                method.removeRequestHeader("Cookie");
+                addCookies(method, user.getCookies());
+                responseCode = transport.execute(method, connectTimeout);
+            }
+        }
+        return responseCode;
+    }
+
+    private static void addCookies(HttpMethod method, List<String> cookies) {
+        for (String cookie : cookies) {
+            method.addRequestHeader("Cookie", cookie);
+        }
+    }
+
+    /**
+     * Sets the manager of the shared session the users of this server belong to.
+     *
+     * @param sessionManager the session manager, null if sessions are not shared.
+     */
+    public void setSessionManager(SessionManager sessionManager) {
+        this.sessionManager = sessionManager;
+    }
+
+    /**
+     * Sets the timeouts of requests to the server.
+     *
+     * @param connectTimeout time in milliseconds to wait for a connection, 0 for the default. Applies to all servers
+     *                       with the same url.
+     * @param readTimeout    time in milliseconds to wait for data, 0 for the default.
+     */
+    public void setTimeouts(int connectTimeout, int readTimeout) {
+        if (connectTimeout > 0) {
+            transport.setConnectTimeout(connectTimeout);
+        }
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Sets the time budget all requests of this server consume.
+     *
+     * @param timeBudget the time budget, null if unlimited.
+     */
+    public void setTimeBudget(TimeBudget timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Sets how failed requests are handled.
+     *
+     * @param retries        number of times a failed request is retried if it is safe to repeat.
+     * @param circuitBreaker the circuit breaker of the site, null to never suspend requests.
+     */
+    public void setFailureHandling(int retries, CircuitBreaker circuitBreaker) {
+        this.retries = retries;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Sets the limiter of concurrent requests and request rate of the site.
+     *
+     * @param requestLimiter the limiter, null if unlimited.
+     */
+    public void setRequestLimiter(RequestLimiter requestLimiter) {
+        this.requestLimiter = requestLimiter;
+    }
+
+    /**
+     * Sets whether responses to reads are requested compressed.
+     *
+     * @param compression true to accept gzip or deflate compressed responses.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Sets which REST API issues are read through.
+     *
+     * @param jsonApi true to read issues through the /api JSON API, false for the legacy /rest XML API.
+     */
+    public void setJsonApi(boolean jsonApi) {
+        this.jsonApi = jsonApi;
+        this.issueClient = jsonApi ? new ApiIssueClient(this) : new RestIssueClient(this);
+    }
+
+    /**
+     * Sets the cache projects, custom fields, groups and bundles are read through.
+     *
+     * @param metadataCache the cache of the site, null to always read metadata from the server.
+     */
+    public void setMetadataCache(MetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    /**
+     * Sets the cache users are looked up by e-mail address through.
+     *
+     * @param userCache the cache of the site, null to always ask the server.
+     */
+    public void setUserCache(UserCache userCache) {
+        this.userCache = userCache;
+    }
+
+    /**
+     * Sets the cache the build bundles of fields and the builds in them are kept in.
+     *
+     * @param buildBundleCache the cache of the site, null to always ask the server.
+     */
+    public void setBuildBundleCache(BuildBundleCache buildBundleCache) {
+        this.buildBundleCache = buildBundleCache;
+    }
+
+    /**
+     * Gets metadata through the metadata cache, if there is one.
+     *
+     * @param user   the user reading the metadata, which is kept per user.
+     * @param key    identifies the metadata.
+     * @param loader reads the metadata from the server.
+     * @param <T>    the type of the metadata.
+     * @return the metadata, null if it could not be read.
+     */
+    private <T> T getMetadata(User user, String key, Supplier<T> loader) {
+        if (metadataCache == null || user == null) {
+            return loader.get();
+        }
+        return metadataCache.get(user.getUsername() + " " + key, loader);
+    }
+
+    String getServerUrl() {
+        return serverUrl;
+    }
+
+    /**
+     * Sets the executor running the asynchronous requests of this server.
+     *
+     * @param executor the executor.
+     */
+    public void setExecutor(RequestExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Waits for the result of a request running in parallel, at most for the remaining time budget. If the wait is
+     * interrupted or the budget runs out, the request is cancelled unless it already started, and the fallback is
+     * returned. The interrupt status is kept, so the caller stops waiting for the other requests too.
+     *
+     * @param future   the future result.
+     * @param fallback the result if the request is not waited for.
+     * @param <T>      the type of the result.
+     * @return the result.
+     */
+    private <T> T await(CompletableFuture<T> future, T fallback) {
+        try {
+            if (timeBudget == null) {
+                return future.get();
+            }
+            return future.get(timeBudget.getRemaining(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            future.cancel(false);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            LOGGER.log(Level.WARNING, "Request failed", e.getCause());
+        }
+        return fallback;
+    }
+
+    /**
+     * Gets the status of a command that failed with the exception.
+     *
+     * @param e the exception.
+     * @return {@link Command.Status#TIMEOUT} if the request timed out or the time budget is used up, otherwise
+     * {@link Command.Status#FAILED}.
+     */
+    private static Command.Status getFailureStatus(IOException e) {
+        return e instanceof InterruptedIOException ? Command.Status.TIMEOUT : Command.Status.FAILED;
+    }
+
+    /**
+     * Checks if a request that failed with the exception may have reached the server.
+     *
+     * @param e the exception.
+     * @return false if the request was not sent because the time budget was used up, the circuit breaker was open or
+     * no connection could be made, otherwise true.
+     */
+    private static boolean maybeSent(IOException e) {
+        return !(e instanceof TimeBudget.ExhaustedException || e instanceof CircuitBreaker.OpenException
+                || e instanceof ConnectException || e instanceof ConnectTimeoutException);
+    }
+
+    private static PostMethod createFormPost(String url, String body) throws UnsupportedEncodingException {
+        PostMethod postMethod = new PostMethod(url);
+        postMethod.setRequestEntity(new StringRequestEntity(body, "application/x-www-form-urlencoded", "UTF-8"));
+        return postMethod;
+    }
+
+    private static String encodePathSegment(String segment) throws UnsupportedEncodingException {
+        return URLEncoder.encode(segment, "ISO-8859-1").replace("+", "%20");
     }
 
     private static String getErrorMessage(InputStream errorStream) throws IOException {
-        StringBuilder stringBuilder = new StringBuilder();
-        try(BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(errorStream, StandardCharsets.UTF_8))) {
-            String l;
-            while ((l = bufferedReader.readLine()) != null) {
-                stringBuilder.append(l).append("\n");
+        if (errorStream == null) {
+            return null;
+        }
+        // Error responses are small, keep the bytes to return them as they are if they are not the expected xml.
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = errorStream) {
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                body.write(buffer, 0, read);
             }
         }
         try {
-            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-            SAXParser saxParser = saxParserFactory.newSAXParser();
             ErrorHandler errorHandler = new ErrorHandler();
-            saxParser.parse(new InputSource(new StringReader(stringBuilder.toString())), errorHandler);
+            SaxParserPool.parse(new ByteArrayInputStream(body.toByteArray()), errorHandler);
             return errorHandler.errorMessage;
         } catch (ParserConfigurationException | SAXException e) {
             LOGGER.log(Level.WARNING, "Could not parse error response", e);
         }
 
         // If we couldn't parse the body, return the raw response.
-        return stringBuilder.toString();
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
     }
 
-    public Command createIssue(String siteName, User user, String project, String title, String description, String command, File attachment) {
-        return createIssuePOST(siteName, user, project, title, description, command, attachment);
+    /**
+     * Gets the resource and parses the response with the handler.
+     * <p>
+     * Identical requests made by other threads while this one is in flight, for the same url and credentials and
+     * with the same kind of handler, share this request. Each of them parses the response with its own handler.
+     *
+     * @param url     the url of the resource.
+     * @param user    the user to get the resource as, null for anonymous requests.
+     * @param handler the handler to parse the response with.
+     * @param variant distinguishes handlers of the same class that extract different data, null if they do not.
+     * @param <H>     the type of the handler.
+     * @return the handler that parsed the response, null if the server did not answer 200 OK.
+     * @throws IOException                  if the request failed.
+     * @throws SAXException                 if the response could not be parsed.
+     * @throws ParserConfigurationException if no parser could be created.
+     */
+    <H extends DefaultHandler> H get(String url, User user, H handler, String variant) throws IOException, SAXException, ParserConfigurationException {
+        return get(url, user, handler, variant, false);
     }
 
-    public List<Group> getGroups(User user) {
-        List<Group> groups = new ArrayList<Group>();
+    /**
+     * Gets the resource like {@link #get(String, User, DefaultHandler, String)}, optionally as a conditional request.
+     * <p>
+     * Conditional reads keep the parsed response with its ETag and Last-Modified validators. The next read of the
+     * same resource sends them, and if the server answers 304 Not Modified the kept response is parsed with the given
+     * handler.
+     *
+     * @param url         the url of the resource.
+     * @param user        the user to get the resource as, null for anonymous requests.
+     * @param handler     the handler to parse the response with.
+     * @param variant     distinguishes handlers of the same class that extract different data, null if they do not.
+     * @param conditional true to revalidate a kept response instead of downloading it again.
+     * @param <H>         the type of the handler.
+     * @return the handler that parsed the response, null if the server did not answer 200 OK.
+     * @throws IOException                  if the request failed.
+     * @throws SAXException                 if the response could not be parsed.
+     * @throws ParserConfigurationException if no parser could be created.
+     */
+    private <H extends DefaultHandler> H get(String url, User user, final H handler, String variant, boolean conditional) throws IOException, SAXException, ParserConfigurationException {
+        return read(url, user, handler.getClass().getName() + '\n' + variant, conditional, new ResponseParser<H>() {
+            @Override
+            public H parse(InputStream body) throws IOException, SAXException, ParserConfigurationException {
+                SaxParserPool.parse(body, handler);
+                return handler;
+            }
+        });
+    }
+
+    /**
+     * Parses the body of a response.
+     *
+     * @param <T> the type of the parsed response.
+     */
+    interface ResponseParser<T> {
+        T parse(InputStream body) throws IOException, SAXException, ParserConfigurationException;
+    }
+
+    /**
+     * Gets the resource and parses the response with the parser, sharing identical requests in flight and
+     * revalidating kept responses like {@link #get(String, User, DefaultHandler, String, boolean)}.
+     *
+     * @param url         the url of the resource.
+     * @param user        the user to get the resource as, null for anonymous requests.
+     * @param kind        identifies what the parser extracts, requests are only shared between parsers of the same kind.
+     * @param conditional true to revalidate a kept response instead of downloading it again.
+     * @param parser      the parser of the response.
+     * @param <T>         the type of the parsed response.
+     * @return the parsed response, null if the server did not answer 200 OK.
+     * @throws IOException                  if the request failed.
+     * @throws SAXException                 if the response could not be parsed.
+     * @throws ParserConfigurationException if no parser could be created.
+     */
+    <T> T read(final String url, final User user, String kind, final boolean conditional, final ResponseParser<T> parser) throws IOException, SAXException, ParserConfigurationException {
+        final String key = url + '\n' + getCredentials(user) + '\n' + kind;
+        // The response parsed by this caller if it made the request, callers sharing the request parse the body themselves.
+        final List<T> own = new ArrayList<T>(1);
+        byte[] body;
         try {
-            URL url = new URL(serverUrl + "/rest/admin/group");
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+            body = transport.getSingleFlight().execute(key, new SingleFlight.Call<byte[]>() {
+                @Override
+                public byte[] call() throws IOException, SAXException, ParserConfigurationException {
+                    ResponseCache responseCache = transport.getResponseCache();
+                    ResponseCache.Entry cached = conditional ? responseCache.get(key) : null;
+                    GetMethod method = new GetMethod(url);
+                    if (compression) {
+                        method.setRequestHeader("Accept-Encoding", "gzip, deflate");
+                    }
+                    if (cached != null) {
+                        if (cached.etag != null) {
+                            method.setRequestHeader("If-None-Match", cached.etag);
+                        }
+                        if (cached.lastModified != null) {
+                            method.setRequestHeader("If-Modified-Since", cached.lastModified);
+                        }
+                    }
+                    try {
+                        int responseCode = execute(method, user);
+                        if (responseCode == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+                            responseCache.hit();
+                            return (byte[]) cached.value;
+                        }
+                        if (responseCode != HttpStatus.SC_OK) {
+                            return null;
+                        }
+                        if (getHeaderValue(method, "Content-Encoding") != null) {
+                            transport.setCompressedResponses(true);
+                        }
+                        InputStream responseStream = getResponseStream(method);
+                        RecordingInputStream body = responseStream == null ? null : new RecordingInputStream(responseStream);
+                        boolean aborted = false;
+                        try {
+                            own.add(parser.parse(body));
+                            if (parser instanceof XmlDecoder && ((XmlDecoder<?>) parser).isStoppedEarly()) {
+                                // Reading the rest of the body keeps the connection, which is cheaper than a new one only for small responses.
+                                long length = method.getResponseContentLength();
+                                if (length < 0 ? !drain(body, EARLY_CLOSE_THRESHOLD) : length > EARLY_CLOSE_THRESHOLD) {
+                                    method.abort();
+                                    aborted = true;
+                                }
+                            }
+                        } finally {
+                            if (body != null) {
+                                try {
+                                    body.close();
+                                } catch (IOException e) {
+                                    if (!aborted) {
+                                        throw e;
+                                    }
+                                }
+                            }
+                        }
+                        byte[] recorded = body == null ? new byte[0] : body.getRecorded();
+                        if (conditional) {
+                            responseCache.put(key, getHeaderValue(method, "ETag"), getHeaderValue(method, "Last-Modified"), recorded);
+                        }
+                        return recorded;
+                    } finally {
+                        releaseConnection(method);
+                    }
+                }
+            }, getRequestTimeout());
+        } catch (IOException | SAXException | ParserConfigurationException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not get " + url, e);
+        }
+        if (!own.isEmpty()) {
+            return own.get(0);
+        }
+        // A response kept or read by another caller, parsed again so no caller gets an object another caller can change.
+        return body == null ? null : parser.parse(new ByteArrayInputStream(body));
+    }
+
+    /**
+     * Reads the rest of a response of unknown length, up to a limit.
+     *
+     * @param body  the body of the response.
+     * @param limit the maximum number of bytes to read.
+     * @return true if the end of the body was reached, false if it is longer than the limit.
+     * @throws IOException if the body could not be read.
+     */
+    static boolean drain(InputStream body, long limit) throws IOException {
+        if (body == null) {
+            return true;
+        }
+        byte[] buffer = new byte[4096];
+        long drained = 0;
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            drained += read;
+            if (drained > limit) {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    /**
+     * Records the bytes read from a response, so callers sharing the request can parse the same body.
+     */
+    private static class RecordingInputStream extends FilterInputStream {
+        private final ByteArrayOutputStream recorded = new ByteArrayOutputStream();
 
-            for (String cookie : user.getCookies()) {
+        RecordingInputStream(InputStream in) {
+            super(in);
+        }
 
-                urlConnection.setRequestProperty("Cookie", cookie);
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                recorded.write(b);
             }
+            return b;
+        }
 
-            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-            try {
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    SAXParser saxParser = saxParserFactory.newSAXParser();
-                    Group.GroupListHandler dh = new Group.GroupListHandler();
-                    saxParser.parse(urlConnection.getInputStream(), dh);
-                    return dh.getGroups();
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                recorded.write(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 4096)];
+            int read = read(buffer, 0, buffer.length);
+            return read < 0 ? 0 : read;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        byte[] getRecorded() {
+            return recorded.toByteArray();
+        }
+    }
+
+    /**
+     * Gets the body of the response, decoding it if the server compressed it.
+     *
+     * @param method the executed method.
+     * @return the decoded body.
+     * @throws IOException if the body could not be read.
+     */
+    static InputStream getResponseStream(HttpMethod method) throws IOException {
+        InputStream body = method.getResponseBodyAsStream();
+        Header contentEncoding = method.getResponseHeader("Content-Encoding");
+        if (body == null || contentEncoding == null) {
+            return body;
+        }
+        String encoding = contentEncoding.getValue().trim().toLowerCase(Locale.ENGLISH);
+        if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+            return new GZIPInputStream(body);
+        }
+        if (encoding.equals("deflate")) {
+            // Deflate should be zlib wrapped, but some servers send the raw deflate data.
+            PushbackInputStream pushback = new PushbackInputStream(body, 2);
+            byte[] header = new byte[2];
+            int read = pushback.read(header);
+            if (read > 0) {
+                pushback.unread(header, 0, read);
+            }
+            boolean zlib = read == 2 && (header[0] & 0x0F) == 8 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+            final Inflater inflater = new Inflater(!zlib);
+            return new InflaterInputStream(pushback, inflater) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
                 }
-            } catch (ParserConfigurationException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
-            } catch (SAXException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
+            };
+        }
+        return body;
+    }
+
+    private static String getHeaderValue(HttpMethod method, String name) {
+        Header header = method.getResponseHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    private static String getCredentials(User user) {
+        if (user == null) {
+            return "";
+        }
+        if (user.getToken() != null) {
+            return user.getToken();
+        }
+        return StringUtils.join(user.getCookies(), ';');
+    }
+
+    public Command createIssue(String siteName, User user, String project, String title, String description, String command, File attachment) {
+        return createIssuePOST(siteName, user, project, title, description, command, attachment);
+    }
+
+    public List<Group> getGroups(final User user) {
+        return new ArrayList<Group>(getMetadata(user, "groups", new Supplier<List<Group>>() {
+            @Override
+            public List<Group> get() {
+                return getGroupsGET(user);
             }
-        } catch (MalformedURLException e) {
+        }));
+    }
+
+    private List<Group> getGroupsGET(User user) {
+        List<Group> groups = new ArrayList<Group>();
+        try {
+            Group.GroupListHandler dh = get(serverUrl + "/rest/admin/group", user, new Group.GroupListHandler(), null, true);
+            if (dh != null) {
+                return new ArrayList<Group>(dh.getGroups());
+            }
+        } catch (ParserConfigurationException e) {
+            LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
+        } catch (SAXException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
@@ -118,34 +909,25 @@ public class YouTrackServer {
      * @param stateBundleName the name of the state bundle.
      * @return the state bundle.
      */
-    public StateBundle getStateBundleWithName(User user, String stateBundleName) {
-        try {
-            String stateBundleUrl = serverUrl + "/rest/admin/customfield/stateBundle/" + stateBundleName;
-            URL url = new URL(stateBundleUrl);
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-
-
-            for (String cookie : user.getCookies()) {
-
-                urlConnection.setRequestProperty("Cookie", cookie);
+    public StateBundle getStateBundleWithName(final User user, final String stateBundleName) {
+        return getMetadata(user, "stateBundle " + stateBundleName, new Supplier<StateBundle>() {
+            @Override
+            public StateBundle get() {
+                return getStateBundleWithNameGET(user, stateBundleName);
             }
+        });
+    }
 
-            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-            try {
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    SAXParser saxParser = saxParserFactory.newSAXParser();
-                    StateBundle stateBundle = new StateBundle(stateBundleName, stateBundleUrl);
-                    StateBundle.StateBundleHandler dh = new StateBundle.StateBundleHandler(stateBundle);
-                    saxParser.parse(urlConnection.getInputStream(), dh);
-                    return stateBundle;
-
-                }
-            } catch (ParserConfigurationException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
-            } catch (SAXException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
+    private StateBundle getStateBundleWithNameGET(User user, String stateBundleName) {
+        try {
+            String stateBundleUrl = serverUrl + "/rest/admin/customfield/stateBundle/" + encodePathSegment(stateBundleName);
+            StateBundle.StateBundleHandler dh = get(stateBundleUrl, user, new StateBundle.StateBundleHandler(new StateBundle(stateBundleName, stateBundleUrl)), null, true);
+            if (dh != null) {
+                return dh.getStateBundle();
             }
-        } catch (MalformedURLException e) {
+        } catch (ParserConfigurationException e) {
+            LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
+        } catch (SAXException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
@@ -153,38 +935,31 @@ public class YouTrackServer {
         return null;
     }
 
-    public StateBundle getStateBundleForField(User user, String fieldName) {
-        try {
-            String fieldUrl = serverUrl + "/rest/admin/customfield/field/" + fieldName;
-            URL url = new URL(fieldUrl);
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-
-
-            for (String cookie : user.getCookies()) {
-
-                urlConnection.setRequestProperty("Cookie", cookie);
+    public StateBundle getStateBundleForField(final User user, final String fieldName) {
+        return getMetadata(user, "stateBundleForField " + fieldName, new Supplier<StateBundle>() {
+            @Override
+            public StateBundle get() {
+                return getStateBundleForFieldGET(user, fieldName);
             }
+        });
+    }
 
-            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-            try {
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    SAXParser saxParser = saxParserFactory.newSAXParser();
-                    Field.FieldHandler dh = new Field.FieldHandler(fieldName, fieldUrl);
-                    saxParser.parse(urlConnection.getInputStream(), dh);
-                    Field field = dh.getField();
-
-                    if (field.getType().equals("state[1]")) {
-                        return getStateBundleWithName(user, field.getDefaultBundle());
-                    } else {
-                        return null;
-                    }
+    private StateBundle getStateBundleForFieldGET(User user, String fieldName) {
+        try {
+            String fieldUrl = serverUrl + "/rest/admin/customfield/field/" + encodePathSegment(fieldName);
+            Field.FieldHandler dh = get(fieldUrl, user, new Field.FieldHandler(fieldName, fieldUrl), null);
+            if (dh != null) {
+                Field field = dh.getField();
+
+                if ("state[1]".equals(field.getType())) {
+                    return getStateBundleWithName(user, field.getDefaultBundle());
+                } else {
+                    return null;
                 }
-            } catch (ParserConfigurationException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
-            } catch (SAXException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             }
-        } catch (MalformedURLException e) {
+        } catch (ParserConfigurationException e) {
+            LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
+        } catch (SAXException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
@@ -193,41 +968,39 @@ public class YouTrackServer {
     }
 
     public String getBuildBundleNameForField(User user, String projectId, String fieldName) {
+        if (buildBundleCache != null) {
+            String bundleName = buildBundleCache.getBundleName(projectId, fieldName);
+            if (bundleName != null) {
+                return bundleName;
+            }
+        }
+        String bundleName = getBuildBundleNameForFieldGET(user, projectId, fieldName);
+        if (buildBundleCache != null && bundleName != null) {
+            buildBundleCache.putBundleName(projectId, fieldName, bundleName);
+        }
+        return bundleName;
+    }
+
+    private String getBuildBundleNameForFieldGET(User user, String projectId, String fieldName) {
         try {
 
-            String encodedProjectId = URLEncoder.encode(projectId, "ISO-8859-1").replace("+", "%20");
-            String encodedFieldName = URLEncoder.encode(fieldName, "ISO-8859-1").replace("+", "%20");
+            String encodedProjectId = encodePathSegment(projectId);
+            String encodedFieldName = encodePathSegment(fieldName);
 
             String fieldUrl = serverUrl + "/rest/admin/project/" + encodedProjectId + "/customfield/" + encodedFieldName;
-            URL url = new URL(fieldUrl);
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-
-
-            for (String cookie : user.getCookies()) {
-
-                urlConnection.setRequestProperty("Cookie", cookie);
-            }
-
-            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-            try {
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    SAXParser saxParser = saxParserFactory.newSAXParser();
-                    Field.FieldHandler dh = new Field.FieldHandler(fieldName, fieldUrl);
-                    saxParser.parse(urlConnection.getInputStream(), dh);
-                    Field field = dh.getField();
-
-                    if (field.getType().equals("build[1]")) {
-                        return field.getDefaultBundle();
-                    } else {
-                        return null;
-                    }
+            Field.FieldHandler dh = get(fieldUrl, user, new Field.FieldHandler(fieldName, fieldUrl), null);
+            if (dh != null) {
+                Field field = dh.getField();
+
+                if ("build[1]".equals(field.getType())) {
+                    return field.getDefaultBundle();
+                } else {
+                    return null;
                 }
-            } catch (ParserConfigurationException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
-            } catch (SAXException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
             }
-        } catch (MalformedURLException e) {
+        } catch (ParserConfigurationException e) {
+            LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
+        } catch (SAXException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
@@ -235,32 +1008,25 @@ public class YouTrackServer {
         return null;
     }
 
-    public List<Field> getFields(User user) {
-        List<Field> fields = new ArrayList<Field>();
-        try {
-            URL url = new URL(serverUrl + "/rest/admin/customfield/field/");
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-
-
-            for (String cookie : user.getCookies()) {
-
-                urlConnection.setRequestProperty("Cookie", cookie);
+    public List<Field> getFields(final User user) {
+        return new ArrayList<Field>(getMetadata(user, "fields", new Supplier<List<Field>>() {
+            @Override
+            public List<Field> get() {
+                return getFieldsGET(user);
             }
+        }));
+    }
 
-            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-            try {
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    SAXParser saxParser = saxParserFactory.newSAXParser();
-                    Field.FieldListHandler dh = new Field.FieldListHandler();
-                    saxParser.parse(urlConnection.getInputStream(), dh);
-                    return dh.getFields();
-                }
-            } catch (ParserConfigurationException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
-            } catch (SAXException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
+    private List<Field> getFieldsGET(User user) {
+        List<Field> fields = new ArrayList<Field>();
+        try {
+            Field.FieldListHandler dh = get(serverUrl + "/rest/admin/customfield/field/", user, new Field.FieldListHandler(), null, true);
+            if (dh != null) {
+                return new ArrayList<Field>(dh.getFields());
             }
-        } catch (MalformedURLException e) {
+        } catch (ParserConfigurationException e) {
+            LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
+        } catch (SAXException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
@@ -275,29 +1041,25 @@ public class YouTrackServer {
      * @param user the user to get projects for.
      * @return the list of projects the user can see.
      */
-    public List<Project> getProjects(User user) {
-        try {
-            URL url = new URL(serverUrl + "/rest/project/all");
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-
-
-            for (String cookie : user.getCookies()) {
-
-                urlConnection.setRequestProperty("Cookie", cookie);
+    public List<Project> getProjects(final User user) {
+        List<Project> projects = getMetadata(user, "projects", new Supplier<List<Project>>() {
+            @Override
+            public List<Project> get() {
+                return getProjectsGET(user);
             }
+        });
+        return projects == null ? null : new ArrayList<Project>(projects);
+    }
 
-            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-            try {
-                SAXParser saxParser = saxParserFactory.newSAXParser();
-                Project.ProjectListHandler dh = new Project.ProjectListHandler();
-                saxParser.parse(urlConnection.getInputStream(), dh);
-                return dh.getProjects();
-            } catch (ParserConfigurationException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
-            } catch (SAXException e) {
-                LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
-            }
-        } catch (MalformedURLException e) {
+    private List<Project> getProjectsGET(User user) {
+        try {
+            Project.ProjectListHandler dh = get(serverUrl + "/rest/project/all", user, new Project.ProjectListHandler(), null, true);
+            if (dh != null) {
+                return new ArrayList<Project>(dh.getProjects());
+            }
+        } catch (ParserConfigurationException e) {
+            LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
+        } catch (SAXException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not get YouTrack Projects", e);
@@ -318,6 +1080,30 @@ public class YouTrackServer {
      * @return if comment was added.
      */
     public Command comment(String siteName, User user, Issue issue, String comment, String group, boolean silent) {
+        return commentPOST(siteName, user, issue, comment, group, silent);
+    }
+
+    /**
+     * Adds a comment to the issue with currently logged in user, without waiting for the result.
+     *
+     * @param siteName name of site configuration to comment on.
+     * @param user     the currently logged in user.
+     * @param issue    the issue to comment on.
+     * @param comment  the comment text.
+     * @param group    the group the comment should be visible to.
+     * @param silent   prevents watchers from being notified.
+     * @return the future command.
+     */
+    public CompletableFuture<Command> commentAsync(final String siteName, final User user, final Issue issue, final String comment, final String group, final boolean silent) {
+        return executor.submit(new Supplier<Command>() {
+            @Override
+            public Command get() {
+                return commentPOST(siteName, user, issue, comment, group, silent);
+            }
+        });
+    }
+
+    private Command commentPOST(String siteName, User user, Issue issue, String comment, String group, boolean silent) {
         Command command = new Command();
         command.setSiteName(siteName);
         command.setIssueId(issue.getId());
@@ -335,115 +1121,263 @@ public class YouTrackServer {
         }
 
 
+        PostMethod method = null;
         try {
-            URL url = new URL(serverUrl + "/rest/issue/" + issue.getId() + "/execute");
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setDoOutput(true);
-            urlConnection.setDoInput(true);
-
-            if (user != null) {
-                for (String cookie : user.getCookies()) {
-                    urlConnection.setRequestProperty("Cookie", cookie);
-                }
+            String str = "comment=" + URLEncoder.encode(comment, "UTF-8");
+            if (group != null && !group.equals("")) {
+                str += "&group=" + group;
             }
+            if (silent) {
+                str += "&disableNotifications=" + true;
+            }
+            method = createFormPost(serverUrl + "/rest/issue/" + issue.getId() + "/execute", str);
 
-            try (OutputStreamWriter outputStreamWriter = new OutputStreamWriter(urlConnection.getOutputStream(), StandardCharsets.UTF_8)) {
-                outputStreamWriter.write("comment=" + URLEncoder.encode(comment, "UTF-8"));
-                if (group != null && !group.equals("")) {
-                    outputStreamWriter.write("&group=" + group);
-                }
-                if (silent) {
-                    outputStreamWriter.write("&disableNotifications=" + true);
-                }
-                outputStreamWriter.flush();
-            };
-
-            int responseCode = urlConnection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
+            int responseCode = execute(method, user);
+            if (responseCode == HttpStatus.SC_OK) {
                 command.setStatus(Command.Status.OK);
                 return command;
             } else {
                 command.setStatus(Command.Status.FAILED);
-                command.setResponse(getErrorMessage(urlConnection.getErrorStream()));
+                command.setResponse(getErrorMessage(method.getResponseBodyAsStream()));
             }
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not comment", e);
+            if (command.getStatus() == Command.Status.FAILED) {
+                command.setStatus(getFailureStatus(e));
+            }
             command.setResponse(e.getMessage());
+        } finally {
+            if (method != null) {
+                releaseConnection(method);
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Apply a command to an issue.
+     *
+     * @param siteName name of site.
+     * @param user     the user used to apply the command, shall be one with cookies set.
+     * @param issue    the issue to apply the command to.
+     * @param command  the command to apply.
+     * @param comment  comment with the command, null is allowed.
+     * @param group    the visibility group for the command.
+     * @param runAs    user to apply the command as, null is allowed.
+     * @param notify   notifies watchers.
+     * @return the command.
+     */
+    public Command applyCommand(String siteName, User user, Issue issue, String command, String comment, String group, User runAs, boolean notify) {
+        return applyCommandPOST(siteName, user, issue, command, comment, group, runAs, notify);
+    }
+
+    /**
+     * Apply a command to an issue, without waiting for the result.
+     *
+     * @param siteName name of site.
+     * @param user     the user used to apply the command, shall be one with cookies set.
+     * @param issue    the issue to apply the command to.
+     * @param command  the command to apply.
+     * @param comment  comment with the command, null is allowed.
+     * @param group    the visibility group for the command.
+     * @param runAs    user to apply the command as, null is allowed.
+     * @param notify   notifies watchers.
+     * @return the future command.
+     */
+    public CompletableFuture<Command> applyCommandAsync(final String siteName, final User user, final Issue issue, final String command, final String comment, final String group, final User runAs, final boolean notify) {
+        return executor.submit(new Supplier<Command>() {
+            @Override
+            public Command get() {
+                return applyCommandPOST(siteName, user, issue, command, comment, group, runAs, notify);
+            }
+        });
+    }
+
+    private Command applyCommandPOST(String siteName, User user, Issue issue, String command, String comment, String group, User runAs, boolean notify) {
+        Command cmd = createCommand(siteName, issue, command, comment, notify);
+
+        if (user == null || !user.isLoggedIn()) {
+            cmd.setStatus(Command.Status.NOT_LOGGED_IN);
+            return cmd;
+        }
+        cmd.setUsername(user.getUsername());
+        PostMethod method = null;
+        try {
+            String str = "command=" + URLEncoder.encode(command, "UTF-8");
+            if (comment != null) {
+                str += "&comment=" + URLEncoder.encode(comment, "UTF-8");
+            }
+            if (runAs != null) {
+                str += "&runAs=" + runAs.getUsername();
+            }
+            if (!notify) {
+                str += "&disableNotifications=true";
+            }
+            if (group != null) {
+                str += "&group=" + URLEncoder.encode(group, "UTF-8");
+            }
+            method = createFormPost(serverUrl + "/rest/issue/" + issue.getId() + "/execute", str);
+
+            int responseCode = execute(method, user);
+
+            if (responseCode == HttpStatus.SC_OK) {
+                cmd.setStatus(Command.Status.OK);
+                return cmd;
+            }
+
+            cmd.setStatus(Command.Status.FAILED);
+            cmd.setResponse(getErrorMessage(method.getResponseBodyAsStream()));
+            LOGGER.log(Level.WARNING, "Could not apply command: " + cmd.getResponse());
+        } catch (IOException e) {
+            cmd.setStatus(getFailureStatus(e));
+            cmd.setResponse(e.getMessage());
+            cmd.setUnanswered(maybeSent(e));
+            LOGGER.log(Level.WARNING, "Could not apply command", e);
+        } finally {
+            if (method != null) {
+                releaseConnection(method);
+            }
+        }
+        return cmd;
+    }
+
+    private static Command createCommand(String siteName, Issue issue, String command, String comment, boolean notify) {
+        Command cmd = new Command();
+        cmd.setCommand(command);
+        cmd.setSilent(!notify);
+        cmd.setIssueId(issue.getId());
+        cmd.setSiteName(siteName);
+        cmd.setDate(new Date());
+        cmd.setStatus(Command.Status.FAILED);
+        cmd.setComment(comment);
+        return cmd;
+    }
+
+    /**
+     * Applies a command to issues, in requests for up to {@link #COMMAND_BATCH_SIZE} issues each if the server has
+     * the /api JSON API and the command is not applied as another user, otherwise in one request per issue, sent in
+     * parallel.
+     *
+     * @param siteName name of site.
+     * @param user     the user used to apply the command, shall be one with cookies set.
+     * @param issues   the issues to apply the command to.
+     * @param command  the command to apply.
+     * @param comment  comment with the command, null is allowed.
+     * @param group    the visibility group for the command.
+     * @param runAs    user to apply the command as, null is allowed.
+     * @param notify   notifies watchers.
+     * @return the command for every issue, in the order of the issues.
+     */
+    public List<Command> applyCommandToIssues(String siteName, User user, Collection<Issue> issues, String command, String comment, String group, User runAs, boolean notify) {
+        CommandBatch batch = new CommandBatch();
+        for (Issue issue : issues) {
+            batch.add(issue, command, comment, group, runAs, notify);
+        }
+        return applyCommands(siteName, user, batch);
+    }
+
+    /**
+     * Applies the commands of the batch, each group of identical commands in requests for up to
+     * {@link #COMMAND_BATCH_SIZE} issues each if the server has the /api JSON API and the commands are not applied as
+     * another user, otherwise in one request per issue, sent in parallel.
+     * If the server rejects a request for several issues, the command is applied to each of them on its own, so the
+     * issues the command failed for are known.
+     *
+     * @param siteName name of site.
+     * @param user     the user used to apply the commands, shall be one with cookies set.
+     * @param batch    the commands.
+     * @return the applied command for every command of the batch, in the order they were added.
+     */
+    public List<Command> applyCommands(String siteName, User user, CommandBatch batch) {
+        List<List<Command>> applied = new ArrayList<List<Command>>();
+        for (CommandBatch.Group group : batch.getGroups()) {
+            List<Issue> issues = group.getIssues();
+            List<Command> commands = new ArrayList<Command>(issues.size());
+            for (int from = 0; from < issues.size(); from += COMMAND_BATCH_SIZE) {
+                commands.addAll(applyCommandToChunk(siteName, user, group, issues.subList(from, Math.min(issues.size(), from + COMMAND_BATCH_SIZE))));
+            }
+            applied.add(commands);
+        }
+        return batch.collect(applied);
+    }
+
+    private List<Command> applyCommandToChunk(String siteName, User user, CommandBatch.Group group, List<Issue> issues) {
+        List<Command> commands = new ArrayList<Command>(issues.size());
+        // Commands applied as another user are applied to each issue through /rest, which is documented to take runAs.
+        if (jsonApi && issues.size() > 1 && group.getRunAs() == null && user != null && user.isLoggedIn()) {
+            Command applied = applyCommandsPOST(user, group, issues);
+            if (applied != null) {
+                for (Issue issue : issues) {
+                    Command cmd = createCommand(siteName, issue, group.getCommand(), group.getComment(), group.isNotify());
+                    cmd.setUsername(user.getUsername());
+                    cmd.setStatus(applied.getStatus());
+                    cmd.setResponse(applied.getResponse());
+                    cmd.setUnanswered(applied.isUnanswered());
+                    commands.add(cmd);
+                }
+                return commands;
+            }
+        }
+        List<CompletableFuture<Command>> futures = new ArrayList<CompletableFuture<Command>>(issues.size());
+        for (Issue issue : issues) {
+            futures.add(applyCommandAsync(siteName, user, issue, group.getCommand(), group.getComment(), group.getGroup(), group.getRunAs(), group.isNotify()));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            Command timedOut = createCommand(siteName, issues.get(i), group.getCommand(), group.getComment(), group.isNotify());
+            timedOut.setStatus(Command.Status.TIMEOUT);
+            // The request may still be in flight.
+            timedOut.setUnanswered(true);
+            commands.add(await(futures.get(i), timedOut));
         }
-        return command;
+        return commands;
     }
 
     /**
-     * Apply a command to an issue.
+     * Applies a command to several issues in one request through the /api JSON API.
      *
-     * @param siteName name of site.
-     * @param user     the user used to apply the command, shall be one with cookies set.
-     * @param issue    the issue to apply the command to.
-     * @param command  the command to apply.
-     * @param comment  comment with the command, null is allowed.
-     * @param group    the visibility group for the command.
-     * @param runAs    user to apply the command as, null is allowed.
-     * @param notify   notifies watchers.
-     * @return the command.
+     * @return a command holding the status and response, null if the server rejected the request.
      */
-    public Command applyCommand(String siteName, User user, Issue issue, String command, String comment, String group, User runAs, boolean notify) {
+    private Command applyCommandsPOST(User user, CommandBatch.Group group, List<Issue> issues) {
         Command cmd = new Command();
-        cmd.setCommand(command);
-        cmd.setSilent(!notify);
-        cmd.setIssueId(issue.getId());
-        cmd.setSiteName(siteName);
-        cmd.setDate(new Date());
         cmd.setStatus(Command.Status.FAILED);
-        cmd.setComment(comment);
-
-        if (user == null || !user.isLoggedIn()) {
-            cmd.setStatus(Command.Status.NOT_LOGGED_IN);
-            return cmd;
-        }
-        cmd.setUsername(user.getUsername());
+        PostMethod method = null;
         try {
-
-
-            URL url = new URL(serverUrl + "/rest/issue/" + issue.getId() + "/execute");
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setDoOutput(true);
-            urlConnection.setDoInput(true);
-
-            for (String cookie : user.getCookies()) {
-                urlConnection.setRequestProperty("Cookie", cookie);
-            }
-
-            try(OutputStreamWriter outputStreamWriter = new OutputStreamWriter(urlConnection.getOutputStream(), StandardCharsets.UTF_8)) {
-                String str = "command=" + URLEncoder.encode(command, "UTF-8");
-                if (comment != null) {
-                    str += "&comment=" + URLEncoder.encode(comment, "UTF-8");
-                }
-                if (runAs != null) {
-                    str += "&runAs=" + runAs.getUsername();
-                }
-                if (!notify) {
-                    str += "&disableNotifications=true";
-                }
-                if (group != null) {
-                    str += "&group=" + URLEncoder.encode(group, "UTF-8");
+            StringBuilder body = new StringBuilder("{\"query\":").append(JSONUtils.quote(group.getCommand())).append(",\"issues\":[");
+            for (int i = 0; i < issues.size(); i++) {
+                if (i > 0) {
+                    body.append(',');
                 }
-                outputStreamWriter.write(str);
-                outputStreamWriter.flush();
+                body.append("{\"idReadable\":").append(JSONUtils.quote(issues.get(i).getId())).append('}');
             }
+            body.append("],\"silent\":").append(!group.isNotify());
+            if (group.getComment() != null) {
+                body.append(",\"comment\":").append(JSONUtils.quote(group.getComment()));
+            }
+            if (group.getGroup() != null && !group.getGroup().equals("")) {
+                body.append(",\"visibility\":{\"$type\":\"CommandLimitedVisibility\",\"permittedGroups\":[{\"name\":")
+                        .append(JSONUtils.quote(group.getGroup())).append("}]}");
+            }
+            body.append('}');
+            method = new PostMethod(serverUrl + "/api/commands");
+            method.setRequestEntity(new StringRequestEntity(body.toString(), "application/json", "UTF-8"));
 
-            int responseCode = urlConnection.getResponseCode();
-
-            if (responseCode == HttpURLConnection.HTTP_OK) {
+            int responseCode = execute(method, user);
+            if (responseCode == HttpStatus.SC_OK) {
                 cmd.setStatus(Command.Status.OK);
                 return cmd;
             }
-
-            cmd.setStatus(Command.Status.FAILED);
-            cmd.setResponse(getErrorMessage(urlConnection.getErrorStream()));
-            LOGGER.log(Level.WARNING, "Could not apply command: " + cmd.getResponse());
+            LOGGER.log(Level.INFO, "Could not apply command to " + issues.size() + " issues at once, applying it to each issue: " + method.getResponseBodyAsString());
+            return null;
         } catch (IOException e) {
+            // Whether the command was applied is unknown, so it is not applied again to each issue.
+            cmd.setStatus(getFailureStatus(e));
             cmd.setResponse(e.getMessage());
+            cmd.setUnanswered(maybeSent(e));
             LOGGER.log(Level.WARNING, "Could not apply command", e);
+        } finally {
+            if (method != null) {
+                releaseConnection(method);
+            }
         }
         return cmd;
     }
@@ -456,22 +1390,108 @@ public class YouTrackServer {
      * @return the user, null if none found.
      */
     public User getUserByEmail(User user, String email) {
+        if (userCache != null) {
+            UserCache.Entry entry = userCache.get(email);
+            if (entry != null) {
+                return entry.login == null ? null : createUser(entry.login);
+            }
+        }
+        return lookUpUserByEmail(user, email);
+    }
+
+    /**
+     * Looks up the user with an e-mail address on the server, keeping the result in the user cache.
+     *
+     * @return the user, null if none found or the lookup failed.
+     */
+    private User lookUpUserByEmail(User user, String email) {
+        List<User> found = getUserByEmailGET(user, email);
+        if (found == null) {
+            return null;
+        }
+        User userByEmail = found.isEmpty() ? null : found.get(0);
+        if (userCache != null) {
+            userCache.put(email, userByEmail == null ? null : userByEmail.getUsername());
+        }
+        return userByEmail;
+    }
+
+    private static User createUser(String login) {
+        User user = new User();
+        user.setUsername(login);
+        return user;
+    }
+
+    /**
+     * Looks up the user with an e-mail address.
+     *
+     * @return the user found, empty if none, null if the lookup failed.
+     */
+    private List<User> getUserByEmailGET(User user, String email) {
         try {
-            URL url = new URL(serverUrl + "/rest/admin/user?q=" + email);
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+            return read(serverUrl + "/rest/admin/user?q=" + URLEncoder.encode(email, "UTF-8"), user, User.UserLookupDecoder.class.getName(), false, new User.UserLookupDecoder());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not get user", e);
+        } catch (ParserConfigurationException e) {
+            LOGGER.log(Level.WARNING, "Could not get user", e);
+        } catch (SAXException e) {
+            LOGGER.log(Level.WARNING, "Could not get user", e);
+        }
+        return null;
+    }
 
-            for (String cookie : user.getCookies()) {
-                urlConnection.setRequestProperty("Cookie", cookie);
+    /**
+     * Gets YouTrack users from many e-mail addresses, looking up the addresses not in the user cache in parallel, at
+     * most {@link #MAX_PARALLEL_USER_LOOKUPS} at a time.
+     *
+     * @param user   the user to look up the users as.
+     * @param emails the e-mail addresses, duplicates are looked up once.
+     * @return the users found by e-mail address, addresses without a user are omitted.
+     */
+    public Map<String, User> getUsersByEmail(final User user, Collection<String> emails) {
+        Map<String, User> users = new LinkedHashMap<String, User>();
+        Set<String> seen = new HashSet<String>();
+        List<String> missing = new ArrayList<String>();
+        for (String email : emails) {
+            if (email == null || !seen.add(email)) {
+                continue;
             }
-
-            int responseCode = urlConnection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-                SAXParser saxParser = saxParserFactory.newSAXParser();
-                User.UserRefHandler dh = new User.UserRefHandler();
-                saxParser.parse(urlConnection.getInputStream(), dh);
-                return dh.getUser();
+            UserCache.Entry entry = userCache == null ? null : userCache.get(email);
+            if (entry == null) {
+                missing.add(email);
+            } else if (entry.login != null) {
+                users.put(email, createUser(entry.login));
+            }
+        }
+        for (int start = 0; start < missing.size(); start += MAX_PARALLEL_USER_LOOKUPS) {
+            Map<String, CompletableFuture<User>> lookups = new LinkedHashMap<String, CompletableFuture<User>>();
+            for (final String email : missing.subList(start, Math.min(start + MAX_PARALLEL_USER_LOOKUPS, missing.size()))) {
+                lookups.put(email, executor.submit(new Supplier<User>() {
+                    @Override
+                    public User get() {
+                        return lookUpUserByEmail(user, email);
+                    }
+                }));
+            }
+            for (Map.Entry<String, CompletableFuture<User>> lookup : lookups.entrySet()) {
+                User userByEmail = await(lookup.getValue(), null);
+                if (userByEmail != null) {
+                    users.put(lookup.getKey(), userByEmail);
+                }
             }
+        }
+        return users;
+    }
+
+    /**
+     * Gets the user the requests are authenticated as, used to check a permanent token.
+     *
+     * @param user the user to authenticate as.
+     * @return the user as known by the server, null if the server does not accept the user.
+     */
+    public User getCurrentUser(User user) {
+        try {
+            return read(serverUrl + "/rest/user/current", user, User.UserRefDecoder.class.getName(), false, new User.UserRefDecoder());
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not get user", e);
         } catch (ParserConfigurationException e) {
@@ -492,27 +1512,17 @@ public class YouTrackServer {
      */
     public User login(String username, String password) {
 
+        PostMethod method = null;
         try {
             User user = new User();
             user.setUsername(username);
-            URL url = new URL(serverUrl + "/rest/user/login");
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-
-            urlConnection.setDoOutput(true);
-            urlConnection.setDoInput(true);
-            try(OutputStreamWriter outputStreamWriter = new OutputStreamWriter(urlConnection.getOutputStream(), StandardCharsets.UTF_8)) {
-                outputStreamWriter.write("login=" + username + "&password=" + password);
-                outputStreamWriter.flush();
-            }
+            method = createFormPost(serverUrl + "/rest/user/login", "login=" + username + "&password=" + password);
 
-            int responseCode = urlConnection.getResponseCode();
+            int responseCode = execute(method, null);
 
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                Map<String, List<String>> headerFields = urlConnection.getHeaderFields();
-                List<String> strings = headerFields.get("Set-Cookie");
-
-                for (String string : strings) {
-                    user.getCookies().add(string);
+            if (responseCode == HttpStatus.SC_OK) {
+                for (Header header : method.getResponseHeaders("Set-Cookie")) {
+                    user.getCookies().add(header.getValue());
                 }
                 user.setLoggedIn(true);
                 return user;
@@ -520,14 +1530,19 @@ public class YouTrackServer {
 
                 return user;
             }
-        } catch (IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
             LOGGER.log(Level.WARNING, "Could not login", e);
+        } finally {
+            if (method != null) {
+                releaseConnection(method);
+            }
         }
         return null;
     }
 
     /**
-     * Adds a build with the name to the bundle with the given name.
+     * Adds a build with the name to the bundle with the given name. With a build bundle cache, a build already in the
+     * bundle is not added again, and the command succeeds without a request.
      *
      * @param siteName   the name of the site to add bundle to.
      * @param user       the logged in user.
@@ -535,6 +1550,56 @@ public class YouTrackServer {
      * @param buildName  the name of the build to add.
      */
     public Command addBuildToBundle(String siteName, User user, String bundleName, String buildName) {
+        if (buildBundleCache == null || user == null || !user.isLoggedIn()) {
+            return addBuildToBundlePUT(siteName, user, bundleName, buildName);
+        }
+        Boolean known = buildBundleCache.containsBuild(bundleName, buildName);
+        if (known == null) {
+            List<String> buildNames = getBuildsInBundle(user, bundleName);
+            if (buildNames != null) {
+                buildBundleCache.putBuilds(bundleName, buildNames);
+                known = buildNames.contains(buildName);
+            }
+        }
+        if (Boolean.TRUE.equals(known)) {
+            Command cmd = new Command();
+            cmd.setCommand("[Add '" + buildName + "' to " + " '" + bundleName + "']");
+            cmd.setDate(new Date());
+            cmd.setSiteName(siteName);
+            cmd.setUsername(user.getUsername());
+            cmd.setStatus(Command.Status.OK);
+            cmd.setResponse("Already in the bundle");
+            return cmd;
+        }
+        Command cmd = addBuildToBundlePUT(siteName, user, bundleName, buildName);
+        if (cmd.getStatus() == Command.Status.OK) {
+            buildBundleCache.addBuild(bundleName, buildName);
+        }
+        return cmd;
+    }
+
+    /**
+     * Gets the names of the builds in a bundle.
+     *
+     * @return the build names, null if they could not be read.
+     */
+    private List<String> getBuildsInBundle(User user, String bundleName) {
+        try {
+            BuildBundle.BuildsHandler dh = get(serverUrl + "/rest/admin/customfield/buildBundle/" + encodePathSegment(bundleName), user, new BuildBundle.BuildsHandler(), null);
+            if (dh != null) {
+                return dh.getBuildNames();
+            }
+        } catch (ParserConfigurationException e) {
+            LOGGER.log(Level.WARNING, "Could not get builds in bundle", e);
+        } catch (SAXException e) {
+            LOGGER.log(Level.WARNING, "Could not get builds in bundle", e);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not get builds in bundle", e);
+        }
+        return null;
+    }
+
+    private Command addBuildToBundlePUT(String siteName, User user, String bundleName, String buildName) {
         Command cmd = new Command();
         cmd.setCommand("[Add '" + buildName + "' to " + " '" + bundleName + "']");
         cmd.setDate(new Date());
@@ -546,35 +1611,34 @@ public class YouTrackServer {
         } else {
             cmd.setStatus(Command.Status.FAILED);
         }
-        user.setUsername(user.getUsername());
+        cmd.setUsername(user.getUsername());
+        PutMethod method = null;
         try {
 
-            String encode = URLEncoder.encode(bundleName, "ISO-8859-1").replace("+", "%20");
-            String encode1 = URLEncoder.encode(buildName, "ISO-8859-1").replace("+", "%20");
-            URL url = new URL(serverUrl + "/rest/admin/customfield/buildBundle/" + encode + "/" + encode1);
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("PUT");
-            for (String cookie : user.getCookies()) {
-                urlConnection.setRequestProperty("Cookie", cookie);
-            }
-            urlConnection.setDoOutput(true);
-            urlConnection.setDoInput(true);
-            try(OutputStreamWriter outputStreamWriter = new OutputStreamWriter(urlConnection.getOutputStream(), StandardCharsets.UTF_8)) {
-                outputStreamWriter.flush();
-            };
-
+            String encode = encodePathSegment(bundleName);
+            String encode1 = encodePathSegment(buildName);
+            method = new PutMethod(serverUrl + "/rest/admin/customfield/buildBundle/" + encode + "/" + encode1);
 
-            int responseCode = urlConnection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_CREATED) {
+            int responseCode = execute(method, user);
+            if (responseCode == HttpStatus.SC_CREATED) {
                 cmd.setStatus(Command.Status.OK);
                 return cmd;
             }
 
             cmd.setStatus(Command.Status.FAILED);
-            cmd.setResponse(getErrorMessage(urlConnection.getErrorStream()));
+            cmd.setResponse(getErrorMessage(method.getResponseBodyAsStream()));
+            if (buildBundleCache != null) {
+                // The server rejected the build, the bundle may have been renamed or changed in YouTrack.
+                buildBundleCache.forgetBundle(bundleName);
+            }
         } catch (IOException e) {
+            cmd.setStatus(getFailureStatus(e));
             cmd.setResponse(e.getMessage());
             LOGGER.log(Level.WARNING, "Could not add to bundle", e);
+        } finally {
+            if (method != null) {
+                releaseConnection(method);
+            }
         }
         return cmd;
     }
@@ -590,132 +1654,404 @@ public class YouTrackServer {
      * @return the issue if any.
      */
     public Issue getIssue(User user, String issueId, String stateField) {
-        try {
-            URL url = new URL(serverUrl + "/rest/issue/" + issueId + "?wikifyDescription=true");
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-            for (String cookie : user.getCookies()) {
-                urlConnection.setRequestProperty("Cookie", cookie);
-            }
+        return getIssueGET(user, issueId, stateField, IssueField.ALL);
+    }
 
+    /**
+     * Gets an issue by issue id with only the given fields, the other fields of the issue are null.
+     *
+     * @param user       the user session.
+     * @param issueId    the id of the issue.
+     * @param stateField the state field.
+     * @param fields     the fields to get.
+     * @return the issue if any.
+     */
+    public Issue getIssue(User user, String issueId, String stateField, Set<IssueField> fields) {
+        return getIssueGET(user, issueId, stateField, fields);
+    }
 
-            int responseCode = urlConnection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                try {
-                    SAXParserFactory factory = SAXParserFactory.newInstance();
-                    SAXParser saxParser = factory.newSAXParser();
-                    Issue.IssueHandler issueHandler = new Issue.IssueHandler(stateField);
-                    saxParser.parse(urlConnection.getInputStream(), issueHandler);
-                    return issueHandler.getIssue();
-                } catch (ParserConfigurationException | SAXException e) {
-                    LOGGER.log(Level.WARNING, "Could not get issue", e);
-                }
+    /**
+     * Gets an issue by issue id, without waiting for the result.
+     *
+     * @param user       the user session.
+     * @param issueId    the id of the issue.
+     * @param stateField the state field.
+     * @return the future issue, completed with null if not found.
+     */
+    public CompletableFuture<Issue> getIssueAsync(User user, String issueId, String stateField) {
+        return getIssueAsync(user, issueId, stateField, IssueField.ALL);
+    }
+
+    /**
+     * Gets an issue by issue id with only the given fields, without waiting for the result.
+     *
+     * @param user       the user session.
+     * @param issueId    the id of the issue.
+     * @param stateField the state field.
+     * @param fields     the fields to get.
+     * @return the future issue, completed with null if not found.
+     */
+    public CompletableFuture<Issue> getIssueAsync(final User user, final String issueId, final String stateField, final Set<IssueField> fields) {
+        return executor.submit(new Supplier<Issue>() {
+            @Override
+            public Issue get() {
+                return getIssueGET(user, issueId, stateField, fields);
             }
+        });
+    }
 
+    private Issue getIssueGET(User user, String issueId, String stateField, Set<IssueField> fields) {
+        try {
+            return issueClient.getIssue(user, issueId, stateField, fields);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not get issue", e);
         }
         return null;
     }
 
-    public String[] getVersion() {
+    /**
+     * Gets issues by their ids with only the given fields, reading up to {@link #ISSUE_BATCH_SIZE} issues per request
+     * with the requests in parallel. If a request fails, for example because the server rejects the query for an id
+     * that no longer exists, the issues of that request are read one at a time.
+     *
+     * @param user       the user session.
+     * @param issueIds   the ids of the issues.
+     * @param stateField the state field.
+     * @param fields     the fields to get.
+     * @return the issues found by id, in the order of the ids. Issues that were not found or could not be read are
+     * missing.
+     */
+    public Map<String, Issue> getIssues(final User user, Collection<String> issueIds, final String stateField, final Set<IssueField> fields) {
+        List<String> ids = new ArrayList<String>(new LinkedHashSet<String>(issueIds));
+        List<CompletableFuture<List<Issue>>> futures = new ArrayList<CompletableFuture<List<Issue>>>();
+        for (int from = 0; from < ids.size(); from += ISSUE_BATCH_SIZE) {
+            final List<String> chunk = ids.subList(from, Math.min(ids.size(), from + ISSUE_BATCH_SIZE));
+            futures.add(executor.submit(new Supplier<List<Issue>>() {
+                @Override
+                public List<Issue> get() {
+                    return getIssuesGET(user, chunk, stateField, fields);
+                }
+            }));
+        }
+        Map<String, Issue> found = new HashMap<String, Issue>();
+        for (CompletableFuture<List<Issue>> future : futures) {
+            for (Issue issue : await(future, Collections.<Issue>emptyList())) {
+                found.put(issue.getId(), issue);
+            }
+        }
+        Map<String, Issue> issues = new LinkedHashMap<String, Issue>();
+        for (String id : ids) {
+            Issue issue = found.get(id);
+            if (issue != null) {
+                issues.put(id, issue);
+            }
+        }
+        return issues;
+    }
+
+    private List<Issue> getIssuesGET(User user, List<String> issueIds, String stateField, Set<IssueField> fields) {
         try {
-            URL url = new URL(serverUrl + "/rest/workflow/version");
+            List<Issue> issues = issueClient.getIssues(user, issueIds, stateField, fields);
+            if (issues != null) {
+                return issues;
+            }
+            LOGGER.log(Level.WARNING, "Could not get issues " + issueIds + ", getting them one at a time");
+        } catch (IOException e) {
+            if (e instanceof TimeBudget.ExhaustedException || e instanceof CircuitBreaker.OpenException) {
+                // The time budget is used up or the circuit breaker is open, requests for each issue would fail too.
+                LOGGER.log(Level.WARNING, "Could not get issues " + issueIds, e);
+                return Collections.emptyList();
+            }
+            LOGGER.log(Level.WARNING, "Could not get issues " + issueIds + ", getting them one at a time", e);
+        }
+        List<Issue> issues = new ArrayList<Issue>(issueIds.size());
+        List<String> unread = new ArrayList<String>();
+        for (String issueId : issueIds) {
             try {
-                HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-                if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                    SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-                    SAXParser saxParser = saxParserFactory.newSAXParser();
-                    VersionHandler versionHandler = new VersionHandler();
-                    saxParser.parse(urlConnection.getInputStream(), versionHandler);
-                    return versionHandler.version.split("\\.");
+                Issue issue = issueClient.getIssue(user, issueId, stateField, fields);
+                if (issue != null) {
+                    issues.add(issue);
+                    continue;
                 }
-            } catch (IOException | ParserConfigurationException | SAXException e) {
-                LOGGER.log(Level.WARNING, "Could not get version", e);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not get issue " + issueId, e);
             }
-        } catch (MalformedURLException e) {
+            unread.add(issueId);
+        }
+        if (!unread.isEmpty()) {
+            LOGGER.log(Level.WARNING, "Could not read issues " + unread);
+        }
+        return issues;
+    }
+
+    public String[] getVersion() {
+        try {
+            VersionHandler versionHandler = get(serverUrl + "/rest/workflow/version", null, new VersionHandler(), null);
+            if (versionHandler != null) {
+                return versionHandler.version.split("\\.");
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
             LOGGER.log(Level.WARNING, "Wrong url", e);
+        } catch (IOException | ParserConfigurationException | SAXException e) {
+            LOGGER.log(Level.WARNING, "Could not get version", e);
         }
         return null;
     }
 
-    public List<BuildBundle> getBuildBundles(User user) {
+    /**
+     * Finds out which features the server supports.
+     *
+     * @return the capabilities of the server, null if the server could not be reached.
+     */
+    public ServerCapabilities probeCapabilities() {
+        String version = null;
+        boolean jsonApi = false;
         try {
-            URL url = new URL(serverUrl + "/rest/admin/customfield/buildBundle");
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-            for (String cookie : user.getCookies()) {
-                urlConnection.setRequestProperty("Cookie", cookie);
+            // Servers with the /api REST API describe themselves, older servers only answer the legacy version request.
+            version = read(serverUrl + "/api/config?fields=version", null, "config", false, new JsonResponseParser<String>() {
+                @Override
+                String parse(String json) {
+                    return ApiIssueClient.getString(JSONObject.fromObject(json), "version");
+                }
+            });
+            jsonApi = version != null;
+        } catch (IOException | ParserConfigurationException | SAXException | IllegalArgumentException | IllegalStateException e) {
+            LOGGER.log(Level.FINE, "No /api REST API at " + serverUrl, e);
+        }
+        if (version == null) {
+            String[] legacyVersion = getVersion();
+            if (legacyVersion == null) {
+                return null;
             }
+            version = StringUtils.join(legacyVersion, '.');
+        }
+        return new ServerCapabilities(version, jsonApi, transport.isCompressedResponses(), System.currentTimeMillis());
+    }
 
-
-            int responseCode = urlConnection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                try {
-                    SAXParserFactory factory = SAXParserFactory.newInstance();
-                    SAXParser saxParser = factory.newSAXParser();
-                    BuildBundle.Handler issueHandler = new BuildBundle.Handler();
-                    saxParser.parse(urlConnection.getInputStream(), issueHandler);
-                    return issueHandler.getBundles();
-                } catch (ParserConfigurationException | SAXException e) {
-                    LOGGER.log(Level.WARNING, "Could not get issue", e);
-                }
+    public List<BuildBundle> getBuildBundles(final User user) {
+        List<BuildBundle> bundles = getMetadata(user, "buildBundles", new Supplier<List<BuildBundle>>() {
+            @Override
+            public List<BuildBundle> get() {
+                return getBuildBundlesGET(user);
             }
+        });
+        return bundles == null ? null : new ArrayList<BuildBundle>(bundles);
+    }
 
+    private List<BuildBundle> getBuildBundlesGET(User user) {
+        try {
+            BuildBundle.Handler issueHandler = get(serverUrl + "/rest/admin/customfield/buildBundle", user, new BuildBundle.Handler(), null, true);
+            if (issueHandler != null) {
+                return new ArrayList<BuildBundle>(issueHandler.getBundles());
+            }
+        } catch (ParserConfigurationException | SAXException e) {
+            LOGGER.log(Level.WARNING, "Could not get issue", e);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not get issue", e);
         }
         return null;
     }
 
+    /**
+     * Searches for issues.
+     *
+     * @param user        the user session.
+     * @param searchQuery the search query.
+     * @return the issues found, null if the search failed.
+     */
     public List<Issue> search(User user, String searchQuery) {
-        try {
-            URL url = new URL(serverUrl + "/rest/issue?filter=" + URLEncoder.encode(searchQuery, "UTF-8") + "&max=" + Integer.MAX_VALUE);
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-            for (String cookie : user.getCookies()) {
-                urlConnection.setRequestProperty("Cookie", cookie);
+        return searchGET(user, searchQuery);
+    }
+
+    /**
+     * Searches for issues, without waiting for the result.
+     *
+     * @param user        the user session.
+     * @param searchQuery the search query.
+     * @return the future issues found, completed with null if the search failed.
+     */
+    public CompletableFuture<List<Issue>> searchAsync(final User user, final String searchQuery) {
+        return executor.submit(new Supplier<List<Issue>>() {
+            @Override
+            public List<Issue> get() {
+                return searchGET(user, searchQuery);
             }
+        });
+    }
 
+    private List<Issue> searchGET(User user, String searchQuery) {
+        SearchIterator iterator = new SearchIterator(user, searchQuery, false, new HashSet<String>());
+        List<Issue> issues = new ArrayList<Issue>();
+        while (iterator.hasNext()) {
+            issues.add(iterator.next());
+        }
+        return iterator.failed ? null : issues;
+    }
 
-            int responseCode = urlConnection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                try {
-                    SAXParserFactory factory = SAXParserFactory.newInstance();
-                    SAXParser saxParser = factory.newSAXParser();
-                    Issue.IssueSearchHandler issueSearchHandler = new Issue.IssueSearchHandler();
-                    saxParser.parse(urlConnection.getInputStream(), issueSearchHandler);
-                    return issueSearchHandler.getIssueList();
-                } catch (ParserConfigurationException | SAXException e) {
-                    LOGGER.log(Level.WARNING, "Could not find issues", e);
-                }
-            }
+    /**
+     * Searches for issues, reading the result a page at a time while the issues are iterated. Use it to act on the
+     * issues as they are found, without waiting for the whole result.
+     * <p>
+     * Acting on an issue can make it stop matching the search, which moves later issues to pages already read. Every
+     * page after the first therefore starts with the last issue of the page before, and when that issue moved the
+     * search is repeated until it finds no new issue. Every issue is returned only once. If a later page cannot be
+     * read, the iteration ends and {@link SearchIterator#isFailed()} returns true.
+     *
+     * @param user        the user session.
+     * @param searchQuery the search query.
+     * @return the issues found, null if the search failed.
+     */
+    public SearchIterator searchIterator(User user, String searchQuery) {
+        return searchIterator(user, searchQuery, new HashSet<String>());
+    }
+
+    /**
+     * Searches for issues like {@link #searchIterator(User, String)}, skipping the issues already seen.
+     *
+     * @param user        the user session.
+     * @param searchQuery the search query.
+     * @param seen        the ids of the issues already seen, the ids of the issues returned are added to it.
+     * @return the issues found, null if the search failed.
+     */
+    public SearchIterator searchIterator(User user, String searchQuery, Set<String> seen) {
+        SearchIterator iterator = new SearchIterator(user, searchQuery, true, seen);
+        if (!iterator.hasNext() && iterator.failed) {
+            return null;
+        }
+        return iterator;
+    }
 
+    /**
+     * Gets a page of the issues matching the search.
+     *
+     * @param user        the user session.
+     * @param searchQuery the search query.
+     * @param after       number of matching issues to skip.
+     * @param max         maximum number of issues to get.
+     * @return the issues, null if the search failed.
+     */
+    private List<Issue> searchPage(User user, String searchQuery, int after, int max) {
+        try {
+            return issueClient.search(user, searchQuery, after, max);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not find issues", e);
         }
         return null;
     }
 
-    public List<Suggestion> searchSuggestions(User user, String current) {
-        try {
-            URL url = new URL(serverUrl + "/rest/issue/intellisense?filter=" + URLEncoder.encode(current, "UTF-8"));
-            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-            for (String cookie : user.getCookies()) {
-                urlConnection.setRequestProperty("Cookie", cookie);
-            }
-
+    /**
+     * Iterates the issues matching a search, reading the next page when the current one is used up.
+     */
+    public class SearchIterator implements Iterator<Issue> {
+        private final User user;
+        private final String searchQuery;
+        /**
+         * True to repeat the search while issues move to pages already read.
+         */
+        private final boolean repeat;
+        private final Set<String> seen;
+        private final Deque<Issue> page = new ArrayDeque<Issue>();
+        private int after;
+        private String lastId;
+        private boolean moved;
+        private boolean foundNew;
+        private boolean lastPage;
+        private boolean done;
+        private boolean failed;
+
+        SearchIterator(User user, String searchQuery, boolean repeat, Set<String> seen) {
+            this.user = user;
+            this.searchQuery = searchQuery;
+            this.repeat = repeat;
+            this.seen = seen;
+        }
 
-            int responseCode = urlConnection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                try {
-                    SAXParserFactory factory = SAXParserFactory.newInstance();
-                    SAXParser saxParser = factory.newSAXParser();
-                    Issue.IssueSearchSuggestionHandler issueSearchHandler = new Issue.IssueSearchSuggestionHandler();
-                    saxParser.parse(urlConnection.getInputStream(), issueSearchHandler);
-                    return issueSearchHandler.getSuggestions();
-                } catch (ParserConfigurationException | SAXException e) {
-                    LOGGER.log(Level.WARNING, "Could not find issues", e);
+        @Override
+        public boolean hasNext() {
+            while (page.isEmpty() && !done) {
+                if (lastPage) {
+                    // Search again only if issues moved, and stop once a search finds no new issue.
+                    if (!repeat || !moved || !foundNew) {
+                        done = true;
+                        break;
+                    }
+                    after = 0;
+                    lastId = null;
+                    moved = false;
+                    foundNew = false;
+                    lastPage = false;
+                }
+                // A page after the first starts with the last issue of the page before, which is not there if issues moved.
+                boolean overlap = repeat && lastId != null;
+                int from = overlap ? after - 1 : after;
+                int max = overlap ? SEARCH_PAGE_SIZE + 1 : SEARCH_PAGE_SIZE;
+                List<Issue> issues = searchPage(user, searchQuery, from, max);
+                if (issues == null) {
+                    failed = true;
+                    done = true;
+                    break;
                 }
+                if (overlap && (issues.isEmpty() || !issues.get(0).getId().equals(lastId))) {
+                    moved = true;
+                }
+                after = from + issues.size();
+                lastPage = issues.size() < max;
+                for (Issue issue : issues) {
+                    if (seen.add(issue.getId())) {
+                        page.add(issue);
+                        foundNew = true;
+                    }
+                    lastId = issue.getId();
+                }
+            }
+            return !page.isEmpty();
+        }
+
+        @Override
+        public Issue next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
+            return page.poll();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * @return true if a page of the search could not be read, so not all matching issues were returned.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+
+    public List<Suggestion> searchSuggestions(User user, String current) {
+        return searchSuggestions(user, current, 0);
+    }
 
+    /**
+     * Gets suggestions for completing a search query.
+     *
+     * @param user         the user session.
+     * @param current      the query typed so far.
+     * @param optionsLimit maximum number of suggestions, 0 for the default of the server.
+     * @return the suggestions, empty if none or the request failed.
+     */
+    public List<Suggestion> searchSuggestions(User user, String current, int optionsLimit) {
+        try {
+            String url = serverUrl + "/rest/issue/intellisense?filter=" + URLEncoder.encode(current, "UTF-8");
+            if (optionsLimit > 0) {
+                url += "&optionsLimit=" + optionsLimit;
+            }
+            Issue.IssueSearchSuggestionHandler issueSearchHandler = get(url, user, new Issue.IssueSearchSuggestionHandler(), null);
+            if (issueSearchHandler != null) {
+                return issueSearchHandler.getSuggestions();
+            }
+        } catch (ParserConfigurationException | SAXException e) {
+            LOGGER.log(Level.WARNING, "Could not find issues", e);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Could not find issues", e);
         }
@@ -734,16 +2070,9 @@ public class YouTrackServer {
         }
 
         cmd.setStatus(Command.Status.FAILED);
+        // Against documentation. This call is supposed to be PUT, but only POST is working.
+        PostMethod postMethod = new PostMethod(serverUrl + "/rest/issue");
         try {
-            String params = "project=" + URLEncoder.encode(project, "UTF-8") + "&summary=" + URLEncoder.encode(title, "UTF-8") + "&description=" + URLEncoder.encode(description, "UTF-8");
-
-            // Against documentation. This call is supposed to be PUT, but only POST is working.
-            PostMethod postMethod = new PostMethod(serverUrl + "/rest/issue");
-
-            for (String cookie : user.getCookies()) {
-                postMethod.addRequestHeader("Cookie", cookie);
-            }
-
             List<Part> parts = new ArrayList<>();
             parts.add(new StringPart("project", project, "UTF-8"));
             parts.add(new StringPart("summary", title, "UTF-8"));
@@ -755,23 +2084,17 @@ public class YouTrackServer {
             Part[] array = parts.toArray(partsArray);
             postMethod.setRequestEntity(new MultipartRequestEntity(array, new HttpMethodParams()));
 
-            HttpClient httpClient = new HttpClient();
-            int responseCode = httpClient.executeMethod(postMethod);
+            int responseCode = execute(postMethod, user);
             // Because we're varying in the POST vs. PUT call, check for a couple possible
             // success responses, though currently I'm only ever seeing 200 returned.
-            if (responseCode == HttpURLConnection.HTTP_CREATED || responseCode == HttpURLConnection.HTTP_OK) {
-                StringBuilder stringBuilder = new StringBuilder();
-                try(BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(postMethod.getResponseBodyAsStream(), StandardCharsets.UTF_8))) {
-                    for (String l = null; (l = bufferedReader.readLine()) != null; ) {
-                        stringBuilder.append(l).append("\n");
-                    }
-                };
-
+            if (responseCode == HttpStatus.SC_CREATED || responseCode == HttpStatus.SC_OK) {
                 try {
-                    SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-                    SAXParser saxParser = saxParserFactory.newSAXParser();
                     CreateIssueHandler handler = new CreateIssueHandler();
-                    saxParser.parse(new InputSource(new StringReader(stringBuilder.toString())), handler);
+                    try (InputStream body = postMethod.getResponseBodyAsStream()) {
+                        SaxParserPool.parse(body, handler);
+                    } finally {
+                        releaseConnection(postMethod);
+                    }
                     String issueId = handler.issueId;
 
                     LOGGER.log(Level.INFO, "Created issue " + issueId);
@@ -779,7 +2102,7 @@ public class YouTrackServer {
                     if (issueId != null) {
                         Issue issue = new Issue(issueId);
                         if (StringUtils.isNotBlank(command)) {
-                            applyCommand(siteName, user, issue, command, "", null, null, false);
+                            applyCommandPOST(siteName, user, issue, command, "", null, null, false);
                             cmd.setCommand(command);
                         }
                         cmd.setIssueId(issueId);
@@ -798,8 +2121,11 @@ public class YouTrackServer {
             cmd.setResponse(getErrorMessage(postMethod.getResponseBodyAsStream()));
             LOGGER.log(Level.WARNING, "Did not create issue: " + cmd.getResponse());
         } catch (IOException e) {
+            cmd.setStatus(getFailureStatus(e));
             cmd.setResponse(e.getMessage());
             LOGGER.log(Level.WARNING, "Did not create issue", e);
+        } finally {
+            releaseConnection(postMethod);
         }
         return cmd;
     }
@@ -0,0 +1,329 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.cookie.CookiePolicy;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pooled HTTP transport for a YouTrack server. All requests made by {@link YouTrackServer} go through the transport
+ * of its server url, so connections are kept alive and reused across builds instead of paying a new TCP and TLS
+ * handshake for every call.
+ * <p>
+ * Transports are shared per server url and are shut down by {@link #shutdownAll()} when the plugin is stopped.
+ */
+public class YouTrackTransport {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOGGER = Logger.getLogger(YouTrackTransport.class.getName());
+
+    /**
+     * Maximum number of pooled connections to a single YouTrack server.
+     */
+    static final int MAX_CONNECTIONS_PER_HOST = Integer.getInteger(YouTrackTransport.class.getName() + ".maxConnectionsPerHost", 20);
+    /**
+     * Maximum number of pooled connections of a transport in total.
+     */
+    static final int MAX_TOTAL_CONNECTIONS = Integer.getInteger(YouTrackTransport.class.getName() + ".maxTotalConnections", 40);
+    /**
+     * Time in milliseconds a connection may stay idle in the pool before it is closed.
+     */
+    static final long IDLE_TIMEOUT = Long.getLong(YouTrackTransport.class.getName() + ".idleTimeout", 60000L);
+    /**
+     * Interval in milliseconds between checks for idle connections.
+     */
+    static final long IDLE_CHECK_INTERVAL = Long.getLong(YouTrackTransport.class.getName() + ".idleCheckInterval", 15000L);
+    /**
+     * Default time in milliseconds to wait for a connection to be established or to be free in the pool.
+     */
+    static final int CONNECT_TIMEOUT = Integer.getInteger(YouTrackTransport.class.getName() + ".connectTimeout", 10000);
+    /**
+     * Default time in milliseconds to wait for data from the server.
+     */
+    static final int READ_TIMEOUT = Integer.getInteger(YouTrackTransport.class.getName() + ".readTimeout", 60000);
+    /**
+     * Whether the number of concurrent requests adapts to the latency and failures of the server, off by default.
+     */
+    static final boolean ADAPTIVE_LIMIT = Boolean.getBoolean(YouTrackTransport.class.getName() + ".adaptiveLimit");
+
+    /**
+     * Transports by server url.
+     */
+    private static final ConcurrentMap<String, YouTrackTransport> TRANSPORTS = new ConcurrentHashMap<String, YouTrackTransport>();
+
+    /**
+     * Thread closing idle connections of all transports, started with the first transport.
+     */
+    private static IdleConnectionTimeoutThread idleConnectionTimeoutThread;
+
+    /**
+     * The url of the server this transport connects to.
+     */
+    private final String serverUrl;
+    /**
+     * The connection pool.
+     */
+    private final MultiThreadedHttpConnectionManager connectionManager;
+    /**
+     * The client executing requests using the pool.
+     */
+    private final HttpClient httpClient;
+    /**
+     * Limit of concurrent requests adapting to the server, null if not limited.
+     */
+    private final AdaptiveLimiter adaptiveLimiter;
+    /**
+     * Merges identical GET requests in flight at the same time.
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
+    /**
+     * Parsed responses to reads, revalidated with conditional requests.
+     */
+    private final ResponseCache responseCache = new ResponseCache();
+    /**
+     * True once the server sent a compressed response.
+     */
+    private volatile boolean compressedResponses;
+
+    YouTrackTransport(String serverUrl) {
+        this(serverUrl, ADAPTIVE_LIMIT ? new AdaptiveLimiter(1, MAX_CONNECTIONS_PER_HOST) : null);
+    }
+
+    YouTrackTransport(String serverUrl, AdaptiveLimiter adaptiveLimiter) {
+        this.serverUrl = serverUrl;
+        this.adaptiveLimiter = adaptiveLimiter;
+        this.connectionManager = new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+        params.setMaxTotalConnections(MAX_TOTAL_CONNECTIONS);
+        params.setStaleCheckingEnabled(true);
+        params.setConnectionTimeout(CONNECT_TIMEOUT);
+        params.setSoTimeout(READ_TIMEOUT);
+
+        this.httpClient = new HttpClient(connectionManager);
+        httpClient.getParams().setConnectionManagerTimeout(CONNECT_TIMEOUT);
+        // Sessions are carried by explicit Cookie headers per user, so the shared client must never store cookies.
+        httpClient.getParams().setCookiePolicy(CookiePolicy.IGNORE_COOKIES);
+        httpClient.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new DefaultHttpMethodRetryHandler(1, false));
+    }
+
+    /**
+     * Gets the shared transport for the given server url, creating it if needed.
+     *
+     * @param serverUrl the url of the YouTrack server.
+     * @return the transport.
+     */
+    public static YouTrackTransport forUrl(String serverUrl) {
+        String key = serverUrl == null ? "" : serverUrl;
+        YouTrackTransport transport = TRANSPORTS.get(key);
+        if (transport == null) {
+            YouTrackTransport created = new YouTrackTransport(serverUrl);
+            transport = TRANSPORTS.putIfAbsent(key, created);
+            if (transport == null) {
+                transport = created;
+                watchIdleConnections(created);
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Closes all pooled connections and stops the idle connection eviction.
+     */
+    public static synchronized void shutdownAll() {
+        if (idleConnectionTimeoutThread != null) {
+            idleConnectionTimeoutThread.shutdown();
+            idleConnectionTimeoutThread = null;
+        }
+        for (YouTrackTransport transport : TRANSPORTS.values()) {
+            transport.shutdown();
+        }
+        TRANSPORTS.clear();
+    }
+
+    private static synchronized void watchIdleConnections(YouTrackTransport transport) {
+        if (idleConnectionTimeoutThread == null) {
+            idleConnectionTimeoutThread = new IdleConnectionTimeoutThread();
+            idleConnectionTimeoutThread.setName("YouTrack idle connection eviction");
+            idleConnectionTimeoutThread.setTimeoutInterval(IDLE_CHECK_INTERVAL);
+            idleConnectionTimeoutThread.setConnectionTimeout(IDLE_TIMEOUT);
+            idleConnectionTimeoutThread.start();
+        }
+        idleConnectionTimeoutThread.addConnectionManager(transport.connectionManager);
+    }
+
+    /**
+     * Executes the method on a pooled connection. The caller must call {@link HttpMethod#releaseConnection()}
+     * when done with the response, so the connection is returned to the pool.
+     * <p>
+     * If the adaptive limit is reached, the request waits up to its read timeout for another request to finish.
+     *
+     * @param method the method to execute.
+     * @return the status code of the response.
+     * @throws IOException if the request could not be executed, an {@link InterruptedIOException} if it could not be
+     *                     started within its read timeout.
+     */
+    public int execute(HttpMethod method) throws IOException {
+        return execute(method, 0);
+    }
+
+    /**
+     * Executes the method on a pooled connection, waiting at most the given time for the connection if it is shorter
+     * than the connect timeout of this transport. The caller must call {@link HttpMethod#releaseConnection()} when
+     * done with the response.
+     *
+     * @param method         the method to execute.
+     * @param connectTimeout time in milliseconds to wait for a connection, 0 for the connect timeout of this transport.
+     * @return the status code of the response.
+     * @throws IOException if the request could not be executed, an {@link InterruptedIOException} if it could not be
+     *                     started in time.
+     */
+    public int execute(HttpMethod method, int connectTimeout) throws IOException {
+        if (adaptiveLimiter == null) {
+            return executeMethod(method, connectTimeout);
+        }
+        int timeout = method.getParams().getSoTimeout();
+        try {
+            if (!adaptiveLimiter.acquire(timeout > 0 ? timeout : READ_TIMEOUT)) {
+                throw new InterruptedIOException("Timed out waiting for the concurrency limit of " + serverUrl);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the concurrency limit of " + serverUrl);
+        }
+        long start = System.nanoTime();
+        boolean overloaded = true;
+        int responseCode = 0;
+        try {
+            responseCode = executeMethod(method, connectTimeout);
+            overloaded = isOverloaded(responseCode);
+            return responseCode;
+        } finally {
+            adaptiveLimiter.release(getKind(method, responseCode), System.nanoTime() - start, overloaded);
+        }
+    }
+
+    /**
+     * Gets the kind of a request the adaptive limit compares its latency with: the method and the path, with the
+     * segments naming an issue or other entity replaced, and whether the response was not modified.
+     */
+    static String getKind(HttpMethod method, int responseCode) {
+        StringBuilder kind = new StringBuilder(method.getName());
+        String path = method.getPath();
+        if (path != null) {
+            for (String segment : path.split("/")) {
+                if (!segment.isEmpty()) {
+                    kind.append('/').append(segment.matches(".*\\d.*") ? "*" : segment);
+                }
+            }
+        }
+        if (responseCode == HttpStatus.SC_NOT_MODIFIED) {
+            kind.append(" 304");
+        }
+        return kind.toString();
+    }
+
+    private int executeMethod(HttpMethod method, int connectTimeout) throws IOException {
+        try {
+            if (connectTimeout > 0 && connectTimeout < connectionManager.getParams().getConnectionTimeout()) {
+                connect(method, connectTimeout);
+            }
+            return httpClient.executeMethod(method);
+        } catch (IllegalStateException e) {
+            // Thrown by the client for urls it can not connect to, e.g. without a supported protocol.
+            throw new IOException("Could not execute request to " + serverUrl, e);
+        }
+    }
+
+    /**
+     * Opens a pooled connection to the host of the method within the given time, unless one is open already. The
+     * client only knows the connect timeout of the whole pool, so the connection is opened here and returned to the
+     * pool, where the method picks it up.
+     */
+    private void connect(HttpMethod method, int connectTimeout) throws IOException {
+        HostConfiguration hostConfiguration = new HostConfiguration();
+        hostConfiguration.setHost(method.getURI());
+        HttpConnection connection = connectionManager.getConnectionWithTimeout(hostConfiguration, connectTimeout);
+        try {
+            if (!connection.isOpen()) {
+                connection.getParams().setConnectionTimeout(connectTimeout);
+                try {
+                    connection.open();
+                } finally {
+                    connection.getParams().setParameter(HttpConnectionParams.CONNECTION_TIMEOUT, null);
+                }
+            }
+        } finally {
+            connection.releaseConnection();
+        }
+    }
+
+    private static boolean isOverloaded(int responseCode) {
+        return responseCode == 429 || responseCode == HttpStatus.SC_BAD_GATEWAY
+                || responseCode == HttpStatus.SC_SERVICE_UNAVAILABLE || responseCode == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @return true if the server has sent a compressed response.
+     */
+    public boolean isCompressedResponses() {
+        return compressedResponses;
+    }
+
+    void setCompressedResponses(boolean compressedResponses) {
+        this.compressedResponses = compressedResponses;
+    }
+
+    /**
+     * @return the limit of concurrent requests adapting to the server, null if not limited.
+     */
+    public AdaptiveLimiter getAdaptiveLimiter() {
+        return adaptiveLimiter;
+    }
+
+    /**
+     * Sets the time to wait for a connection. The setting applies to all sites using the same server url.
+     *
+     * @param connectTimeout the timeout in milliseconds.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        connectionManager.getParams().setConnectionTimeout(connectTimeout);
+        httpClient.getParams().setConnectionManagerTimeout(connectTimeout);
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    void shutdown() {
+        try {
+            connectionManager.shutdown();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not shut down connections to " + serverUrl, e);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import hudson.model.AbstractBuild;
 import hudson.model.Action;
 import hudson.model.BuildListener;
 import hudson.model.FreeStyleBuild;
+import hudson.model.Result;
 import hudson.scm.ChangeLogSet;
 import hudson.util.Secret;
 
@@ -71,7 +72,7 @@ public class ExecuteCommandActionTest {
         PrintStream loggerStream = new PrintStream(outputStream);
         doReturn(loggerStream).when(listener).getLogger();
         doReturn(site).when(commandAction).getYouTrackSite(build);
-        doReturn(server).when(commandAction).getYouTrackServer(site);
+        doReturn(server).when(commandAction).getYouTrackServer(site, build);
 
         boolean perform = commandAction.perform(build, launcher, listener);
 
@@ -99,7 +100,7 @@ public class ExecuteCommandActionTest {
 
         doReturn(loggerStream).when(listener).getLogger();
         doReturn(site).when(commandAction).getYouTrackSite(build);
-        doReturn(server).when(commandAction).getYouTrackServer(site);
+        doReturn(server).when(commandAction).getYouTrackServer(site, build);
         doReturn(envVars).when(build).getEnvironment(listener);
         doReturn(null).when(server).login("test","test");
 
@@ -130,7 +131,7 @@ public class ExecuteCommandActionTest {
 
         doReturn(loggerStream).when(listener).getLogger();
         doReturn(site).when(commandAction).getYouTrackSite(build);
-        doReturn(server).when(commandAction).getYouTrackServer(site);
+        doReturn(server).when(commandAction).getYouTrackServer(site, build);
         doReturn(envVars).when(build).getEnvironment(listener);
         User user = new User();
         user.setLoggedIn(true);
@@ -163,7 +164,7 @@ public class ExecuteCommandActionTest {
 
         doReturn(loggerStream).when(listener).getLogger();
         doReturn(site).when(commandAction).getYouTrackSite(build);
-        doReturn(server).when(commandAction).getYouTrackServer(site);
+        doReturn(server).when(commandAction).getYouTrackServer(site, build);
         doReturn(envVars).when(build).getEnvironment(listener);
         YouTrackSaveProjectShortNamesAction projectShortNamesAction = new YouTrackSaveProjectShortNamesAction(Lists.newArrayList(new Project("YT")));
         doReturn(projectShortNamesAction).when(build).getAction(YouTrackSaveProjectShortNamesAction.class);
@@ -173,12 +174,12 @@ public class ExecuteCommandActionTest {
         User user = new User();
         user.setLoggedIn(true);
         doReturn(user).when(server).login("test", "test");
-        doReturn(toBeReturned).when(server).applyCommand("test", user, new Issue("YT-1"), "Fixed", "This is fixed", "", null, true);
+        doReturn(Lists.newArrayList(toBeReturned)).when(server).applyCommandToIssues("test", user, Lists.newArrayList(new Issue("YT-1")), "Fixed", "This is fixed", "", null, true);
 
         boolean perform = commandAction.perform(build, launcher, listener);
 
         assertThat(perform, is(true));
-        verify(server, times(1)).applyCommand("test", user, new Issue("YT-1"), "Fixed", "This is fixed", "", null, true);
+        verify(server, times(1)).applyCommandToIssues("test", user, Lists.newArrayList(new Issue("YT-1")), "Fixed", "This is fixed", "", null, true);
     }
 
     @Test
@@ -203,7 +204,7 @@ public class ExecuteCommandActionTest {
         doReturn(loggerStream).when(listener).getLogger();
         doReturn(changeLogSet).when(build).getChangeSet();
         doReturn(site).when(commandAction).getYouTrackSite(build);
-        doReturn(server).when(commandAction).getYouTrackServer(site);
+        doReturn(server).when(commandAction).getYouTrackServer(site, build);
         doReturn(Lists.newArrayList(new YouTrackSCMListenerTest.MockEntry("#XYZ-123 Fixed\nbla bla bla")).iterator()).when(changeLogSet).iterator();
         doReturn(envVars).when(build).getEnvironment(listener);
 
@@ -214,12 +215,12 @@ public class ExecuteCommandActionTest {
         User user = new User();
         user.setLoggedIn(true);
         doReturn(user).when(server).login("test", "test");
-        doReturn(new Command()).when(server).applyCommand("test", user, new Issue("XYZ-123"), "Fixed", "This is fixed", "", null, true);
+        doReturn(Lists.newArrayList(new Command())).when(server).applyCommandToIssues("test", user, Lists.newArrayList(new Issue("XYZ-123")), "Fixed", "This is fixed", "", null, true);
 
         boolean perform = commandAction.perform(build, launcher, listener);
 
         assertThat(perform, is(true));
-        verify(server, times(1)).applyCommand("test", user, new Issue("XYZ-123"), "Fixed", "This is fixed", "", null, true);
+        verify(server, times(1)).applyCommandToIssues("test", user, Lists.newArrayList(new Issue("XYZ-123")), "Fixed", "This is fixed", "", null, true);
     }
 
     @Test
@@ -250,26 +251,81 @@ public class ExecuteCommandActionTest {
 
         doReturn(loggerStream).when(listener).getLogger();
         doReturn(site).when(commandAction).getYouTrackSite(build);
-        doReturn(server).when(commandAction).getYouTrackServer(site);
-        doReturn(foundIssues).when(server).search(user, "Version: 1");
+        doReturn(server).when(commandAction).getYouTrackServer(site, build);
+        YouTrackServer.SearchIterator searchIterator = mock(YouTrackServer.SearchIterator.class);
+        when(searchIterator.hasNext()).thenReturn(true, true, false);
+        when(searchIterator.next()).thenReturn(new Issue("YT-2"), new Issue("YT-3"));
+        doReturn(searchIterator).when(server).searchIterator(eq(user), eq("Version: 1"), anySetOf(String.class));
         doReturn(envVars).when(build).getEnvironment(listener);
         doReturn(projectShortNamesAction).when(build).getAction(YouTrackSaveProjectShortNamesAction.class);
 
         doReturn(user).when(server).login("test", "test");
         Command toBeReturned = new Command();
-        doReturn(toBeReturned).when(server).applyCommand("test", user, new Issue("YT-2"), "Version: 2", "Upgrade versions", "", null, true);
-        doReturn(toBeReturned).when(server).applyCommand("test", user, new Issue("YT-3"), "Version: 2", "Upgrade versions", "", null, true);
+        doReturn(Lists.newArrayList(toBeReturned, toBeReturned)).when(server).applyCommandToIssues("test", user, foundIssues, "Version: 2", "Upgrade versions", "", null, true);
 
         boolean perform = commandAction.perform(build, launcher, listener);
 
         assertThat(perform, is(true));
-        verify(server, times(1)).applyCommand("test", user, new Issue("YT-2"), "Version: 2", "Upgrade versions", "", null, true);
-        verify(server, times(1)).applyCommand("test", user, new Issue("YT-3"), "Version: 2", "Upgrade versions", "", null, true);
+        verify(server, times(1)).applyCommandToIssues("test", user, Lists.newArrayList(new Issue("YT-2"), new Issue("YT-3")), "Version: 2", "Upgrade versions", "", null, true);
 
         verify(build, times(1)).addAction(any(Action.class));
 
     }
 
+    @Test
+    public void testSearchCommandFailsOnFailedPage() throws IOException, InterruptedException {
+        AbstractBuild build = mock(FreeStyleBuild.class);
+        Launcher launcher = mock(Launcher.class);
+        BuildListener listener = mock(BuildListener.class);
+        YouTrackServer server = mock(YouTrackServer.class);
+
+
+        ExecuteCommandAction commandAction = spy(new ExecuteCommandAction("Version: 2", "Version: 1", "", "Upgrade versions",""));
+
+
+        Secret secret = PowerMockito.mock(Secret.class);
+        when(secret.getPlainText()).thenReturn("test");
+
+        YouTrackSite site = new YouTrackSite("test", "test", secret, "test");
+        site.setPluginEnabled(true);
+        site.setFailureMode(YoutrackBuildFailureMode.FAILURE);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        PrintStream loggerStream = new PrintStream(outputStream);
+        EnvVars envVars = new EnvVars();
+        User user = new User();
+        user.setLoggedIn(true);
+        ArrayList<Project> yt = Lists.newArrayList(new Project("YT"));
+        YouTrackSaveProjectShortNamesAction projectShortNamesAction = new YouTrackSaveProjectShortNamesAction(yt);
+        ArrayList<Issue> foundIssues = Lists.newArrayList(new Issue("YT-2"), new Issue("YT-3"));
+
+        doReturn(loggerStream).when(listener).getLogger();
+        doReturn(site).when(commandAction).getYouTrackSite(build);
+        doReturn(server).when(commandAction).getYouTrackServer(site, build);
+        YouTrackServer.SearchIterator searchIterator = mock(YouTrackServer.SearchIterator.class);
+        when(searchIterator.hasNext()).thenReturn(true, true, false);
+        when(searchIterator.next()).thenReturn(new Issue("YT-2"), new Issue("YT-3"));
+        // A later page of the search could not be read.
+        when(searchIterator.isFailed()).thenReturn(true);
+        doReturn(searchIterator).when(server).searchIterator(eq(user), eq("Version: 1"), anySetOf(String.class));
+        doReturn(envVars).when(build).getEnvironment(listener);
+        doReturn(projectShortNamesAction).when(build).getAction(YouTrackSaveProjectShortNamesAction.class);
+
+        doReturn(user).when(server).login("test", "test");
+        Command toBeReturned = new Command();
+        toBeReturned.setStatus(Command.Status.OK);
+        doReturn(Lists.newArrayList(toBeReturned, toBeReturned)).when(server).applyCommandToIssues("test", user, foundIssues, "Version: 2", "Upgrade versions", "", null, true);
+
+        boolean perform = commandAction.perform(build, launcher, listener);
+
+        assertThat(perform, is(true));
+        verify(server, times(1)).applyCommandToIssues("test", user, Lists.newArrayList(new Issue("YT-2"), new Issue("YT-3")), "Version: 2", "Upgrade versions", "", null, true);
+
+        verify(build, times(1)).addAction(any(Action.class));
+        verify(build).setResult(Result.FAILURE);
+        assertThat(outputStream.toString().contains("FAILED: Searching for issues"), is(true));
+    }
+
 
 
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package org.jenkinsci.plugins.youtrack;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class NameIndexTest {
+    private final NameIndex nameIndex = new NameIndex(Arrays.asList("Fix versions", "Fixed in build", "Prefix", "Affected versions", "FIX", "State", null));
+
+    @Test
+    public void testRanksMatches() {
+        assertThat(nameIndex.search("fix"), is(Arrays.asList("FIX", "Fix versions", "Fixed in build", "Prefix")));
+    }
+
+    @Test
+    public void testWordStartBeforeInside() {
+        assertThat(nameIndex.search("ver"), is(Arrays.asList("Fix versions", "Affected versions")));
+    }
+
+    @Test
+    public void testLongerThanGrams() {
+        assertThat(nameIndex.search("VERSIONS"), is(Arrays.asList("Fix versions", "Affected versions")));
+        assertThat(nameIndex.search("fix versions"), is(Collections.singletonList("Fix versions")));
+        // All n-grams occur, but not in this order.
+        assertThat(nameIndex.search("versions fix"), is(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testShortText() {
+        assertThat(nameIndex.search("st"), is(Collections.singletonList("State")));
+        assertThat(nameIndex.search("x"), is(Arrays.asList("FIX", "Prefix", "Fix versions", "Fixed in build")));
+    }
+
+    @Test
+    public void testNoMatch() {
+        assertThat(nameIndex.search("zzz"), is(Collections.<String>emptyList()));
+        assertThat(nameIndex.search("statez"), is(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testEmptyTextFindsAll() {
+        assertThat(nameIndex.search(null).size(), is(6));
+        assertThat(nameIndex.search("").get(0), is("FIX"));
+    }
+}
@@ -2,6 +2,7 @@ package org.jenkinsci.plugins.youtrack;
 
 import com.gargoylesoftware.htmlunit.html.*;
 import hudson.model.FreeStyleProject;
+import jenkins.model.Jenkins;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -42,6 +43,17 @@ public class YouTrackProjectPropertyTest {
         button.click();
     }
 
+    @Test
+    public void testSiteSavedBeforeSettingsGetsDefaults() {
+        YouTrackSite site = (YouTrackSite) Jenkins.XSTREAM2.fromXML("<org.jenkinsci.plugins.youtrack.YouTrackSite>"
+                + "<name>site</name><url>http://example.com</url></org.jenkinsci.plugins.youtrack.YouTrackSite>");
+
+        assertEquals(Integer.valueOf(YouTrackProjectProperty.DescriptorImpl.DEFAULT_RETRIES), site.getRetries());
+        assertEquals(Integer.valueOf(YouTrackProjectProperty.DescriptorImpl.DEFAULT_CIRCUIT_BREAKER_THRESHOLD), site.getCircuitBreakerThreshold());
+        assertEquals(Integer.valueOf(YouTrackProjectProperty.DescriptorImpl.DEFAULT_CIRCUIT_BREAKER_COOL_DOWN), site.getCircuitBreakerCoolDown());
+        assertEquals(Integer.valueOf(YouTrackProjectProperty.DescriptorImpl.DEFAULT_METADATA_CACHE_TTL), site.getMetadataCacheTtl());
+    }
+
     private HtmlElement youtrackSitesSection(HtmlPage globalConfiguration) {
         HtmlElement mainPanel = globalConfiguration.getHtmlElementById("main-panel");
         List<HtmlElement> settings = mainPanel.getElementsByAttribute("td", "class", "setting-name");
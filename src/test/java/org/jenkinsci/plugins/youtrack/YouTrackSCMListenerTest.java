@@ -10,6 +10,7 @@ import hudson.util.DescribableList;
 import hudson.util.Secret;
 
 import org.jenkinsci.plugins.youtrack.youtrackapi.Issue;
+import org.jenkinsci.plugins.youtrack.youtrackapi.IssueField;
 import org.jenkinsci.plugins.youtrack.youtrackapi.Project;
 import org.jenkinsci.plugins.youtrack.youtrackapi.User;
 import org.jenkinsci.plugins.youtrack.youtrackapi.YouTrackServer;
@@ -101,6 +102,70 @@ public class YouTrackSCMListenerTest {
         assertEquals(1, commands.size());
     }
 
+    @Test
+    public void testFindsFixedIssuesWithBulkStateReads() throws Exception {
+        FreeStyleProject project = mock(FreeStyleProject.class);
+        FreeStyleBuild freeStyleBuild = mock(FreeStyleBuild.class);
+        ChangeLogSet changeLogSet = mock(ChangeLogSet.class);
+        BuildListener listener = mock(BuildListener.class);
+        YouTrackServer youTrackServer = mock(YouTrackServer.class);
+
+        User user = new User();
+        user.setUsername("tester");
+        user.setLoggedIn(true);
+
+        when(freeStyleBuild.getProject()).thenReturn(project);
+        when((FreeStyleBuild) freeStyleBuild.getRootBuild()).thenReturn(freeStyleBuild);
+        when(listener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        when(freeStyleBuild.getAction(Matchers.any(Class.class))).thenCallRealMethod();
+        when(freeStyleBuild.getActions()).thenCallRealMethod();
+        Mockito.doCallRealMethod().when(freeStyleBuild).addAction(Matchers.<Action>anyObject());
+
+        Command command = new Command();
+        command.setStatus(Command.Status.OK);
+        when(youTrackServer.applyCommand(eq("testsite"), eq(user), any(Issue.class), anyString(), anyString(), anyString(), any(User.class), anyBoolean())).thenReturn(command);
+
+        Project project1 = new Project();
+        project1.setShortName("TP1");
+        when(youTrackServer.getProjects(user)).thenReturn(Lists.newArrayList(project1));
+
+        Map<String, Issue> before = new HashMap<String, Issue>();
+        before.put("TP1-1", issue("TP1-1", "Open"));
+        before.put("TP1-2", issue("TP1-2", "Open"));
+        Map<String, Issue> after = new HashMap<String, Issue>();
+        after.put("TP1-1", issue("TP1-1", "Fixed"));
+        after.put("TP1-2", issue("TP1-2", "In Progress"));
+        when(youTrackServer.getIssues(eq(user), Matchers.<Collection<String>>any(), eq("State"), Matchers.<Set<IssueField>>any())).thenReturn(before, after);
+
+        when(changeLogSet.iterator()).thenReturn(Lists.newArrayList(new MockEntry("#TP1-1 Fixed"), new MockEntry("#TP1-2 In Progress"), new MockEntry("#TP1-1 Verified")).iterator());
+
+        Secret secret = mock(Secret.class);
+        when(secret.getPlainText()).thenReturn("test");
+        YouTrackSite youTrackSite = new YouTrackSite("testsite", "test", secret, "http://test.com");
+        youTrackSite.setCommandsEnabled(true);
+        youTrackSite.setPluginEnabled(true);
+
+        YoutrackIssueUpdater issueUpdate = spy(new YoutrackIssueUpdater());
+        YouTrackSCMListener scmListener = spy(new YouTrackSCMListener());
+        doReturn(youTrackSite).when(issueUpdate).getYouTrackSite(freeStyleBuild);
+        doReturn(youTrackServer).when(issueUpdate).getYouTrackServer(youTrackSite);
+        doReturn(user).when(youTrackServer).login("test", "test");
+        doReturn(issueUpdate).when(scmListener).getYoutrackIssueUpdater();
+
+        scmListener.onChangeLogParsed(freeStyleBuild, listener, changeLogSet);
+
+        assertThat(freeStyleBuild.getAction(YouTrackCommandAction.class).getCommands().size(), is(3));
+        assertThat(freeStyleBuild.getAction(YouTrackSaveFixedIssues.class).getIssueIds(), is((List<String>) Lists.newArrayList("TP1-1")));
+        verify(youTrackServer, times(2)).getIssues(eq(user), Matchers.<Collection<String>>any(), eq("State"), Matchers.<Set<IssueField>>any());
+        verify(youTrackServer, never()).getIssue(any(User.class), anyString(), anyString());
+    }
+
+    private static Issue issue(String id, String state) {
+        Issue issue = new Issue(id);
+        issue.setState(state);
+        return issue;
+    }
+
     @Test
     public void testOverlappingProjects() throws Exception {
         YouTrackSCMListener youTrackSCMListener = spy(new YouTrackSCMListener());
@@ -477,7 +542,64 @@ public class YouTrackSCMListenerTest {
 
         Command executeCommand = new Command();
         executeCommand.setStatus(Command.Status.OK);
-        doReturn(addCommentCommand).when(youTrackServer).applyCommand("testsite", user, new Issue("TP1-2"), "Fixed", null, null, null, true);
+        doReturn(addCommentCommand).when(youTrackServer).applyCommand("testsite", user, new Issue("TP1-2"), "Fixed", "Related build: http://localhost/build\nSHA: null", null, null, true);
+
+        scmListener.onChangeLogParsed(build, listener, logSet);
+
+        YouTrackCommandAction youTrackCommandAction = build.getAction(YouTrackCommandAction.class);
+        List<Command> commands = youTrackCommandAction.getCommands();
+        assertEquals(1, commands.size());
+    }
+
+    @Test
+    public void testCommentSeparateFromCommandWithOtherSilence() throws Exception {
+        FreeStyleProject project = mock(FreeStyleProject.class);
+        AbstractBuild build = mock(AbstractBuild.class);
+        BuildListener listener = mock(BuildListener.class);
+        ChangeLogSet logSet = mock(ChangeLogSet.class);
+        YouTrackServer youTrackServer = mock(YouTrackServer.class);
+
+        Secret secret = mock(Secret.class);
+        when(secret.getPlainText()).thenReturn("test");
+        YouTrackSite youTrackSite = new YouTrackSite("testsite", "test", secret, "http://test.com");
+        youTrackSite.setCommandsEnabled(true);
+        youTrackSite.setCommentEnabled(true);
+        youTrackSite.setPluginEnabled(true);
+        youTrackSite.setSilentLinks(true);
+
+        ArrayList<Project> projects = new ArrayList<Project>();
+        Project project1 = new Project();
+        project1.setShortName("TP1");
+        projects.add(project1);
+
+        User user = new User();
+        user.setUsername("tester");
+        user.setLoggedIn(true);
+
+        YoutrackIssueUpdater issueUpdater = spy(new YoutrackIssueUpdater());
+        when(youTrackServer.getProjects(user)).thenReturn(projects);
+        YouTrackSCMListener scmListener = spy(new YouTrackSCMListener());
+
+        when(listener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        doReturn(youTrackSite).when(issueUpdater).getYouTrackSite(build);
+        doReturn(youTrackServer).when(issueUpdater).getYouTrackServer(youTrackSite);
+        doReturn(issueUpdater).when(scmListener).getYoutrackIssueUpdater();
+        doReturn(project).when(build).getProject();
+        doReturn(build).when(build).getRootBuild();
+        doReturn("http://localhost/build").when(issueUpdater).getAbsoluteUrlForBuild(build);
+        doReturn(Lists.newArrayList(new MockEntry("#TP1-2 Fixed")).iterator()).when(logSet).iterator();
+        doReturn(user).when(youTrackServer).login("test", "test");
+        when(build.getAction(Matchers.any(Class.class))).thenCallRealMethod();
+        when(build.getActions()).thenCallRealMethod();
+        Mockito.doCallRealMethod().when(build).addAction(Matchers.<Action>anyObject());
+
+        Command addCommentCommand = new Command();
+        addCommentCommand.setStatus(Command.Status.OK);
+        doReturn(addCommentCommand).when(youTrackServer).comment("testsite", user, new Issue("TP1-2"), "Related build: http://localhost/build\nSHA: null", null, true);
+
+        Command executeCommand = new Command();
+        executeCommand.setStatus(Command.Status.OK);
+        doReturn(executeCommand).when(youTrackServer).applyCommand("testsite", user, new Issue("TP1-2"), "Fixed", null, null, null, true);
 
         scmListener.onChangeLogParsed(build, listener, logSet);
 
@@ -486,6 +608,181 @@ public class YouTrackSCMListenerTest {
         assertEquals(2, commands.size());
     }
 
+    @Test
+    public void testCommentSeparateFromRejectedCommand() throws Exception {
+        FreeStyleProject project = mock(FreeStyleProject.class);
+        AbstractBuild build = mock(AbstractBuild.class);
+        BuildListener listener = mock(BuildListener.class);
+        ChangeLogSet logSet = mock(ChangeLogSet.class);
+        YouTrackServer youTrackServer = mock(YouTrackServer.class);
+
+        Secret secret = mock(Secret.class);
+        when(secret.getPlainText()).thenReturn("test");
+        YouTrackSite youTrackSite = new YouTrackSite("testsite", "test", secret, "http://test.com");
+        youTrackSite.setCommandsEnabled(true);
+        youTrackSite.setCommentEnabled(true);
+        youTrackSite.setPluginEnabled(true);
+        youTrackSite.setLinkVisibility("developers");
+
+        ArrayList<Project> projects = new ArrayList<Project>();
+        Project project1 = new Project();
+        project1.setShortName("TP1");
+        projects.add(project1);
+
+        User user = new User();
+        user.setUsername("tester");
+        user.setLoggedIn(true);
+
+        YoutrackIssueUpdater issueUpdater = spy(new YoutrackIssueUpdater());
+        when(youTrackServer.getProjects(user)).thenReturn(projects);
+        YouTrackSCMListener scmListener = spy(new YouTrackSCMListener());
+
+        when(listener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        doReturn(youTrackSite).when(issueUpdater).getYouTrackSite(build);
+        doReturn(youTrackServer).when(issueUpdater).getYouTrackServer(youTrackSite);
+        doReturn(issueUpdater).when(scmListener).getYoutrackIssueUpdater();
+        doReturn(project).when(build).getProject();
+        doReturn(build).when(build).getRootBuild();
+        doReturn("http://localhost/build").when(issueUpdater).getAbsoluteUrlForBuild(build);
+        doReturn(Lists.newArrayList(new MockEntry("#TP1-2 Fixd")).iterator()).when(logSet).iterator();
+        doReturn(user).when(youTrackServer).login("test", "test");
+        when(build.getAction(Matchers.any(Class.class))).thenCallRealMethod();
+        when(build.getActions()).thenCallRealMethod();
+        Mockito.doCallRealMethod().when(build).addAction(Matchers.<Action>anyObject());
+
+        Command executeCommand = new Command();
+        executeCommand.setStatus(Command.Status.FAILED);
+        doReturn(executeCommand).when(youTrackServer).applyCommand("testsite", user, new Issue("TP1-2"), "Fixd", "Related build: http://localhost/build\nSHA: null", "developers", null, true);
+
+        Command addCommentCommand = new Command();
+        addCommentCommand.setStatus(Command.Status.OK);
+        doReturn(addCommentCommand).when(youTrackServer).comment("testsite", user, new Issue("TP1-2"), "Related build: http://localhost/build\nSHA: null", "developers", false);
+
+        scmListener.onChangeLogParsed(build, listener, logSet);
+
+        verify(youTrackServer).comment("testsite", user, new Issue("TP1-2"), "Related build: http://localhost/build\nSHA: null", "developers", false);
+        YouTrackCommandAction youTrackCommandAction = build.getAction(YouTrackCommandAction.class);
+        List<Command> commands = youTrackCommandAction.getCommands();
+        assertEquals(2, commands.size());
+    }
+
+    @Test
+    public void testCommentSeparateFromCommandNotSentInTime() throws Exception {
+        FreeStyleProject project = mock(FreeStyleProject.class);
+        AbstractBuild build = mock(AbstractBuild.class);
+        BuildListener listener = mock(BuildListener.class);
+        ChangeLogSet logSet = mock(ChangeLogSet.class);
+        YouTrackServer youTrackServer = mock(YouTrackServer.class);
+
+        Secret secret = mock(Secret.class);
+        when(secret.getPlainText()).thenReturn("test");
+        YouTrackSite youTrackSite = new YouTrackSite("testsite", "test", secret, "http://test.com");
+        youTrackSite.setCommandsEnabled(true);
+        youTrackSite.setCommentEnabled(true);
+        youTrackSite.setPluginEnabled(true);
+        youTrackSite.setLinkVisibility("developers");
+
+        ArrayList<Project> projects = new ArrayList<Project>();
+        Project project1 = new Project();
+        project1.setShortName("TP1");
+        projects.add(project1);
+
+        User user = new User();
+        user.setUsername("tester");
+        user.setLoggedIn(true);
+
+        YoutrackIssueUpdater issueUpdater = spy(new YoutrackIssueUpdater());
+        when(youTrackServer.getProjects(user)).thenReturn(projects);
+        YouTrackSCMListener scmListener = spy(new YouTrackSCMListener());
+
+        when(listener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        doReturn(youTrackSite).when(issueUpdater).getYouTrackSite(build);
+        doReturn(youTrackServer).when(issueUpdater).getYouTrackServer(youTrackSite);
+        doReturn(issueUpdater).when(scmListener).getYoutrackIssueUpdater();
+        doReturn(project).when(build).getProject();
+        doReturn(build).when(build).getRootBuild();
+        doReturn("http://localhost/build").when(issueUpdater).getAbsoluteUrlForBuild(build);
+        doReturn(Lists.newArrayList(new MockEntry("#TP1-2 Fixed")).iterator()).when(logSet).iterator();
+        doReturn(user).when(youTrackServer).login("test", "test");
+        when(build.getAction(Matchers.any(Class.class))).thenCallRealMethod();
+        when(build.getActions()).thenCallRealMethod();
+        Mockito.doCallRealMethod().when(build).addAction(Matchers.<Action>anyObject());
+
+        Command executeCommand = new Command();
+        executeCommand.setStatus(Command.Status.TIMEOUT);
+        doReturn(executeCommand).when(youTrackServer).applyCommand("testsite", user, new Issue("TP1-2"), "Fixed", "Related build: http://localhost/build\nSHA: null", "developers", null, true);
+
+        Command addCommentCommand = new Command();
+        addCommentCommand.setStatus(Command.Status.OK);
+        doReturn(addCommentCommand).when(youTrackServer).comment("testsite", user, new Issue("TP1-2"), "Related build: http://localhost/build\nSHA: null", "developers", false);
+
+        scmListener.onChangeLogParsed(build, listener, logSet);
+
+        verify(youTrackServer).comment("testsite", user, new Issue("TP1-2"), "Related build: http://localhost/build\nSHA: null", "developers", false);
+        YouTrackCommandAction youTrackCommandAction = build.getAction(YouTrackCommandAction.class);
+        List<Command> commands = youTrackCommandAction.getCommands();
+        assertEquals(2, commands.size());
+    }
+
+    @Test
+    public void testNoSeparateCommentAfterUnansweredCommand() throws Exception {
+        FreeStyleProject project = mock(FreeStyleProject.class);
+        AbstractBuild build = mock(AbstractBuild.class);
+        BuildListener listener = mock(BuildListener.class);
+        ChangeLogSet logSet = mock(ChangeLogSet.class);
+        YouTrackServer youTrackServer = mock(YouTrackServer.class);
+
+        Secret secret = mock(Secret.class);
+        when(secret.getPlainText()).thenReturn("test");
+        YouTrackSite youTrackSite = new YouTrackSite("testsite", "test", secret, "http://test.com");
+        youTrackSite.setCommandsEnabled(true);
+        youTrackSite.setCommentEnabled(true);
+        youTrackSite.setPluginEnabled(true);
+        youTrackSite.setLinkVisibility("developers");
+
+        ArrayList<Project> projects = new ArrayList<Project>();
+        Project project1 = new Project();
+        project1.setShortName("TP1");
+        projects.add(project1);
+
+        User user = new User();
+        user.setUsername("tester");
+        user.setLoggedIn(true);
+
+        YoutrackIssueUpdater issueUpdater = spy(new YoutrackIssueUpdater());
+        when(youTrackServer.getProjects(user)).thenReturn(projects);
+        YouTrackSCMListener scmListener = spy(new YouTrackSCMListener());
+
+        when(listener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        doReturn(youTrackSite).when(issueUpdater).getYouTrackSite(build);
+        doReturn(youTrackServer).when(issueUpdater).getYouTrackServer(youTrackSite);
+        doReturn(issueUpdater).when(scmListener).getYoutrackIssueUpdater();
+        doReturn(project).when(build).getProject();
+        doReturn(build).when(build).getRootBuild();
+        doReturn("http://localhost/build").when(issueUpdater).getAbsoluteUrlForBuild(build);
+        doReturn(Lists.newArrayList(new MockEntry("#TP1-2 Fixed")).iterator()).when(logSet).iterator();
+        doReturn(user).when(youTrackServer).login("test", "test");
+        when(build.getAction(Matchers.any(Class.class))).thenCallRealMethod();
+        when(build.getActions()).thenCallRealMethod();
+        Mockito.doCallRealMethod().when(build).addAction(Matchers.<Action>anyObject());
+
+        Command executeCommand = new Command();
+        executeCommand.setStatus(Command.Status.TIMEOUT);
+        executeCommand.setUnanswered(true);
+        doReturn(executeCommand).when(youTrackServer).applyCommand("testsite", user, new Issue("TP1-2"), "Fixed", "Related build: http://localhost/build\nSHA: null", "developers", null, true);
+
+        Command addCommentCommand = new Command();
+        addCommentCommand.setStatus(Command.Status.OK);
+        doReturn(addCommentCommand).when(youTrackServer).comment("testsite", user, new Issue("TP1-2"), "Related build: http://localhost/build\nSHA: null", "developers", false);
+
+        scmListener.onChangeLogParsed(build, listener, logSet);
+
+        verify(youTrackServer, never()).comment("testsite", user, new Issue("TP1-2"), "Related build: http://localhost/build\nSHA: null", "developers", false);
+        YouTrackCommandAction youTrackCommandAction = build.getAction(YouTrackCommandAction.class);
+        List<Command> commands = youTrackCommandAction.getCommands();
+        assertEquals(1, commands.size());
+    }
+
     public static class MockEntry extends ChangeLogSet.Entry {
 
         private final String msg;
@@ -0,0 +1,188 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class AdaptiveLimiterTest {
+    /**
+     * Number of requests the stub server serves at full speed, more concurrent requests slow it down.
+     */
+    private static final int CAPACITY = 4;
+
+    @Test
+    public void testDecreasesWhenOverloaded() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 20);
+        limiter.acquire(0);
+        limiter.release(millis(10), false);
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(0);
+            limiter.release(millis(100), false);
+        }
+        assertThat(limiter.getLimit(), is(4));
+
+        limiter.acquire(0);
+        limiter.release(millis(10), true);
+        assertThat(limiter.getLimit(), is(3));
+    }
+
+    @Test
+    public void testGrowsOnlyWhileUsed() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 20);
+        limiter.acquire(0);
+        limiter.release(millis(10), true);
+        int limit = limiter.getLimit();
+
+        // A single request at a time does not use the limit, so it must not grow.
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(0);
+            limiter.release(millis(10), false);
+        }
+        assertThat(limiter.getLimit(), is(limit));
+
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < 10; j++) {
+                limiter.acquire(0);
+            }
+            for (int j = 0; j < 10; j++) {
+                limiter.release(millis(10), false);
+            }
+        }
+        assertThat(limiter.getLimit(), is(20));
+    }
+
+    @Test
+    public void testComparesLatencyPerKind() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 20);
+        // A revalidated read is much faster than a command or a search, without the server being loaded.
+        for (int i = 0; i < 1000; i++) {
+            for (int j = 0; j < 10; j++) {
+                limiter.acquire(0);
+            }
+            for (int j = 0; j < 10; j++) {
+                switch (j % 3) {
+                    case 0:
+                        limiter.release("GET/rest/admin/project 304", millis(2), false);
+                        break;
+                    case 1:
+                        limiter.release("POST/rest/issue/*/execute", millis(80 + i % 40), false);
+                        break;
+                    default:
+                        limiter.release("GET/rest/issue", millis(300 + i % 200), false);
+                }
+            }
+        }
+
+        assertThat(limiter.getLimit(), is(20));
+        assertThat(limiter.getNoLoadLatency("GET/rest/admin/project 304"), is(2.0));
+    }
+
+    @Test
+    public void testKindOfRequest() {
+        assertThat(YouTrackTransport.getKind(new GetMethod("http://localhost/rest/issue/TP-12?wikifyDescription=true"), 200), is("GET/rest/issue/*"));
+        assertThat(YouTrackTransport.getKind(new PostMethod("http://localhost/rest/issue/TP-12/execute"), 200), is("POST/rest/issue/*/execute"));
+        assertThat(YouTrackTransport.getKind(new GetMethod("http://localhost/rest/admin/project"), 304), is("GET/rest/admin/project 304"));
+    }
+
+    @Test
+    public void testWaitsForLimit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1);
+        assertThat(limiter.acquire(0), is(true));
+        assertThat(limiter.acquire(50), is(false));
+        limiter.release(millis(1), false);
+        assertThat(limiter.acquire(0), is(true));
+    }
+
+    /**
+     * Simulates many builds sending requests to a server whose latency grows when more than {@link #CAPACITY}
+     * requests are served at the same time. The limit must converge near the capacity of the server.
+     */
+    @Test
+    public void testConvergesToServerCapacity() throws Exception {
+        final AtomicInteger serving = new AtomicInteger();
+        final AtomicInteger maxServingLate = new AtomicInteger();
+        final long started = System.currentTimeMillis();
+        HttpServer stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int concurrent = serving.incrementAndGet();
+                if (System.currentTimeMillis() - started > 2000) {
+                    synchronized (maxServingLate) {
+                        if (concurrent > maxServingLate.get()) {
+                            maxServingLate.set(concurrent);
+                        }
+                    }
+                }
+                try {
+                    Thread.sleep(10 + 20 * Math.max(0, concurrent - CAPACITY));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                serving.decrementAndGet();
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        });
+        stub.start();
+        final String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        final AdaptiveLimiter limiter = new AdaptiveLimiter(1, 20);
+        final YouTrackTransport transport = new YouTrackTransport(url, limiter);
+        final AtomicInteger completed = new AtomicInteger();
+        try {
+            List<Thread> clients = new ArrayList<Thread>();
+            for (int i = 0; i < 16; i++) {
+                Thread client = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        while (System.currentTimeMillis() - started < 4000) {
+                            GetMethod method = new GetMethod(url + "/rest/issue/TP-1");
+                            try {
+                                transport.execute(method);
+                                completed.incrementAndGet();
+                            } catch (IOException e) {
+                                // counted as overload by the limiter
+                            } finally {
+                                method.releaseConnection();
+                            }
+                        }
+                    }
+                });
+                client.start();
+                clients.add(client);
+            }
+            for (Thread client : clients) {
+                client.join();
+            }
+        } finally {
+            transport.shutdown();
+            stub.stop(0);
+        }
+
+        assertThat(completed.get(), greaterThan(100));
+        assertThat(limiter.getLimit(), greaterThanOrEqualTo(1));
+        assertThat(limiter.getLimit(), lessThanOrEqualTo(2 * CAPACITY));
+        assertThat(maxServingLate.get(), lessThanOrEqualTo(2 * CAPACITY));
+    }
+
+    private static long millis(long millis) {
+        return millis * 1000000L;
+    }
+}
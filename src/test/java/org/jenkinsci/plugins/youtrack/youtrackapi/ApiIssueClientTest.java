@@ -0,0 +1,28 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class ApiIssueClientTest extends IssueClientContractTest {
+    @Override
+    protected IssueClient createClient(YouTrackServer server) {
+        return new ApiIssueClient(server);
+    }
+
+    @Test
+    public void testRequestsOnlyNeededFields() throws Exception {
+        testGetIssue();
+        assertThat(parameter("fields"), is(ApiIssueClient.ISSUE_FIELDS));
+
+        testSearch();
+        assertThat(parameter("fields"), is(ApiIssueClient.SEARCH_FIELDS));
+    }
+
+    @Test
+    public void testRequestsOnlyWantedFields() throws Exception {
+        testGetIssueState();
+        assertThat(parameter("fields"), is("idReadable,customFields(name,value(name))"));
+    }
+}
@@ -0,0 +1,158 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.jenkinsci.plugins.youtrack.Command;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class BuildBundleCacheTest {
+    private final AtomicInteger fieldReads = new AtomicInteger();
+    private final AtomicInteger bundleReads = new AtomicInteger();
+    private final AtomicInteger adds = new AtomicInteger();
+    private volatile int addStatus = 201;
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private YouTrackServer server;
+    private User user;
+
+    @Before
+    public void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/rest/admin/project/TP/customfield/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                fieldReads.incrementAndGet();
+                respond(exchange, 200, "<projectCustomField name=\"Fixed in build\" type=\"build[1]\">"
+                        + "<param name=\"bundle\" value=\"Builds\"/></projectCustomField>");
+            }
+        });
+        stub.createContext("/rest/admin/customfield/buildBundle/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (exchange.getRequestMethod().equals("PUT")) {
+                    adds.incrementAndGet();
+                    respond(exchange, addStatus, "");
+                } else {
+                    bundleReads.incrementAndGet();
+                    respond(exchange, 200, "<buildBundle name=\"Builds\">"
+                            + "<build assembleDate=\"1500000000000\">1</build><build>2</build></buildBundle>");
+                }
+            }
+        });
+        stub.start();
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        server = new YouTrackServer(url, transport);
+        server.setBuildBundleCache(new BuildBundleCache());
+        user = new SessionManager("user", null, "perm:token").getUser(null);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String response) throws IOException {
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    public void testKeepsBundleName() {
+        assertThat(server.getBuildBundleNameForField(user, "TP", "Fixed in build"), is("Builds"));
+        assertThat(server.getBuildBundleNameForField(user, "TP", "Fixed in build"), is("Builds"));
+
+        assertThat(fieldReads.get(), is(1));
+    }
+
+    @Test
+    public void testDoesNotAddKnownBuild() {
+        Command command = server.addBuildToBundle("site", user, "Builds", "2");
+
+        assertThat(command.getStatus(), is(Command.Status.OK));
+        assertThat(bundleReads.get(), is(1));
+        assertThat(adds.get(), is(0));
+    }
+
+    @Test
+    public void testAddsBuildOnce() {
+        assertThat(server.addBuildToBundle("site", user, "Builds", "3").getStatus(), is(Command.Status.OK));
+        assertThat(server.addBuildToBundle("site", user, "Builds", "3").getStatus(), is(Command.Status.OK));
+        assertThat(server.addBuildToBundle("site", user, "Builds", "1").getStatus(), is(Command.Status.OK));
+
+        assertThat(bundleReads.get(), is(1));
+        assertThat(adds.get(), is(1));
+    }
+
+    @Test
+    public void testDoesNotKeepFailedAdd() {
+        addStatus = 403;
+        assertThat(server.addBuildToBundle("site", user, "Builds", "3").getStatus(), is(Command.Status.FAILED));
+        addStatus = 201;
+        assertThat(server.addBuildToBundle("site", user, "Builds", "3").getStatus(), is(Command.Status.OK));
+
+        assertThat(adds.get(), is(2));
+        assertThat(bundleReads.get(), is(2));
+    }
+
+    @Test
+    public void testKeepsBundleAfterAddNotSent() {
+        assertThat(server.getBuildBundleNameForField(user, "TP", "Fixed in build"), is("Builds"));
+        assertThat(server.addBuildToBundle("site", user, "Builds", "3").getStatus(), is(Command.Status.OK));
+        server.setTimeBudget(new TimeBudget(0));
+        assertThat(server.addBuildToBundle("site", user, "Builds", "4").getStatus(), is(Command.Status.TIMEOUT));
+        server.setTimeBudget(null);
+        assertThat(server.addBuildToBundle("site", user, "Builds", "3").getStatus(), is(Command.Status.OK));
+        assertThat(server.getBuildBundleNameForField(user, "TP", "Fixed in build"), is("Builds"));
+
+        assertThat(adds.get(), is(1));
+        assertThat(bundleReads.get(), is(1));
+        assertThat(fieldReads.get(), is(1));
+    }
+
+    @Test
+    public void testForgetsOnlyRejectedBundle() {
+        assertThat(server.addBuildToBundle("site", user, "Other", "1").getStatus(), is(Command.Status.OK));
+        addStatus = 403;
+        assertThat(server.addBuildToBundle("site", user, "Builds", "3").getStatus(), is(Command.Status.FAILED));
+        assertThat(server.addBuildToBundle("site", user, "Other", "1").getStatus(), is(Command.Status.OK));
+
+        assertThat(bundleReads.get(), is(2));
+    }
+
+    @Test
+    public void testKnownBuildHasUser() {
+        Command command = server.addBuildToBundle("site", user, "Builds", "2");
+
+        assertThat(command.getUsername(), is("user"));
+    }
+
+    @Test
+    public void testExpires() {
+        server.setBuildBundleCache(new BuildBundleCache(0));
+
+        server.getBuildBundleNameForField(user, "TP", "Fixed in build");
+        server.getBuildBundleNameForField(user, "TP", "Fixed in build");
+        server.addBuildToBundle("site", user, "Builds", "2");
+        server.addBuildToBundle("site", user, "Builds", "2");
+
+        assertThat(fieldReads.get(), is(2));
+        assertThat(bundleReads.get(), is(2));
+    }
+}
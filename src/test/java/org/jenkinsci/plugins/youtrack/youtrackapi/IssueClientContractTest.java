@@ -0,0 +1,280 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests every {@link IssueClient} must pass, against a stub server answering both the /rest and the /api API from the
+ * same issues.
+ */
+public abstract class IssueClientContractTest {
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private IssueClient client;
+    protected YouTrackServer server;
+    private User user;
+    /**
+     * The issues of the stub, by id, each a map of field name to value.
+     */
+    private final Map<String, Map<String, String>> issues = new LinkedHashMap<String, Map<String, String>>();
+    /**
+     * The query of the last request to the stub.
+     */
+    protected volatile String lastQuery;
+    /**
+     * An id the stub rejects searches by id for, like a server rejecting the query for a deleted issue.
+     */
+    protected volatile String rejectedId;
+    /**
+     * The number of requests to the stub.
+     */
+    protected final AtomicInteger requests = new AtomicInteger();
+
+    protected abstract IssueClient createClient(YouTrackServer server);
+
+    @Before
+    public void setUp() throws Exception {
+        addIssue("TP-1", "Fixed", "Done", "Fix the build", "The build is broken", "1500000000000");
+        addIssue("TP-2", "Open", null, "Speed up the tests", null, null);
+        addIssue("TP-3", "Open", "Planned", "Update the documentation", "Outdated", null);
+
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                lastQuery = exchange.getRequestURI().getRawQuery();
+                requests.incrementAndGet();
+                String query = path.equals("/rest/issue") ? parameter("filter") : path.equals("/api/issues") ? parameter("query") : null;
+                if (rejectedId != null && query != null && query.startsWith("issue id: ") && query.contains(rejectedId)) {
+                    exchange.sendResponseHeaders(400, -1);
+                    exchange.close();
+                    return;
+                }
+                String body = null;
+                if (path.equals("/rest/issue")) {
+                    body = restSearch(parameter("filter"), Integer.parseInt(parameter("after")), Integer.parseInt(parameter("max")));
+                } else if (path.startsWith("/rest/issue/")) {
+                    body = restIssue(path.substring("/rest/issue/".length()));
+                } else if (path.equals("/api/issues")) {
+                    body = apiSearch(parameter("query"), Integer.parseInt(parameter("$skip")), Integer.parseInt(parameter("$top")));
+                } else if (path.startsWith("/api/issues/")) {
+                    body = apiIssue(path.substring("/api/issues/".length()));
+                }
+                if (body == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        });
+        stub.start();
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        server = new YouTrackServer(url, transport);
+        client = createClient(server);
+        user = new SessionManager("user", null, "perm:token").getUser(null);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    public void testGetIssue() throws Exception {
+        Issue issue = client.getIssue(user, "TP-1", null);
+
+        assertThat(issue.getId(), is("TP-1"));
+        assertThat(issue.getState(), is("Fixed"));
+        assertThat(issue.getSummary(), is("Fix the build"));
+        assertThat(issue.getDescription(), is("The build is broken"));
+        assertThat(issue.getResolved(), is("1500000000000"));
+    }
+
+    @Test
+    public void testGetUnresolvedIssue() throws Exception {
+        Issue issue = client.getIssue(user, "TP-2", "");
+
+        assertThat(issue.getState(), is("Open"));
+        assertThat(issue.getDescription(), nullValue());
+        assertThat(issue.getResolved(), nullValue());
+    }
+
+    @Test
+    public void testGetIssueWithStateField() throws Exception {
+        assertThat(client.getIssue(user, "TP-3", "Stage").getState(), is("Planned"));
+    }
+
+    @Test
+    public void testGetIssueState() throws Exception {
+        Issue issue = client.getIssue(user, "TP-1", "State", EnumSet.of(IssueField.STATE));
+
+        assertThat(issue.getId(), is("TP-1"));
+        assertThat(issue.getState(), is("Fixed"));
+    }
+
+    @Test
+    public void testGetMissingIssue() throws Exception {
+        assertThat(client.getIssue(user, "TP-4", null), nullValue());
+    }
+
+    @Test
+    public void testGetIssues() throws Exception {
+        List<Issue> found = client.getIssues(user, Arrays.asList("TP-3", "TP-1", "TP-4"), "Stage", EnumSet.of(IssueField.STATE, IssueField.SUMMARY));
+
+        assertThat(ids(found), is("TP-1,TP-3"));
+        assertThat(found.get(0).getState(), is("Done"));
+        assertThat(found.get(1).getState(), is("Planned"));
+        assertThat(found.get(1).getSummary(), is("Update the documentation"));
+    }
+
+    @Test
+    public void testGetIssuesByIdOneAtATimeWhenRejected() throws Exception {
+        server.setJsonApi(client instanceof ApiIssueClient);
+        rejectedId = "TP-9";
+
+        Map<String, Issue> found = server.getIssues(user, Arrays.asList("TP-3", "TP-9", "TP-1"), null, EnumSet.of(IssueField.STATE));
+
+        assertThat(found.keySet().toString(), is("[TP-3, TP-1]"));
+        assertThat(found.get("TP-1").getState(), is("Fixed"));
+        // The rejected search, then each issue.
+        assertThat(requests.get(), is(4));
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        assertThat(ids(client.search(user, "project: TP", 0, 10)), is("TP-1,TP-2,TP-3"));
+        assertThat(ids(client.search(user, "State: Open", 0, 10)), is("TP-2,TP-3"));
+    }
+
+    @Test
+    public void testSearchPages() throws Exception {
+        assertThat(ids(client.search(user, "project: TP", 0, 2)), is("TP-1,TP-2"));
+        assertThat(ids(client.search(user, "project: TP", 2, 2)), is("TP-3"));
+        assertThat(ids(client.search(user, "project: TP", 3, 2)), is(""));
+    }
+
+    private void addIssue(String id, String state, String stage, String summary, String description, String resolved) {
+        Map<String, String> fields = new LinkedHashMap<String, String>();
+        fields.put("State", state);
+        fields.put("Stage", stage);
+        fields.put("summary", summary);
+        fields.put("description", description);
+        fields.put("resolved", resolved);
+        issues.put(id, fields);
+    }
+
+    private List<String> find(String query) {
+        List<String> found = new ArrayList<String>();
+        for (Map.Entry<String, Map<String, String>> issue : issues.entrySet()) {
+            if (query.equals("project: TP") || query.equals("State: " + issue.getValue().get("State"))
+                    || query.startsWith("issue id: ") && Arrays.asList(query.substring("issue id: ".length()).split(", ")).contains(issue.getKey())) {
+                found.add(issue.getKey());
+            }
+        }
+        return found;
+    }
+
+    private String restIssue(String id) {
+        Map<String, String> fields = issues.get(id);
+        if (fields == null) {
+            return null;
+        }
+        StringBuilder xml = new StringBuilder("<issue id=\"").append(id).append("\">");
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (field.getValue() != null) {
+                xml.append("<field name=\"").append(field.getKey()).append("\"><value>").append(field.getValue()).append("</value></field>");
+            }
+        }
+        return xml.append("</issue>").toString();
+    }
+
+    private String restSearch(String filter, int after, int max) {
+        StringBuilder xml = new StringBuilder("<issueCompacts>");
+        List<String> found = find(filter);
+        for (int i = after; i < Math.min(found.size(), after + max); i++) {
+            xml.append(restIssue(found.get(i)));
+        }
+        return xml.append("</issueCompacts>").toString();
+    }
+
+    private String apiIssue(String id) {
+        Map<String, String> fields = issues.get(id);
+        if (fields == null) {
+            return null;
+        }
+        return "{\"idReadable\":\"" + id + "\",\"summary\":" + quote(fields.get("summary"))
+                + ",\"wikifiedDescription\":" + quote(fields.get("description"))
+                + ",\"resolved\":" + fields.get("resolved")
+                + ",\"customFields\":[{\"name\":\"State\",\"value\":{\"name\":" + quote(fields.get("State")) + "}},"
+                + "{\"name\":\"Stage\",\"value\":" + (fields.get("Stage") == null ? "null" : "{\"name\":" + quote(fields.get("Stage")) + "}") + "}]}";
+    }
+
+    private String apiSearch(String query, int skip, int top) {
+        StringBuilder json = new StringBuilder("[");
+        List<String> found = find(query);
+        for (int i = skip; i < Math.min(found.size(), skip + top); i++) {
+            if (i > skip) {
+                json.append(',');
+            }
+            json.append(apiIssue(found.get(i)));
+        }
+        return json.append("]").toString();
+    }
+
+    private static String quote(String value) {
+        return value == null ? "null" : "\"" + value + "\"";
+    }
+
+    protected String parameter(String name) throws IOException {
+        if (lastQuery == null) {
+            return null;
+        }
+        for (String parameter : lastQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && URLDecoder.decode(parameter.substring(0, equals), "UTF-8").equals(name)) {
+                return URLDecoder.decode(parameter.substring(equals + 1), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    private static String ids(List<Issue> issues) {
+        StringBuilder ids = new StringBuilder();
+        for (Issue issue : issues) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(issue.getId());
+        }
+        return ids.toString();
+    }
+}
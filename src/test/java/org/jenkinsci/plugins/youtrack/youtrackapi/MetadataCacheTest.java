@@ -0,0 +1,173 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class MetadataCacheTest {
+    private final RequestExecutor executor = new RequestExecutor("test");
+
+    @Test
+    public void testReadsOnceWithinTtl() {
+        MetadataCache cache = new MetadataCache(60000, executor);
+        Counter loader = new Counter();
+
+        assertThat(cache.get("projects", loader), is("value 1"));
+        assertThat(cache.get("projects", loader), is("value 1"));
+        assertThat(loader.calls.get(), is(1));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getRefreshes(), is(0L));
+    }
+
+    @Test
+    public void testServesStaleWhileRefreshing() throws Exception {
+        MetadataCache cache = new MetadataCache(0, executor);
+        final CountDownLatch refreshing = new CountDownLatch(1);
+        final CountDownLatch refreshed = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        Supplier<String> loader = new Supplier<String>() {
+            @Override
+            public String get() {
+                int call = calls.incrementAndGet();
+                if (call > 1) {
+                    try {
+                        refreshing.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    refreshed.countDown();
+                }
+                return "value " + call;
+            }
+        };
+
+        assertThat(cache.get("fields", loader), is("value 1"));
+        assertThat(cache.get("fields", loader), is("value 1"));
+        // Only one refresh runs at a time.
+        assertThat(cache.get("fields", loader), is("value 1"));
+        assertThat(cache.getRefreshes(), is(1L));
+        assertThat(cache.getStaleHits(), is(2L));
+
+        refreshing.countDown();
+        assertThat(refreshed.await(10, TimeUnit.SECONDS), is(true));
+        waitForRefreshes(cache, 1);
+        assertThat(cache.get("fields", loader), is("value 2"));
+    }
+
+    @Test
+    public void testKeepsValueWhenRefreshFails() throws Exception {
+        MetadataCache cache = new MetadataCache(0, executor);
+        final AtomicInteger calls = new AtomicInteger();
+        Supplier<List<String>> loader = new Supplier<List<String>>() {
+            @Override
+            public List<String> get() {
+                return calls.incrementAndGet() == 1 ? Collections.singletonList("TP") : Collections.<String>emptyList();
+            }
+        };
+
+        assertThat(cache.get("projects", loader), is(Collections.singletonList("TP")));
+        assertThat(cache.get("projects", loader), is(Collections.singletonList("TP")));
+        waitForRefreshes(cache, 1);
+        assertThat(cache.get("projects", loader), is(Collections.singletonList("TP")));
+        assertThat(cache.getSize(), is(1));
+    }
+
+    @Test
+    public void testDoesNotKeepFailedReads() {
+        MetadataCache cache = new MetadataCache(60000, executor);
+        Supplier<String> loader = new Supplier<String>() {
+            @Override
+            public String get() {
+                return null;
+            }
+        };
+
+        assertThat(cache.get("groups", loader), nullValue());
+        assertThat(cache.getSize(), is(0));
+    }
+
+    @Test
+    public void testDropsLeastRecentlyUsed() {
+        MetadataCache cache = new MetadataCache(60000, 2, executor);
+        Counter loader = new Counter();
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("a", loader);
+        cache.get("c", loader);
+
+        assertThat(cache.getSize(), is(2));
+        assertThat(cache.get("a", loader), is("value 1"));
+        assertThat(cache.get("b", loader), is("value 4"));
+    }
+
+    @Test
+    public void testGetNowReadsInBackground() throws Exception {
+        MetadataCache cache = new MetadataCache(60000, executor);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        Supplier<String> loader = new Supplier<String>() {
+            @Override
+            public String get() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "value " + calls.incrementAndGet();
+            }
+        };
+
+        assertThat(cache.getNow("projects", loader), nullValue());
+        // Only one read runs at a time.
+        assertThat(cache.getNow("projects", loader), nullValue());
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.getSize() == 0) {
+            assertThat(System.currentTimeMillis() < deadline, is(true));
+            Thread.sleep(10);
+        }
+        assertThat(cache.getNow("projects", loader), is("value 1"));
+        assertThat(calls.get(), is(1));
+    }
+
+    @Test
+    public void testClear() {
+        MetadataCache cache = new MetadataCache(60000, executor);
+        Counter loader = new Counter();
+        cache.get("projects", loader);
+        cache.clear();
+
+        assertThat(cache.get("projects", loader), is("value 2"));
+    }
+
+    /**
+     * Waits until the refreshes started so far have replaced or kept their entries.
+     */
+    private void waitForRefreshes(MetadataCache cache, long refreshes) throws InterruptedException {
+        assertThat(cache.getRefreshes(), is(refreshes));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.getActive() > 0 || executor.getQueued() > 0) {
+            assertThat(System.currentTimeMillis() < deadline, is(true));
+            Thread.sleep(10);
+        }
+    }
+
+    private static class Counter implements Supplier<String> {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String get() {
+            return "value " + calls.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class RequestExecutorTest {
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        RequestExecutor executor = new RequestExecutor("test");
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < RequestExecutor.THREADS * 3; i++) {
+            final int number = i;
+            futures.add(executor.submit(new Supplier<Integer>() {
+                @Override
+                public Integer get() {
+                    int now = running.incrementAndGet();
+                    synchronized (maxRunning) {
+                        if (now > maxRunning.get()) {
+                            maxRunning.set(now);
+                        }
+                    }
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    return number;
+                }
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertThat(futures.get(5).get(), is(5));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(RequestExecutor.THREADS));
+    }
+
+    @Test
+    public void testNestedRequestRunsOnPoolThread() throws Exception {
+        final RequestExecutor executor = new RequestExecutor("test");
+        CompletableFuture<String> outer = executor.submit(new Supplier<String>() {
+            @Override
+            public String get() {
+                final Thread outerThread = Thread.currentThread();
+                return executor.submit(new Supplier<String>() {
+                    @Override
+                    public String get() {
+                        return Thread.currentThread() == outerThread ? "same" : "other";
+                    }
+                }).join();
+            }
+        });
+
+        assertThat(outer.get(10, TimeUnit.SECONDS), is("same"));
+    }
+}
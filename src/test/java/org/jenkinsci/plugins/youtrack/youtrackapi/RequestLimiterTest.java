@@ -0,0 +1,108 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RequestLimiterTest {
+
+    @Test
+    public void testMaxInFlight() throws Exception {
+        final RequestLimiter limiter = new RequestLimiter(2, 0);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 6; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        limiter.acquire(10000);
+                        try {
+                            int now = running.incrementAndGet();
+                            synchronized (maxRunning) {
+                                if (now > maxRunning.get()) {
+                                    maxRunning.set(now);
+                                }
+                            }
+                            Thread.sleep(50);
+                            running.decrementAndGet();
+                        } finally {
+                            limiter.release();
+                        }
+                    } catch (InterruptedIOException | InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+        assertThat(limiter.getRequests(), is(6L));
+        assertThat(limiter.getWaited(), greaterThan(0L));
+        assertThat(limiter.getMaxWait(), greaterThanOrEqualTo(40L));
+        assertThat(limiter.getInFlight(), is(0));
+    }
+
+    @Test
+    public void testNestedRequestDoesNotWait() throws Exception {
+        RequestLimiter limiter = new RequestLimiter(1, 0);
+        assertThat(limiter.acquire(100), is(true));
+        assertThat(limiter.acquire(100), is(false));
+        limiter.release();
+        assertThat(limiter.getInFlight(), is(0));
+    }
+
+    @Test
+    public void testTimesOutWaitingForSlot() throws Exception {
+        final RequestLimiter limiter = new RequestLimiter(1, 0);
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    limiter.acquire(100);
+                    Thread.sleep(1000);
+                    limiter.release();
+                } catch (InterruptedIOException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        holder.start();
+        Thread.sleep(100);
+        try {
+            limiter.acquire(50);
+            fail("Expected to time out");
+        } catch (InterruptedIOException e) {
+            assertThat(limiter.getInFlight(), is(1));
+        }
+        holder.join();
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        RequestLimiter limiter = new RequestLimiter(0, 10);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 15; i++) {
+            limiter.acquire(10000);
+            limiter.release();
+        }
+        // The first 10 requests are a burst, the following 5 are started 100 ms apart.
+        assertThat(System.currentTimeMillis() - start, greaterThanOrEqualTo(400L));
+    }
+}
@@ -0,0 +1,37 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RestIssueClientTest extends IssueClientContractTest {
+    @Override
+    protected IssueClient createClient(YouTrackServer server) {
+        return new RestIssueClient(server);
+    }
+
+    @Test
+    public void testWikifiesOnlyWantedDescription() throws Exception {
+        testGetIssue();
+        assertThat(parameter("wikifyDescription"), is("true"));
+
+        testGetIssueState();
+        assertThat(parameter("wikifyDescription"), nullValue());
+    }
+
+    @Test
+    public void testGetIssuesByIdThroughServer() throws Exception {
+        Map<String, Issue> issues = server.getIssues(null, Arrays.asList("TP-2", "TP-4", "TP-1", "TP-2"), null, EnumSet.of(IssueField.STATE));
+
+        assertThat(issues.keySet().toString(), is("[TP-2, TP-1]"));
+        assertThat(issues.get("TP-1").getState(), is("Fixed"));
+        assertThat(parameter("filter"), is("issue id: TP-2, TP-4, TP-1"));
+        assertThat(parameter("with"), is("State"));
+    }
+}
@@ -0,0 +1,78 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SaxParserPoolTest {
+
+    @Test
+    public void testParsersAreReused() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Project.ProjectListHandler handler = new Project.ProjectListHandler();
+            SaxParserPool.parse(stream("<projects><project shortName=\"TP\"/></projects>"), handler);
+            assertThat(handler.getProjects().size(), is(1));
+        }
+        assertThat(SaxParserPool.getIdle(), greaterThan(0));
+        assertThat(SaxParserPool.getIdle(), lessThanOrEqualTo(SaxParserPool.MAX_IDLE));
+    }
+
+    @Test
+    public void testParserIsReusableAfterFailure() throws Exception {
+        try {
+            SaxParserPool.parse(stream("<projects><project"), new Project.ProjectListHandler());
+            fail("Expected malformed xml to fail");
+        } catch (SAXException e) {
+            // expected
+        }
+        Project.ProjectListHandler handler = new Project.ProjectListHandler();
+        SaxParserPool.parse(stream("<projects><project shortName=\"TP\"/></projects>"), handler);
+        assertThat(handler.getProjects().get(0).getShortName(), is("TP"));
+    }
+
+    @Test
+    public void testConcurrentParsing() throws Exception {
+        final AtomicInteger parsed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            final String shortName = "P" + i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 100; j++) {
+                            Project.ProjectListHandler handler = new Project.ProjectListHandler();
+                            SaxParserPool.parse(stream("<projects><project shortName=\"" + shortName + "\"/></projects>"), handler);
+                            if (handler.getProjects().size() == 1 && handler.getProjects().get(0).getShortName().equals(shortName)) {
+                                parsed.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(parsed.get(), is(800));
+    }
+
+    private static ByteArrayInputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
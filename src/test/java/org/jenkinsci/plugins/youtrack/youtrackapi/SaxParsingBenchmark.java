@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares creating a SAX parser for every response, as the plugin used to, with the pooled parsers of
+ * {@link SaxParserPool}, for typical issue, project list and field list responses. Issues are also decoded with the
+ * pull parser of {@link Issue.IssueDecoder}, reading all fields and only the state.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.jenkinsci.plugins.youtrack.youtrackapi.SaxParsingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaxParsingBenchmark {
+    private byte[] issue;
+    private byte[] projects;
+    private byte[] fields;
+
+    @Setup
+    public void setUp() {
+        StringBuilder xml = new StringBuilder("<issue id=\"TP-1\">");
+        xml.append("<field name=\"summary\"><value>Fix the build</value></field>");
+        xml.append("<field name=\"description\"><value>The build is broken since the last merge</value></field>");
+        xml.append("<field name=\"State\"><value>Fixed</value></field>");
+        xml.append("<field name=\"resolved\"><value>1500000000000</value></field>");
+        for (int i = 0; i < 5; i++) {
+            xml.append("<comment id=\"").append(i).append("\" author=\"user\" text=\"Looked into it\"/>");
+        }
+        issue = xml.append("</issue>").toString().getBytes(StandardCharsets.UTF_8);
+
+        xml = new StringBuilder("<projects>");
+        for (int i = 0; i < 50; i++) {
+            xml.append("<project name=\"Project ").append(i).append("\" shortName=\"P").append(i).append("\"/>");
+        }
+        projects = xml.append("</projects>").toString().getBytes(StandardCharsets.UTF_8);
+
+        xml = new StringBuilder("<customFieldPrototypes>");
+        for (int i = 0; i < 30; i++) {
+            xml.append("<customFieldPrototype name=\"Field ").append(i).append("\" url=\"http://localhost/rest/admin/customfield/field/Field").append(i).append("\"/>");
+        }
+        fields = xml.append("</customFieldPrototypes>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object issueNewParser() throws Exception {
+        return parseWithNewParser(issue, new Issue.IssueHandler("State")).getIssue();
+    }
+
+    @Benchmark
+    public Object issuePooledParser() throws Exception {
+        return parseWithPool(issue, new Issue.IssueHandler("State")).getIssue();
+    }
+
+    @Benchmark
+    public Object issueDecoder() throws Exception {
+        return new Issue.IssueDecoder("State", IssueField.ALL).parse(new ByteArrayInputStream(issue));
+    }
+
+    @Benchmark
+    public Object issueStateDecoder() throws Exception {
+        return new Issue.IssueDecoder("State", EnumSet.of(IssueField.STATE)).parse(new ByteArrayInputStream(issue));
+    }
+
+    @Benchmark
+    public Object projectsNewParser() throws Exception {
+        return parseWithNewParser(projects, new Project.ProjectListHandler()).getProjects();
+    }
+
+    @Benchmark
+    public Object projectsPooledParser() throws Exception {
+        return parseWithPool(projects, new Project.ProjectListHandler()).getProjects();
+    }
+
+    @Benchmark
+    public Object fieldsNewParser() throws Exception {
+        return parseWithNewParser(fields, new Field.FieldListHandler()).getFields();
+    }
+
+    @Benchmark
+    public Object fieldsPooledParser() throws Exception {
+        return parseWithPool(fields, new Field.FieldListHandler()).getFields();
+    }
+
+    private static <H extends DefaultHandler> H parseWithNewParser(byte[] xml, H handler) throws Exception {
+        SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+        SAXParser saxParser = saxParserFactory.newSAXParser();
+        saxParser.parse(new ByteArrayInputStream(xml), handler);
+        return handler;
+    }
+
+    private static <H extends DefaultHandler> H parseWithPool(byte[] xml, H handler) throws Exception {
+        SaxParserPool.parse(new ByteArrayInputStream(xml), handler);
+        return handler;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(SaxParsingBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
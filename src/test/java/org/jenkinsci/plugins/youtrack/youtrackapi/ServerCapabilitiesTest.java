@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ServerCapabilitiesTest {
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private YouTrackServer server;
+    private volatile String config;
+    private volatile String legacyVersion;
+
+    @Before
+    public void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/api/config", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, config);
+            }
+        });
+        stub.createContext("/rest/workflow/version", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, legacyVersion);
+            }
+        });
+        stub.start();
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        server = new YouTrackServer(url, transport);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    public void testProbesJsonApi() {
+        config = "{\"version\":\"2019.2.53938\",\"$type\":\"AppConfig\"}";
+
+        ServerCapabilities capabilities = server.probeCapabilities();
+
+        assertThat(capabilities.getVersion(), is("2019.2.53938"));
+        assertThat(capabilities.isJsonApi(), is(true));
+        assertThat(capabilities.isBatchCommands(), is(true));
+        assertThat(capabilities.isTokenAuthentication(), is(true));
+        assertThat(capabilities.getFeatures(), is("JSON API, batch commands, token authentication"));
+    }
+
+    @Test
+    public void testFallsBackToLegacyVersion() {
+        legacyVersion = "<version>6.5.17057</version>";
+
+        ServerCapabilities capabilities = server.probeCapabilities();
+
+        assertThat(capabilities.getVersion(), is("6.5.17057"));
+        assertThat(capabilities.isJsonApi(), is(false));
+        assertThat(capabilities.isBatchCommands(), is(false));
+        assertThat(capabilities.isTokenAuthentication(), is(false));
+    }
+
+    @Test
+    public void testUnknownServer() {
+        assertThat(server.probeCapabilities(), nullValue());
+    }
+
+    @Test
+    public void testMajorVersion() {
+        assertThat(new ServerCapabilities("2017.1.1234", false, false, 0).getMajorVersion(), is(2017));
+        assertThat(new ServerCapabilities("2018", false, false, 0).getMajorVersion(), is(2018));
+        assertThat(new ServerCapabilities("unknown", false, false, 0).getMajorVersion(), is(0));
+        assertThat(new ServerCapabilities(null, false, false, 0).getMajorVersion(), is(0));
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class SessionManagerTest {
+
+    private static User loggedIn(String cookie) {
+        User user = new User();
+        user.setUsername("user");
+        user.setLoggedIn(true);
+        user.getCookies().add(cookie);
+        return user;
+    }
+
+    @Test
+    public void testSessionIsReused() {
+        YouTrackServer server = mock(YouTrackServer.class);
+        User user = loggedIn("session=1");
+        when(server.login("user", "password")).thenReturn(user);
+
+        SessionManager sessionManager = new SessionManager("user", "password");
+        assertThat(sessionManager.getUser(server), sameInstance(user));
+        assertThat(sessionManager.getUser(server), sameInstance(user));
+
+        verify(server, times(1)).login("user", "password");
+        assertThat(sessionManager.getMisses(), is(1L));
+        assertThat(sessionManager.getHits(), is(1L));
+    }
+
+    @Test
+    public void testFailedLoginIsNotCached() {
+        YouTrackServer server = mock(YouTrackServer.class);
+        when(server.login("user", "password")).thenReturn(null);
+
+        SessionManager sessionManager = new SessionManager("user", "password");
+        sessionManager.getUser(server);
+        sessionManager.getUser(server);
+
+        verify(server, times(2)).login("user", "password");
+        assertThat(sessionManager.getMisses(), is(2L));
+    }
+
+    @Test
+    public void testRefreshReplacesCookiesOnce() {
+        YouTrackServer server = mock(YouTrackServer.class);
+        User user = loggedIn("session=1");
+        when(server.login("user", "password")).thenReturn(user, loggedIn("session=2"));
+
+        SessionManager sessionManager = new SessionManager("user", "password");
+        User sessionUser = sessionManager.getUser(server);
+        List<String> rejectedCookies = sessionUser.getCookies();
+
+        assertThat(sessionManager.refresh(server, sessionUser, rejectedCookies), is(true));
+        assertThat(sessionUser.getCookies().get(0), is("session=2"));
+        // A second request that was rejected with the old cookies must not log in again.
+        assertThat(sessionManager.refresh(server, sessionUser, rejectedCookies), is(true));
+
+        verify(server, times(2)).login("user", "password");
+        assertThat(sessionManager.getRefreshes(), is(1L));
+    }
+}
@@ -0,0 +1,265 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareResult() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final CountDownLatch leaderStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger made = new AtomicInteger();
+        final Object result = new Object();
+        final SingleFlight.Call<Object> call = new SingleFlight.Call<Object>() {
+            @Override
+            public Object call() throws Exception {
+                made.incrementAndGet();
+                leaderStarted.countDown();
+                release.await();
+                return result;
+            }
+        };
+        final List<Object> results = new ArrayList<Object>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 5; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Object value = singleFlight.execute("key", call);
+                        synchronized (results) {
+                            results.add(value);
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+            if (i == 0) {
+                leaderStarted.await();
+            }
+        }
+        while (singleFlight.getCalls() < 5) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(made.get(), is(1));
+        assertThat(singleFlight.getSaved(), is(4L));
+        assertThat(results.size(), is(5));
+        for (Object value : results) {
+            assertThat(value, sameInstance(result));
+        }
+    }
+
+    @Test
+    public void testFinishedCallIsNotReused() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        final AtomicInteger made = new AtomicInteger();
+        SingleFlight.Call<Integer> call = new SingleFlight.Call<Integer>() {
+            @Override
+            public Integer call() {
+                return made.incrementAndGet();
+            }
+        };
+        assertThat(singleFlight.execute("key", call), is(1));
+        assertThat(singleFlight.execute("key", call), is(2));
+        assertThat(singleFlight.getSaved(), is(0L));
+    }
+
+    @Test
+    public void testCallIsMadeAgainWhenCallInFlightTakesTooLong() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final CountDownLatch leaderStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    singleFlight.execute("key", new SingleFlight.Call<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            leaderStarted.countDown();
+                            release.await();
+                            return "slow";
+                        }
+                    });
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        leader.start();
+        leaderStarted.await();
+        try {
+            String result = singleFlight.execute("key", new SingleFlight.Call<String>() {
+                @Override
+                public String call() {
+                    return "direct";
+                }
+            }, 50);
+
+            assertThat(result, is("direct"));
+            assertThat(singleFlight.getTimedOut(), is(1L));
+            assertThat(singleFlight.getSaved(), is(0L));
+        } finally {
+            release.countDown();
+            leader.join();
+        }
+    }
+
+    @Test
+    public void testFailureIsRethrown() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        try {
+            singleFlight.execute("key", new SingleFlight.Call<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    throw new IOException("failed");
+                }
+            });
+            fail("Expected the failure of the call");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("failed"));
+        }
+    }
+
+    @Test
+    public void testServerMergesIdenticalReads() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        HttpServer stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/rest/project/all", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "<projects><project shortName=\"TP\"/></projects>".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        stub.start();
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        YouTrackTransport transport = new YouTrackTransport(url, null);
+        final YouTrackServer server = new YouTrackServer(url, transport);
+        final User user = new SessionManager("user", null, "perm:token").getUser(null);
+        final AtomicInteger found = new AtomicInteger();
+        try {
+            List<Thread> builds = new ArrayList<Thread>();
+            for (int i = 0; i < 8; i++) {
+                Thread build = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (server.getProjects(user).size() == 1) {
+                            found.incrementAndGet();
+                        }
+                    }
+                });
+                build.start();
+                builds.add(build);
+            }
+            for (Thread build : builds) {
+                build.join();
+            }
+        } finally {
+            transport.shutdown();
+            stub.stop(0);
+        }
+
+        assertThat(found.get(), is(8));
+        assertThat(requests.get(), lessThan(8));
+        assertThat(transport.getSingleFlight().getSaved(), greaterThan(0L));
+    }
+
+    @Test
+    public void testMergedReadsAreParsedByEachCaller() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        HttpServer stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/rest/project/all", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "<projects><project shortName=\"TP\"/></projects>".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        stub.start();
+        final String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        YouTrackTransport transport = new YouTrackTransport(url, null);
+        final YouTrackServer server = new YouTrackServer(url, transport);
+        final User user = new SessionManager("user", null, "perm:token").getUser(null);
+        final AtomicInteger ownHandlers = new AtomicInteger();
+        try {
+            List<Thread> builds = new ArrayList<Thread>();
+            for (int i = 0; i < 8; i++) {
+                Thread build = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Project.ProjectListHandler handler = new Project.ProjectListHandler();
+                            Project.ProjectListHandler parsed = server.get(url + "/rest/project/all", user, handler, null);
+                            if (parsed == handler && handler.getProjects().size() == 1) {
+                                ownHandlers.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                });
+                build.start();
+                builds.add(build);
+            }
+            for (Thread build : builds) {
+                build.join();
+            }
+        } finally {
+            transport.shutdown();
+            stub.stop(0);
+        }
+
+        assertThat(ownHandlers.get(), is(8));
+        assertThat(requests.get(), lessThan(8));
+    }
+}
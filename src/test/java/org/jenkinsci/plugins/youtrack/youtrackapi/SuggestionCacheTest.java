@@ -0,0 +1,170 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SuggestionCacheTest {
+    private final RequestExecutor executor = new RequestExecutor("test");
+
+    @Test
+    public void testKeepsSuggestions() {
+        SuggestionCache cache = new SuggestionCache(executor);
+        Loader loader = new Loader("State", "Subsystem");
+
+        cache.get(null, "s", loader);
+        List<Suggestion> suggestions = cache.get(null, "s", loader);
+
+        assertThat(options(suggestions), is(Arrays.asList("State", "Subsystem")));
+        assertThat(loader.calls.get(), is(1));
+        assertThat(cache.getHits(), is(1L));
+    }
+
+    @Test
+    public void testDerivesFromPrefix() {
+        SuggestionCache cache = new SuggestionCache(executor);
+        Loader loader = new Loader("State", "Subsystem", "Assignee");
+
+        cache.get(null, "s", loader);
+        List<Suggestion> suggestions = cache.get(null, "st", loader);
+
+        assertThat(options(suggestions), is(Arrays.asList("State", "Subsystem")));
+        assertThat(suggestions.get(1).getMatchStart(), is(5));
+        assertThat(suggestions.get(1).getCompletionEnd(), is(2));
+        assertThat(loader.calls.get(), is(1));
+        assertThat(cache.getDerived(), is(1L));
+    }
+
+    @Test
+    public void testAsksServerForNextWord() {
+        SuggestionCache cache = new SuggestionCache(executor);
+        Loader loader = new Loader("State");
+
+        cache.get(null, "s", loader);
+        cache.get(null, "s:", loader);
+
+        assertThat(loader.calls.get(), is(2));
+    }
+
+    @Test
+    public void testDoesNotDeriveFromCutOffSuggestions() {
+        String[] options = new String[SuggestionCache.OPTIONS_LIMIT];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = "s" + i;
+        }
+        SuggestionCache cache = new SuggestionCache(executor);
+        Loader loader = new Loader(options);
+
+        cache.get(null, "s", loader);
+        cache.get(null, "s1", loader);
+
+        assertThat(loader.calls.get(), is(2));
+    }
+
+    @Test
+    public void testExpires() {
+        SuggestionCache cache = new SuggestionCache(executor, 0, 10);
+        Loader loader = new Loader("State");
+
+        cache.get(null, "s", loader);
+        cache.get(null, "s", loader);
+
+        assertThat(loader.calls.get(), is(2));
+    }
+
+    @Test
+    public void testNewerQuerySupersedesOlder() throws Exception {
+        final SuggestionCache cache = new SuggestionCache(executor);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Loader loader = new Loader("State") {
+            @Override
+            public List<Suggestion> apply(String query) {
+                if (query.equals("a")) {
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.apply(query);
+            }
+        };
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Suggestion>> older = callers.submit(new Callable<List<Suggestion>>() {
+                @Override
+                public List<Suggestion> call() {
+                    return cache.get("session", "a", loader);
+                }
+            });
+            assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+
+            List<Suggestion> newer = cache.get("session", "a:", loader);
+
+            // The older caller stops waiting although its request has not finished.
+            assertThat(older.get(10, TimeUnit.SECONDS), nullValue());
+            assertThat(options(newer), is(Arrays.asList("State")));
+            assertThat(cache.getSuperseded(), is(1L));
+        } finally {
+            release.countDown();
+            callers.shutdown();
+        }
+    }
+
+    private static List<String> options(List<Suggestion> suggestions) {
+        List<String> options = new ArrayList<String>();
+        for (Suggestion suggestion : suggestions) {
+            options.add(suggestion.getOption());
+        }
+        return options;
+    }
+
+    /**
+     * Suggests the options containing the last word of the query.
+     */
+    private static class Loader implements Function<String, List<Suggestion>> {
+        final AtomicInteger calls = new AtomicInteger();
+        private final List<String> options;
+
+        Loader(String... options) {
+            this.options = Arrays.asList(options);
+        }
+
+        @Override
+        public List<Suggestion> apply(String query) {
+            calls.incrementAndGet();
+            int start = query.lastIndexOf(':') + 1;
+            String word = query.substring(start).toLowerCase();
+            List<Suggestion> suggestions = new ArrayList<Suggestion>();
+            for (String option : options) {
+                int match = option.toLowerCase().indexOf(word);
+                if (match >= 0 && suggestions.size() < SuggestionCache.OPTIONS_LIMIT) {
+                    Suggestion suggestion = new Suggestion();
+                    suggestion.setOption(option);
+                    suggestion.setCompletionStart(start);
+                    suggestion.setCompletionEnd(query.length());
+                    suggestion.setMatchStart(match);
+                    suggestion.setMatchEnd(match + word.length());
+                    suggestions.add(suggestion);
+                }
+            }
+            return suggestions;
+        }
+    }
+}
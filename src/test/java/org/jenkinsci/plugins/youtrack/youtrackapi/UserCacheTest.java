@@ -0,0 +1,170 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntBinaryOperator;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class UserCacheTest {
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile long lookupDelay;
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private YouTrackServer server;
+    private User user;
+
+    @Before
+    public void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/rest/admin/user", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                lookups.incrementAndGet();
+                int running = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(running, new IntBinaryOperator() {
+                    @Override
+                    public int applyAsInt(int left, int right) {
+                        return Math.max(left, right);
+                    }
+                });
+                try {
+                    Thread.sleep(lookupDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                String query = exchange.getRequestURI().getQuery();
+                if (query.contains("broken")) {
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+                String users = query.contains("unknown") ? "<userRefs/>" : "<userRefs><user login=\"" + query.substring(2, query.indexOf('@')) + "\"/></userRefs>";
+                byte[] body = users.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.start();
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        server = new YouTrackServer(url, transport);
+        server.setUserCache(new UserCache());
+        user = new SessionManager("user", null, "perm:token").getUser(null);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    public void testKeepsLogin() {
+        assertThat(server.getUserByEmail(user, "alice@example.com").getUsername(), is("alice"));
+        assertThat(server.getUserByEmail(user, " Alice@Example.com").getUsername(), is("alice"));
+
+        assertThat(lookups.get(), is(1));
+    }
+
+    @Test
+    public void testKeepsUnknownAddress() {
+        assertThat(server.getUserByEmail(user, "unknown@example.com"), nullValue());
+        assertThat(server.getUserByEmail(user, "unknown@example.com"), nullValue());
+
+        assertThat(lookups.get(), is(1));
+    }
+
+    @Test
+    public void testDoesNotKeepFailedLookup() {
+        assertThat(server.getUserByEmail(user, "broken@example.com"), nullValue());
+        assertThat(server.getUserByEmail(user, "broken@example.com"), nullValue());
+
+        assertThat(lookups.get(), is(2));
+    }
+
+    @Test
+    public void testExpires() {
+        server.setUserCache(new UserCache(0, 0, 10));
+
+        server.getUserByEmail(user, "alice@example.com");
+        server.getUserByEmail(user, "alice@example.com");
+
+        assertThat(lookups.get(), is(2));
+    }
+
+    @Test
+    public void testLooksUpManyOnce() {
+        Map<String, User> users = server.getUsersByEmail(user, Arrays.asList("alice@example.com", "bob@example.com", "alice@example.com", "unknown@example.com"));
+
+        assertThat(users.size(), is(2));
+        assertThat(users.get("bob@example.com").getUsername(), is("bob"));
+        assertThat(lookups.get(), is(3));
+
+        // Commands for the same authors are answered from the cache.
+        assertThat(server.getUserByEmail(user, "alice@example.com").getUsername(), is("alice"));
+        assertThat(server.getUserByEmail(user, "unknown@example.com"), nullValue());
+        assertThat(lookups.get(), is(3));
+    }
+
+    @Test
+    public void testLooksUpUnknownAddressesOnce() {
+        List<String> addresses = Arrays.asList("unknown1@example.com", "unknown2@example.com", "unknown1@example.com");
+
+        assertThat(server.getUsersByEmail(user, addresses).isEmpty(), is(true));
+        assertThat(server.getUsersByEmail(user, addresses).isEmpty(), is(true));
+        assertThat(server.getUserByEmail(user, "unknown2@example.com"), nullValue());
+
+        assertThat(lookups.get(), is(2));
+    }
+
+    @Test
+    public void testUnknownAddressExpiresFirst() {
+        server.setUserCache(new UserCache(60000, 0, 10));
+
+        server.getUsersByEmail(user, Arrays.asList("alice@example.com", "unknown@example.com"));
+        server.getUsersByEmail(user, Arrays.asList("alice@example.com", "unknown@example.com"));
+
+        assertThat(lookups.get(), is(3));
+    }
+
+    @Test
+    public void testLimitsParallelLookups() {
+        lookupDelay = 100;
+        List<String> addresses = new ArrayList<String>();
+        for (int i = 0; i < 3 * YouTrackServer.MAX_PARALLEL_USER_LOOKUPS; i++) {
+            addresses.add("user" + i + "@example.com");
+        }
+
+        Map<String, User> users = server.getUsersByEmail(user, addresses);
+
+        assertThat(users.size(), is(addresses.size()));
+        assertThat(lookups.get(), is(addresses.size()));
+        assertThat(maxInFlight.get(), lessThanOrEqualTo(YouTrackServer.MAX_PARALLEL_USER_LOOKUPS));
+    }
+}
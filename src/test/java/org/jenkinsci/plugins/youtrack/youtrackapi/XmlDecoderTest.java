@@ -0,0 +1,205 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class XmlDecoderTest {
+    private static final String ISSUE = "<issue id=\"TP-1\">"
+            + "<field name=\"summary\"><value>Fix the build</value></field>"
+            + "<field name=\"Fix versions\"><value>1.0</value><value>1.1</value></field>"
+            + "<field name=\"State\"><valueId>Fixed</valueId><value>Fixed</value></field>"
+            + "<field name=\"description\"><value><![CDATA[The <b>build</b>]]> is broken</value></field>"
+            + "<comment id=\"1\" author=\"user\"><replies><comment id=\"2\"/></replies></comment>"
+            + "<field name=\"resolved\"><value>1500000000000</value></field>"
+            + "</issue>";
+
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private YouTrackServer server;
+    private User user;
+    private volatile String users;
+    private volatile boolean chunked;
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<Integer>();
+
+    @Before
+    public void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/rest/admin/user", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, users);
+            }
+        });
+        stub.createContext("/rest/issue/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, ISSUE);
+            }
+        });
+        stub.start();
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        server = new YouTrackServer(url, transport);
+        user = new SessionManager("user", null, "perm:token").getUser(null);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    private void respond(HttpExchange exchange, String response) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        // A length of 0 sends the body chunked, without a Content-Length.
+        exchange.sendResponseHeaders(200, chunked ? 0 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    public void testDecodesAllFields() throws Exception {
+        Issue.IssueDecoder decoder = new Issue.IssueDecoder(null, IssueField.ALL);
+        Issue issue = decoder.parse(stream(ISSUE));
+
+        assertThat(issue.getId(), is("TP-1"));
+        assertThat(issue.getSummary(), is("Fix the build"));
+        assertThat(issue.getState(), is("Fixed"));
+        assertThat(issue.getDescription(), is("The <b>build</b> is broken"));
+        assertThat(issue.getResolved(), is("1500000000000"));
+        assertThat(decoder.isStoppedEarly(), is(false));
+    }
+
+    @Test
+    public void testDecodesOnlyWantedFields() throws Exception {
+        Issue issue = new Issue.IssueDecoder("State", EnumSet.of(IssueField.STATE)).parse(stream(ISSUE));
+
+        assertThat(issue.getState(), is("Fixed"));
+        assertThat(issue.getSummary(), nullValue());
+        assertThat(issue.getDescription(), nullValue());
+        assertThat(issue.getResolved(), nullValue());
+    }
+
+    @Test
+    public void testStopsAtEndOfIssue() throws Exception {
+        Issue.IssueDecoder decoder = new Issue.IssueDecoder("State", IssueField.ALL);
+        Issue issue = decoder.parse(stream("<issues>" + ISSUE + "<issue id=\"TP-2\"/></issues>"));
+
+        assertThat(issue.getId(), is("TP-1"));
+        assertThat(decoder.isStoppedEarly(), is(true));
+    }
+
+    @Test
+    public void testSearchSkipsIssueContent() throws Exception {
+        List<Issue> issues = new Issue.IssueSearchDecoder().parse(stream("<issueCompacts>" + ISSUE + "<issue id=\"TP-2\"/></issueCompacts>"));
+
+        assertThat(issues.size(), is(2));
+        assertThat(issues.get(0).getId(), is("TP-1"));
+        assertThat(issues.get(1).getId(), is("TP-2"));
+    }
+
+    @Test
+    public void testSingleIssueIsReadToEnd() throws Exception {
+        Issue.IssueDecoder decoder = new Issue.IssueDecoder("State", IssueField.ALL);
+        decoder.parse(stream("<issue id=\"TP-1\"/>"));
+
+        assertThat(decoder.isStoppedEarly(), is(false));
+    }
+
+    @Test
+    public void testUserStopsAtFirstUser() throws Exception {
+        User.UserRefDecoder decoder = new User.UserRefDecoder();
+        User found = decoder.parse(stream("<userRefs><user login=\"first\"/><user login=\"second\"/></userRefs>"));
+
+        assertThat(found.getUsername(), is("first"));
+        assertThat(decoder.isStoppedEarly(), is(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedResponse() throws Exception {
+        new Issue.IssueDecoder("State", IssueField.ALL).parse(stream("<issue id=\"TP-1\"><field>"));
+    }
+
+    @Test
+    public void testAbandonsLargeResponse() {
+        StringBuilder xml = new StringBuilder("<userRefs>");
+        for (int i = 0; i < 5000; i++) {
+            xml.append("<user login=\"user").append(i).append("\" url=\"http://localhost/rest/admin/user/user").append(i).append("\"/>");
+        }
+        users = xml.append("</userRefs>").toString();
+
+        assertThat(server.getUserByEmail(user, "user@example.com").getUsername(), is("user0"));
+        // The connection was discarded, the next request still succeeds on a new one.
+        assertThat(server.getUserByEmail(user, "user@example.com").getUsername(), is("user0"));
+    }
+
+    @Test
+    public void testReadsSmallResponseToEnd() {
+        users = "<userRefs><user login=\"first\"/><user login=\"second\"/></userRefs>";
+
+        assertThat(server.getUserByEmail(user, "first@example.com").getUsername(), is("first"));
+        assertThat(server.getUserByEmail(user, "first@example.com").getUsername(), is("first"));
+    }
+
+    @Test
+    public void testKeepsConnectionForChunkedIssue() {
+        chunked = true;
+
+        assertThat(server.getIssue(user, "TP-1", "State").getState(), is("Fixed"));
+        assertThat(server.getIssue(user, "TP-1", "State").getState(), is("Fixed"));
+
+        assertThat(clientPorts.size(), is(2));
+        assertThat(clientPorts.get(1), is(clientPorts.get(0)));
+    }
+
+    @Test
+    public void testKeepsConnectionForSmallChunkedResponse() {
+        chunked = true;
+        users = "<userRefs><user login=\"first\"/><user login=\"second\"/></userRefs>";
+
+        assertThat(server.getUserByEmail(user, "first@example.com").getUsername(), is("first"));
+        assertThat(server.getUserByEmail(user, "second@example.com").getUsername(), is("first"));
+
+        assertThat(clientPorts.size(), is(2));
+        assertThat(clientPorts.get(1), is(clientPorts.get(0)));
+    }
+
+    @Test
+    public void testAbandonsLargeChunkedResponse() {
+        chunked = true;
+        StringBuilder xml = new StringBuilder("<userRefs>");
+        for (int i = 0; i < 5000; i++) {
+            xml.append("<user login=\"user").append(i).append("\" url=\"http://localhost/rest/admin/user/user").append(i).append("\"/>");
+        }
+        users = xml.append("</userRefs>").toString();
+
+        assertThat(server.getUserByEmail(user, "first@example.com").getUsername(), is("user0"));
+        assertThat(server.getUserByEmail(user, "second@example.com").getUsername(), is("user0"));
+
+        assertThat(clientPorts.size(), is(2));
+        assertThat(clientPorts.get(1) == clientPorts.get(0).intValue(), is(false));
+    }
+
+    private static ByteArrayInputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,128 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests login with username and password, and permanent token authorization against a local stub server.
+ */
+public class YouTrackServerAuthenticationTest {
+    private static final String COOKIE = "YTJSESSIONID=session";
+    private static final String TOKEN = "perm:dXNlcg==.dGVzdA==.secret";
+
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private String url;
+    private final AtomicInteger logins = new AtomicInteger();
+    private volatile String lastAuthorization;
+
+    @Before
+    public void startStub() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/rest/user/login", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                logins.incrementAndGet();
+                exchange.getResponseHeaders().add("Set-Cookie", COOKIE);
+                respond(exchange, 200, "<login>ok</login>");
+            }
+        });
+        stub.createContext("/rest/project/all", new AuthorizedHandler("<projects><project shortName=\"TP\"/></projects>"));
+        stub.createContext("/rest/user/current", new AuthorizedHandler("<user login=\"user\"/>"));
+        stub.start();
+        url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+    }
+
+    @After
+    public void stopStub() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    public void testPasswordLogsInOnceAndSendsCookies() {
+        YouTrackServer server = new YouTrackServer(url, transport);
+        SessionManager sessionManager = new SessionManager("user", "password");
+        server.setSessionManager(sessionManager);
+
+        List<Project> projects = server.getProjects(sessionManager.getUser(server));
+        assertThat(projects.size(), is(1));
+        projects = server.getProjects(sessionManager.getUser(server));
+        assertThat(projects.get(0).getShortName(), is("TP"));
+
+        assertThat(logins.get(), is(1));
+        assertThat(lastAuthorization, nullValue());
+    }
+
+    @Test
+    public void testTokenSkipsLogin() {
+        YouTrackServer server = new YouTrackServer(url, transport);
+        SessionManager sessionManager = new SessionManager("user", null, TOKEN);
+        server.setSessionManager(sessionManager);
+
+        User user = sessionManager.getUser(server);
+        assertThat(user.isLoggedIn(), is(true));
+        assertThat(server.getProjects(user).get(0).getShortName(), is("TP"));
+        assertThat(server.getCurrentUser(user).getUsername(), is("user"));
+
+        assertThat(logins.get(), is(0));
+        assertThat(lastAuthorization, is("Bearer " + TOKEN));
+    }
+
+    @Test
+    public void testRejectedTokenDoesNotLogIn() {
+        YouTrackServer server = new YouTrackServer(url, transport);
+        SessionManager sessionManager = new SessionManager("user", "password", "perm:wrong");
+        server.setSessionManager(sessionManager);
+
+        assertThat(server.getCurrentUser(sessionManager.getUser(server)), nullValue());
+        assertThat(logins.get(), is(0));
+    }
+
+    /**
+     * Answers with the body if the request carries the session cookie or the token, 401 otherwise.
+     */
+    private class AuthorizedHandler implements HttpHandler {
+        private final String body;
+
+        AuthorizedHandler(String body) {
+            this.body = body;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            lastAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+            String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+            if (COOKIE.equals(cookie) || ("Bearer " + TOKEN).equals(lastAuthorization)) {
+                respond(exchange, 200, body);
+            } else {
+                respond(exchange, 401, "<error>Unauthorized</error>");
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
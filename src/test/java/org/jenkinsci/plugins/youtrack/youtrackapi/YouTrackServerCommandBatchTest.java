@@ -0,0 +1,244 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.youtrack.Command;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class YouTrackServerCommandBatchTest {
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private YouTrackServer server;
+    private User user;
+    /**
+     * The bodies of the requests to /api/commands.
+     */
+    private final List<JSONObject> batches = new CopyOnWriteArrayList<JSONObject>();
+    /**
+     * The issues commands were applied to one at a time through /rest.
+     */
+    private final List<String> single = new CopyOnWriteArrayList<String>();
+    /**
+     * Issues the stub rejects commands for.
+     */
+    private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/api/commands", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                JSONObject body = JSONObject.fromObject(read(exchange.getRequestBody()));
+                batches.add(body);
+                for (Object issue : body.getJSONArray("issues")) {
+                    if (rejected.contains(((JSONObject) issue).getString("idReadable"))) {
+                        respond(exchange, 400, "{\"error\":\"bad_request\"}");
+                        return;
+                    }
+                }
+                respond(exchange, 200, "{}");
+            }
+        });
+        stub.createContext("/rest/issue", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String issueId = exchange.getRequestURI().getPath().split("/")[3];
+                single.add(issueId);
+                if (rejected.contains(issueId)) {
+                    respond(exchange, 400, "<error>Unknown command</error>");
+                } else {
+                    respond(exchange, 200, "");
+                }
+            }
+        });
+        stub.start();
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        server = new YouTrackServer(url, transport);
+        user = new SessionManager("user", null, "perm:token").getUser(null);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    public void testAppliesCommandToIssuesAtOnce() {
+        server.setJsonApi(true);
+        List<Command> commands = server.applyCommandToIssues("site", user, issues("TP-1", "TP-2", "TP-3"), "Fixed", "Done", null, null, false);
+
+        assertThat(batches.size(), is(1));
+        JSONObject batch = batches.get(0);
+        assertThat(batch.getString("query"), is("Fixed"));
+        assertThat(batch.getString("comment"), is("Done"));
+        assertThat(batch.getBoolean("silent"), is(true));
+        assertThat(batch.getJSONArray("issues").size(), is(3));
+        assertThat(single.size(), is(0));
+        assertThat(commands.size(), is(3));
+        for (int i = 0; i < 3; i++) {
+            assertThat(commands.get(i).getIssueId(), is("TP-" + (i + 1)));
+            assertThat(commands.get(i).getStatus(), is(Command.Status.OK));
+            assertThat(commands.get(i).getCommand(), is("Fixed"));
+        }
+    }
+
+    @Test
+    public void testSendsIssuesInChunks() {
+        server.setJsonApi(true);
+        String[] ids = new String[YouTrackServer.COMMAND_BATCH_SIZE + 1];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = "TP-" + i;
+        }
+        List<Command> commands = server.applyCommandToIssues("site", user, issues(ids), "Fixed", null, null, null, true);
+
+        assertThat(batches.size(), is(2));
+        assertThat(batches.get(0).getJSONArray("issues").size(), is(YouTrackServer.COMMAND_BATCH_SIZE));
+        // The last issue is alone in its chunk and applied on its own.
+        assertThat(single.size(), is(1));
+        assertThat(commands.size(), is(ids.length));
+    }
+
+    @Test
+    public void testSplitsRejectedBatchIntoIssues() {
+        server.setJsonApi(true);
+        rejected.add("TP-2");
+        List<Command> commands = server.applyCommandToIssues("site", user, issues("TP-1", "TP-2", "TP-3"), "Fixed", null, null, null, true);
+
+        assertThat(batches.size(), is(1));
+        assertThat(single.size(), is(3));
+        assertThat(commands.get(0).getStatus(), is(Command.Status.OK));
+        assertThat(commands.get(1).getStatus(), is(Command.Status.FAILED));
+        assertThat(commands.get(1).getResponse(), is("Unknown command"));
+        assertThat(commands.get(2).getStatus(), is(Command.Status.OK));
+    }
+
+    @Test
+    public void testAppliesToEachIssueWithoutJsonApi() {
+        List<Command> commands = server.applyCommandToIssues("site", user, issues("TP-1", "TP-2"), "Fixed", null, null, null, true);
+
+        assertThat(batches.size(), is(0));
+        assertThat(single.size(), is(2));
+        assertThat(commands.get(1).getIssueId(), is("TP-2"));
+    }
+
+    @Test
+    public void testAppliesCommandAsAnotherUserToEachIssue() {
+        server.setJsonApi(true);
+        User author = new User();
+        author.setUsername("author");
+        List<Command> commands = server.applyCommandToIssues("site", user, issues("TP-1", "TP-2"), "Fixed", null, null, author, true);
+
+        assertThat(batches.size(), is(0));
+        assertThat(single.size(), is(2));
+        assertThat(commands.get(0).getStatus(), is(Command.Status.OK));
+        assertThat(commands.get(1).getStatus(), is(Command.Status.OK));
+    }
+
+    @Test
+    public void testGroupsIdenticalCommands() {
+        server.setJsonApi(true);
+        CommandBatch batch = new CommandBatch();
+        batch.add(new Issue("TP-1"), "Fixed", null, null, null, true);
+        batch.add(new Issue("TP-2"), "In Progress", null, null, null, true);
+        batch.add(new Issue("TP-3"), "Fixed", null, null, null, true);
+        batch.add(new Issue("TP-4"), "In Progress", null, null, null, true);
+        List<Command> commands = server.applyCommands("site", user, batch);
+
+        assertThat(batches.size(), is(2));
+        assertThat(batches.get(0).getString("query"), is("Fixed"));
+        assertThat(ids(batches.get(0)), is("TP-1,TP-3"));
+        assertThat(ids(batches.get(1)), is("TP-2,TP-4"));
+        assertThat(commands.get(1).getIssueId(), is("TP-2"));
+        assertThat(commands.get(1).getCommand(), is("In Progress"));
+    }
+
+    @Test
+    public void testKeepsOrderOfCommandsForAnIssue() {
+        CommandBatch batch = new CommandBatch();
+        batch.add(new Issue("TP-1"), "In Progress", null, null, null, true);
+        batch.add(new Issue("TP-1"), "Fixed", null, null, null, true);
+        batch.add(new Issue("TP-2"), "In Progress", null, null, null, true);
+        batch.add(new Issue("TP-1"), "In Progress", null, null, null, true);
+
+        List<CommandBatch.Group> groups = batch.getGroups();
+        assertThat(groups.size(), is(3));
+        assertThat(groups.get(0).getCommand(), is("In Progress"));
+        assertThat(groups.get(0).getIssues(), is(issues("TP-1", "TP-2")));
+        assertThat(groups.get(1).getCommand(), is("Fixed"));
+        assertThat(groups.get(2).getCommand(), is("In Progress"));
+        assertThat(groups.get(2).getIssues(), is(issues("TP-1")));
+    }
+
+    @Test
+    public void testSeparatesDifferentOptions() {
+        CommandBatch batch = new CommandBatch();
+        batch.add(new Issue("TP-1"), "Fixed", null, null, null, true);
+        batch.add(new Issue("TP-2"), "Fixed", null, null, null, false);
+        batch.add(new Issue("TP-3"), "Fixed", "Comment", null, null, true);
+        batch.add(new Issue("TP-4"), "Fixed", null, "developers", null, true);
+        batch.add(new Issue("TP-5"), "Fixed", null, null, user, true);
+        batch.add(new Issue("TP-6"), "Fixed", null, null, null, true);
+
+        assertThat(batch.getGroups().size(), is(5));
+        assertThat(batch.getGroups().get(0).getIssues(), is(issues("TP-1", "TP-6")));
+    }
+
+    private static List<Issue> issues(String... ids) {
+        List<Issue> issues = new ArrayList<Issue>();
+        for (String id : ids) {
+            issues.add(new Issue(id));
+        }
+        return issues;
+    }
+
+    private static String ids(JSONObject batch) {
+        StringBuilder ids = new StringBuilder();
+        for (Object issue : (JSONArray) batch.get("issues")) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(((JSONObject) issue).getString("idReadable"));
+        }
+        return ids.toString();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            bytes.write(buffer, 0, read);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
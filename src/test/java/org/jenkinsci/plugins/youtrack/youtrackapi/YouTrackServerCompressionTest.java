@@ -0,0 +1,115 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class YouTrackServerCompressionTest {
+    private static final byte[] PROJECTS = "<projects><project shortName=\"TP\"/><project shortName=\"OP\"/></projects>".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private YouTrackServer server;
+    private User user;
+    private String encoding;
+    private volatile String acceptEncoding;
+
+    @Before
+    public void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/rest/project/all", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] body = PROJECTS;
+                if (encoding != null && acceptEncoding != null) {
+                    body = encode(encoding, PROJECTS);
+                    exchange.getResponseHeaders().add("Content-Encoding", encoding.startsWith("deflate") ? "deflate" : encoding);
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        stub.start();
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        server = new YouTrackServer(url, transport);
+        user = new SessionManager("user", null, "perm:token").getUser(null);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    public void testGzip() {
+        encoding = "gzip";
+        assertProjects(server.getProjects(user));
+        assertThat(acceptEncoding, is("gzip, deflate"));
+    }
+
+    @Test
+    public void testDeflate() {
+        encoding = "deflate";
+        assertProjects(server.getProjects(user));
+    }
+
+    @Test
+    public void testRawDeflate() {
+        encoding = "deflate-raw";
+        assertProjects(server.getProjects(user));
+    }
+
+    @Test
+    public void testUncompressedResponse() {
+        assertProjects(server.getProjects(user));
+    }
+
+    @Test
+    public void testCompressionDisabled() {
+        encoding = "gzip";
+        server.setCompression(false);
+        assertProjects(server.getProjects(user));
+        assertThat(acceptEncoding, nullValue());
+    }
+
+    private static void assertProjects(List<Project> projects) {
+        assertThat(projects.size(), is(2));
+        assertThat(projects.get(0).getShortName(), is("TP"));
+        assertThat(projects.get(1).getShortName(), is("OP"));
+    }
+
+    private static byte[] encode(String encoding, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out;
+        if (encoding.equals("gzip")) {
+            out = new GZIPOutputStream(bytes);
+        } else {
+            out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, encoding.equals("deflate-raw")));
+        }
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
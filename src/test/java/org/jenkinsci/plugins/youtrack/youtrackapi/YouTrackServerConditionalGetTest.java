@@ -0,0 +1,121 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class YouTrackServerConditionalGetTest {
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private YouTrackServer server;
+    private User user;
+    private volatile String version = "v1";
+    private volatile String projects = "<projects><project shortName=\"TP\"/></projects>";
+    private volatile boolean sendValidators = true;
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/rest/project/all", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String etag = "\"" + version + "\"";
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                fullResponses.incrementAndGet();
+                if (sendValidators) {
+                    exchange.getResponseHeaders().add("ETag", etag);
+                }
+                byte[] body = projects.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        stub.start();
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        server = new YouTrackServer(url, transport);
+        user = new SessionManager("user", null, "perm:token").getUser(null);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    public void testReusesResponseWhenNotModified() {
+        assertThat(server.getProjects(user).get(0).getShortName(), is("TP"));
+        List<Project> again = server.getProjects(user);
+
+        assertThat(again.size(), is(1));
+        assertThat(again.get(0).getShortName(), is("TP"));
+        assertThat(fullResponses.get(), is(1));
+        assertThat(notModified.get(), is(1));
+        assertThat(transport.getResponseCache().getHits(), is(1L));
+    }
+
+    @Test
+    public void testDownloadsChangedResponse() {
+        server.getProjects(user);
+        version = "v2";
+        projects = "<projects><project shortName=\"TP\"/><project shortName=\"OP\"/></projects>";
+
+        assertThat(server.getProjects(user).size(), is(2));
+        assertThat(fullResponses.get(), is(2));
+        assertThat(server.getProjects(user).size(), is(2));
+        assertThat(notModified.get(), is(1));
+    }
+
+    @Test
+    public void testReturnedListsAreNotShared() {
+        server.getProjects(user).clear();
+        assertThat(server.getProjects(user).size(), is(1));
+    }
+
+    @Test
+    public void testResponsesWithoutValidatorsAreNotKept() {
+        sendValidators = false;
+        server.getProjects(user);
+        server.getProjects(user);
+
+        assertThat(fullResponses.get(), is(2));
+        assertThat(transport.getResponseCache().getSize(), is(0));
+    }
+
+    @Test
+    public void testKeepsMostRecentlyUsed() {
+        ResponseCache cache = new ResponseCache(2);
+        cache.put("a", "1", null, "a");
+        cache.put("b", "1", null, "b");
+        cache.get("a");
+        cache.put("c", "1", null, "c");
+
+        assertThat(cache.getSize(), is(2));
+        assertThat(cache.get("b"), nullValue());
+        assertThat((String) cache.get("a").value, is("a"));
+    }
+}
@@ -0,0 +1,135 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.jenkinsci.plugins.youtrack.Command;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests retries and the circuit breaker against a local stub server that fails on demand.
+ */
+public class YouTrackServerRetryTest {
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private String url;
+    private User user;
+    private final AtomicInteger requests = new AtomicInteger();
+    /**
+     * Number of requests answered with 503 before the stub answers normally.
+     */
+    private volatile int unavailable;
+
+    @Before
+    public void startStub() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/rest/issue", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int request = requests.incrementAndGet();
+                if (request <= unavailable) {
+                    respond(exchange, 503, "");
+                } else if ("GET".equals(exchange.getRequestMethod())) {
+                    respond(exchange, 200, "<issue id=\"TP-1\"><field name=\"State\"><value>Open</value></field></issue>");
+                } else {
+                    respond(exchange, 200, "");
+                }
+            }
+        });
+        stub.start();
+        url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        user = new SessionManager("user", null, "perm:token").getUser(null);
+    }
+
+    @After
+    public void stopStub() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    public void testReadIsRetriedWhenUnavailable() {
+        unavailable = 2;
+        YouTrackServer server = new YouTrackServer(url, transport);
+        server.setFailureHandling(2, null);
+
+        Issue issue = server.getIssue(user, "TP-1", "State");
+
+        assertThat(issue.getId(), is("TP-1"));
+        assertThat(requests.get(), is(3));
+    }
+
+    @Test
+    public void testPermitIsHeldUntilResponseIsRead() throws Exception {
+        unavailable = 1;
+        final RequestLimiter requestLimiter = new RequestLimiter(1, 0);
+        YouTrackServer server = new YouTrackServer(url, transport);
+        server.setFailureHandling(1, null);
+        server.setRequestLimiter(requestLimiter);
+        final AtomicInteger inFlightWhileParsing = new AtomicInteger(-1);
+
+        String parsed = server.read(url + "/rest/issue/TP-1", user, "test", false, new YouTrackServer.ResponseParser<String>() {
+            @Override
+            public String parse(InputStream body) {
+                inFlightWhileParsing.set(requestLimiter.getInFlight());
+                return "parsed";
+            }
+        });
+
+        assertThat(parsed, is("parsed"));
+        assertThat(inFlightWhileParsing.get(), is(1));
+        assertThat(requestLimiter.getInFlight(), is(0));
+        assertThat(requests.get(), is(2));
+    }
+
+    @Test
+    public void testRetriesAreLimited() {
+        unavailable = Integer.MAX_VALUE;
+        YouTrackServer server = new YouTrackServer(url, transport);
+        server.setFailureHandling(1, null);
+
+        Command command = server.applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, null, false);
+
+        assertThat(command.getStatus(), is(Command.Status.FAILED));
+        assertThat(requests.get(), is(2));
+    }
+
+    @Test
+    public void testOpenBreakerShortCircuits() {
+        unavailable = Integer.MAX_VALUE;
+        YouTrackServer server = new YouTrackServer(url, transport);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(2, 60000);
+        server.setFailureHandling(0, circuitBreaker);
+
+        server.applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, null, false);
+        server.applyCommand("site", user, new Issue("TP-2"), "Fixed", null, null, null, false);
+        Command command = server.applyCommand("site", user, new Issue("TP-3"), "Fixed", null, null, null, false);
+
+        assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(command.getStatus(), is(Command.Status.FAILED));
+        assertThat(command.getResponse(), containsString("suspended"));
+        assertThat(requests.get(), is(2));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
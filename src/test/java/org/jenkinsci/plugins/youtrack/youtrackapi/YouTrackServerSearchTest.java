@@ -0,0 +1,156 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class YouTrackServerSearchTest {
+    private static final Pattern AFTER = Pattern.compile("after=(\\d+)");
+    private static final Pattern MAX = Pattern.compile("max=(\\d+)");
+
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private YouTrackServer server;
+    private User user;
+    private final List<String> matching = new CopyOnWriteArrayList<String>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int failFrom = Integer.MAX_VALUE;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 1; i <= 250; i++) {
+            matching.add("TP-" + i);
+        }
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/rest/issue", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getRawQuery();
+                int after = parameter(AFTER, query);
+                int max = parameter(MAX, query);
+                if (requests.incrementAndGet() > failFrom) {
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+                StringBuilder xml = new StringBuilder("<issueCompacts>");
+                List<String> snapshot = new ArrayList<String>(matching);
+                for (int i = after; i < Math.min(snapshot.size(), after + max); i++) {
+                    xml.append("<issue id=\"").append(snapshot.get(i)).append("\"/>");
+                }
+                xml.append("</issueCompacts>");
+                byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        stub.start();
+        String url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        server = new YouTrackServer(url, transport);
+        user = new SessionManager("user", null, "perm:token").getUser(null);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    public void testSearchReadsPages() {
+        List<Issue> issues = server.search(user, "State: Fixed");
+
+        assertThat(issues.size(), is(250));
+        assertThat(issues.get(249).getId(), is("TP-250"));
+        assertThat(requests.get(), is(3));
+    }
+
+    @Test
+    public void testIteratorReadsPagesLazily() {
+        Iterator<Issue> issues = server.searchIterator(user, "State: Fixed");
+
+        assertThat(issues.next().getId(), is("TP-1"));
+        assertThat(requests.get(), is(1));
+    }
+
+    @Test
+    public void testIteratorFindsIssuesMovedByHandling() {
+        Iterator<Issue> issues = server.searchIterator(user, "State: Open");
+        Set<String> handled = new HashSet<String>();
+        while (issues.hasNext()) {
+            String id = issues.next().getId();
+            assertThat(handled.add(id), is(true));
+            // Like a command changing the state, the issue no longer matches the search.
+            matching.remove(id);
+        }
+
+        assertThat(handled.size(), is(250));
+        assertThat(matching.size(), is(0));
+    }
+
+    @Test
+    public void testIteratorEndsOnFailedPage() {
+        failFrom = 1;
+        YouTrackServer.SearchIterator issues = server.searchIterator(user, "State: Fixed");
+        int count = 0;
+        while (issues.hasNext()) {
+            issues.next();
+            count++;
+        }
+
+        assertThat(count, is(100));
+        assertThat(issues.isFailed(), is(true));
+    }
+
+    @Test
+    public void testIteratorDoesNotRepeatUnchangedSearch() {
+        YouTrackServer.SearchIterator issues = server.searchIterator(user, "State: Fixed");
+        int count = 0;
+        while (issues.hasNext()) {
+            issues.next();
+            count++;
+        }
+
+        assertThat(count, is(250));
+        assertThat(issues.isFailed(), is(false));
+        // No issue moved, so every page was read once.
+        assertThat(requests.get(), is(3));
+    }
+
+    @Test
+    public void testFailedSearch() {
+        failFrom = 0;
+
+        assertThat(server.searchIterator(user, "State: Fixed"), nullValue());
+        assertThat(server.search(user, "State: Fixed"), nullValue());
+    }
+
+    private static int parameter(Pattern pattern, String query) {
+        Matcher matcher = pattern.matcher(query);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+}
@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.youtrack.youtrackapi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.jenkinsci.plugins.youtrack.Command;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests read timeouts and time budgets against a local stub server that answers slowly.
+ */
+public class YouTrackServerTimeoutTest {
+    private HttpServer stub;
+    private YouTrackTransport transport;
+    private String url;
+    private final AtomicInteger requests = new AtomicInteger();
+    private User user;
+
+    @Before
+    public void startStub() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.createContext("/rest/issue", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(new byte[0]);
+                }
+            }
+        });
+        stub.start();
+        url = "http://127.0.0.1:" + stub.getAddress().getPort();
+        transport = new YouTrackTransport(url);
+        user = new SessionManager("user", null, "perm:token").getUser(null);
+    }
+
+    @After
+    public void stopStub() {
+        transport.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    public void testReadTimeoutIsRecorded() {
+        YouTrackServer server = new YouTrackServer(url, transport);
+        server.setTimeouts(0, 200);
+
+        Command command = server.applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, null, false);
+
+        assertThat(command.getStatus(), is(Command.Status.TIMEOUT));
+        // The request reached the server, the command may have been applied.
+        assertThat(command.isUnanswered(), is(true));
+    }
+
+    @Test
+    public void testExhaustedBudgetFailsFast() {
+        YouTrackServer server = new YouTrackServer(url, transport);
+        TimeBudget timeBudget = new TimeBudget(300);
+        server.setTimeBudget(timeBudget);
+
+        Command first = server.applyCommand("site", user, new Issue("TP-1"), "Fixed", null, null, null, false);
+        assertThat(first.getStatus(), is(Command.Status.TIMEOUT));
+        assertThat(timeBudget.isExhausted(), is(true));
+
+        Command second = server.comment("site", user, new Issue("TP-2"), "Built", null, false);
+        assertThat(second.getStatus(), is(Command.Status.TIMEOUT));
+        assertThat(second.isUnanswered(), is(false));
+        assertThat(requests.get(), is(1));
+    }
+
+    @Test
+    public void testParallelRequestsShareBudgetByWallClock() {
+        YouTrackServer server = new YouTrackServer(url, transport);
+        server.setExecutor(new RequestExecutor("test"));
+        TimeBudget timeBudget = new TimeBudget(3000);
+        server.setTimeBudget(timeBudget);
+
+        List<Command> commands = server.applyCommandToIssues("site", user, Arrays.asList(new Issue("TP-1"), new Issue("TP-2")), "Fixed", null, null, null, false);
+
+        assertThat(commands.get(0).getStatus(), is(Command.Status.OK));
+        assertThat(commands.get(1).getStatus(), is(Command.Status.OK));
+        // Both requests took two seconds, at the same time.
+        assertThat(timeBudget.isExhausted(), is(false));
+    }
+
+    @Test
+    public void testInterruptStopsWaitingForParallelRequests() {
+        YouTrackServer server = new YouTrackServer(url, transport);
+        server.setExecutor(new RequestExecutor("test"));
+
+        long start = System.currentTimeMillis();
+        Thread.currentThread().interrupt();
+        List<Command> commands;
+        try {
+            commands = server.applyCommandToIssues("site", user, Arrays.asList(new Issue("TP-1"), new Issue("TP-2")), "Fixed", null, null, null, false);
+        } finally {
+            assertThat(Thread.interrupted(), is(true));
+        }
+
+        assertThat(commands.size(), is(2));
+        assertThat(commands.get(0).getStatus(), is(Command.Status.TIMEOUT));
+        assertThat(commands.get(1).getIssueId(), is("TP-2"));
+        assertThat(System.currentTimeMillis() - start, lessThan(1500L));
+    }
+}